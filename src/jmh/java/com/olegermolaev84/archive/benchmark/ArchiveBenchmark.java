@@ -0,0 +1,116 @@
+package com.olegermolaev84.archive.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.olegermolaev84.archive.core.Coder;
+import com.olegermolaev84.archive.core.Decoder;
+
+/**
+ * Measures packing and unpacking of the synthetic tree of files by Coder and Decoder end-to-end.
+ * The archive is written to and read from the memory, so the file system is loaded by the files only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ArchiveBenchmark {
+	@Param({"10000:4096", "100:1048576"})
+	public String tree;
+	
+	@Param({"false", "true"})
+	public boolean solidMode;
+	
+	@Param({"TEXT"})
+	public BenchmarkData.Entropy entropy;
+	
+	/** Tree of files to be packed */
+	private Path source;
+	
+	/** Directory the archive is unpacked into */
+	private Path target;
+	
+	/** Number of files in the tree */
+	private int numberOfFiles;
+	
+	/** Total size of files in the tree */
+	private long sizeOfTree;
+	
+	/** Archive of the tree */
+	private byte[] archive;
+	
+	@Setup(Level.Trial)
+	public void createTree() throws IOException {
+		String[] parameters = tree.split(":");
+		numberOfFiles = Integer.parseInt(parameters[0]);
+		source = BenchmarkData.ROOT.resolve("tree");
+		target = BenchmarkData.ROOT.resolve("output");
+		sizeOfTree = BenchmarkData.createTree(source, numberOfFiles, Integer.parseInt(parameters[1]), entropy);
+		
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		packTree(os);
+		archive = os.toByteArray();
+	}
+	
+	@Setup(Level.Invocation)
+	public void createTarget() throws IOException {
+		BenchmarkData.deleteTree(target);
+		Files.createDirectories(target);
+	}
+	
+	@TearDown(Level.Trial)
+	public void deleteTree() throws IOException {
+		BenchmarkData.deleteTree(source);
+		BenchmarkData.deleteTree(target);
+	}
+	
+	@Benchmark
+	public void pack(Throughput throughput) throws IOException {
+		packTree(OutputStream.nullOutputStream());
+		throughput.add(numberOfFiles, sizeOfTree);
+	}
+	
+	@Benchmark
+	public void unpack(Throughput throughput) throws IOException {
+		Decoder decoder = new Decoder(new ByteArrayInputStream(archive));
+		decoder.setParentPath(target);
+		if(!decoder.unpack()) {
+			throw new IllegalStateException(decoder.getErrorMessage());
+		}
+		throughput.add(numberOfFiles, sizeOfTree);
+	}
+	
+	/**
+	 * Packs the tree into the output stream
+	 * @param os output stream of the archive
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private void packTree(OutputStream os) throws IOException {
+		Coder coder = new Coder(new String[] {source.toString()}, os);
+		coder.setSolidMode(solidMode);
+		if(!coder.pack()) {
+			throw new IllegalStateException(coder.getErrorMessage());
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.olegermolaev84.archive.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic files and trees the benchmarks are run on
+ */
+public final class BenchmarkData {
+	/** Entropy of the generated data */
+	public enum Entropy {
+		/** Repeated lines with rare changes, compressed very well */
+		LOW,
+		/** Random sequence of words, compressed like a natural text */
+		TEXT,
+		/** Random bytes, cannot be compressed */
+		RANDOM
+	}
+	
+	/** Words the text is composed of */
+	private static final String[] WORDS = {"archive", "file", "directory", "block", "stream", "data", 
+			"compression", "level", "entry", "header", "the", "of", "and", "to", "is", "in"};
+	
+	/** Directory the data of the benchmarks is created in. The path is relative, so 
+	 * the archived paths are unpacked into the output directory instead of the source */
+	static final Path ROOT = Path.of("target", "benchmark");
+	
+	private BenchmarkData() {
+	}
+	
+	/**
+	 * Generates the data of the denoted entropy
+	 * @param size size of the data
+	 * @param entropy entropy of the data
+	 * @param seed seed of the random generator
+	 * @return generated data
+	 */
+	static byte[] generate(int size, Entropy entropy, long seed) {
+		Random random = new Random(seed);
+		byte[] data = new byte[size];
+		switch(entropy) {
+		case RANDOM:
+			random.nextBytes(data);
+			break;
+		case TEXT:
+			fill(data, ()->WORDS[random.nextInt(WORDS.length)] + (random.nextInt(12) == 0 ? ".\n" : " "));
+			break;
+		default:
+			int[] line = {0};
+			fill(data, ()->"line " + (random.nextInt(64) == 0 ? random.nextInt() : line[0]++ % 8) 
+					+ " of the archived log file\n");
+		}
+		return data;
+	}
+	
+	/**
+	 * Fills the array by the generated pieces of text
+	 * @param data array to be filled
+	 * @param pieces generator of the pieces
+	 */
+	private static void fill(byte[] data, Supplier<String> pieces) {
+		int position = 0;
+		while(position < data.length) {
+			byte[] piece = pieces.get().getBytes(StandardCharsets.US_ASCII);
+			int length = Math.min(piece.length, data.length - position);
+			System.arraycopy(piece, 0, data, position, length);
+			position += length;
+		}
+	}
+	
+	/**
+	 * Creates the tree of files. The files are spread over subdirectories of 100 files.
+	 * @param directory directory of the tree
+	 * @param numberOfFiles number of the files
+	 * @param sizeOfFile size of each file
+	 * @param entropy entropy of the data of the files
+	 * @return total size of the files
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static long createTree(Path directory, int numberOfFiles, int sizeOfFile, Entropy entropy) 
+			throws IOException {
+		deleteTree(directory);
+		for(int i = 0; i < numberOfFiles; i++) {
+			Path subdirectory = directory.resolve("dir" + i / 100);
+			Files.createDirectories(subdirectory);
+			Files.write(subdirectory.resolve("file" + i), generate(sizeOfFile, entropy, i));
+		}
+		return (long)numberOfFiles * sizeOfFile;
+	}
+	
+	/**
+	 * Deletes the directory with all its content. Nothing is done if the directory does not exist.
+	 * @param directory directory to be deleted
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static void deleteTree(Path directory) throws IOException {
+		if(!Files.exists(directory)) {
+			return;
+		}
+		try(Stream<Path> paths = Files.walk(directory)) {
+			for(Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.olegermolaev84.archive.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.olegermolaev84.archive.core.SingleFileCoder;
+import com.olegermolaev84.archive.core.SingleFileDecoder;
+
+/**
+ * Measures packing and unpacking of one file by SingleFileCoder and SingleFileDecoder
+ * depending on the size of the file, the compression level and the entropy of data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SingleFileBenchmark {
+	@Param({"4096", "1048576", "16777216"})
+	public int size;
+	
+	@Param({"1", "6", "9"})
+	public int level;
+	
+	@Param({"LOW", "TEXT", "RANDOM"})
+	public BenchmarkData.Entropy entropy;
+	
+	/** File to be packed */
+	private Path source;
+	
+	/** File to be unpacked into */
+	private Path target;
+	
+	/** Compressed data of the source file */
+	private byte[] compressedData;
+	
+	@Setup(Level.Trial)
+	public void createFile() throws IOException {
+		Path directory = BenchmarkData.ROOT.resolve("single");
+		Files.createDirectories(directory);
+		source = directory.resolve("source-" + size + "-" + entropy);
+		target = directory.resolve("target-" + size + "-" + entropy);
+		Files.write(source, BenchmarkData.generate(size, entropy, 1));
+		
+		SingleFileCoder coder = new SingleFileCoder(source, level);
+		coder.packFile();
+		compressedData = Arrays.copyOf(coder.getCompressedData(), coder.size());
+	}
+	
+	@TearDown(Level.Invocation)
+	public void deleteTarget() throws IOException {
+		Files.deleteIfExists(target);
+	}
+	
+	@TearDown(Level.Trial)
+	public void deleteFile() throws IOException {
+		Files.deleteIfExists(source);
+	}
+	
+	@Benchmark
+	public int packFile(Throughput throughput) throws IOException {
+		SingleFileCoder coder = new SingleFileCoder(source, level);
+		coder.packFile();
+		throughput.add(1, size);
+		return coder.size();
+	}
+	
+	@Benchmark
+	public void unpackFile(Throughput throughput) throws IOException {
+		new SingleFileDecoder(true, compressedData, target, size).unpackFile();
+		throughput.add(1, size);
+	}
+}
@@ -0,0 +1,37 @@
+package com.olegermolaev84.archive.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counters of the processed data. JMH reports them as rates: megabytes per second 
+ * of the uncompressed data and files per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+	/** Uncompressed megabytes which are packed or unpacked */
+	public double megabytes;
+	
+	/** Files which are packed or unpacked */
+	public long files;
+	
+	@Setup(Level.Iteration)
+	public void reset() {
+		megabytes = 0;
+		files = 0;
+	}
+	
+	/**
+	 * Counts the processed data
+	 * @param numberOfFiles number of the processed files
+	 * @param bytes number of the processed uncompressed bytes
+	 */
+	void add(long numberOfFiles, long bytes) {
+		files += numberOfFiles;
+		megabytes += bytes / (1024.0 * 1024.0);
+	}
+}
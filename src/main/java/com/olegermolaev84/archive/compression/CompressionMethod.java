@@ -0,0 +1,36 @@
+package com.olegermolaev84.archive.compression;
+
+/**
+ * Compression algorithm the entries of the archive are compressed with. 
+ * The identifier of the method is recorded with every entry, so Decoder selects 
+ * the same method for decompression.
+ * <br>Additional methods are registered by <code>CompressionMethods.register</code> or
+ * discovered by ServiceLoader.
+ */
+public interface CompressionMethod {
+	/**
+	 * Returns identifier of the method which is recorded in the archive. 
+	 * Identifiers 0-15 are reserved for the built-in methods.
+	 * @return identifier of the method
+	 */
+	int getId();
+
+	/**
+	 * Returns name of the method
+	 * @return name of the method
+	 */
+	String getName();
+
+	/**
+	 * Creates new Compressor. The Compressor is reused for several entries by <code>reset</code>.
+	 * @param level compression level. Value from 0 to 9, the method may ignore it
+	 * @return new Compressor
+	 */
+	Compressor createCompressor(int level);
+
+	/**
+	 * Creates new Decompressor. The Decompressor is reused for several entries by <code>reset</code>.
+	 * @return new Decompressor
+	 */
+	Decompressor createDecompressor();
+}
@@ -0,0 +1,88 @@
+package com.olegermolaev84.archive.compression;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/**
+ * Registry of the compression methods. The built-in methods are registered at once,
+ * the methods provided by ServiceLoader are registered when the unknown identifier is requested.
+ */
+public final class CompressionMethods {
+	/** Deflate compression, the default method */
+	public static final CompressionMethod DEFLATE = new DeflateMethod();
+
+	/** Deflate compression for data of small values produced by a filter. It is not registered, its identifier is of DEFLATE */
+	public static final CompressionMethod DEFLATE_FILTERED = new DeflateMethod(Deflater.FILTERED);
+
+	/** Deflate compression by Huffman coding only. It is not registered, its identifier is of DEFLATE */
+	public static final CompressionMethod DEFLATE_HUFFMAN_ONLY = new DeflateMethod(Deflater.HUFFMAN_ONLY);
+
+	/** The data is stored as is */
+	public static final CompressionMethod STORE = new StoreMethod();
+
+	/** Fast LZ compression */
+	public static final CompressionMethod LZ = new LzMethod();
+
+	/** Registered methods indexed by their identifiers */
+	private static final Map<Integer, CompressionMethod> methods = new ConcurrentHashMap<>();
+
+	static {
+		register(DEFLATE);
+		register(STORE);
+		register(LZ);
+	}
+
+	private CompressionMethods() {
+	}
+
+	/**
+	 * Registers the compression method
+	 * @param method method to be registered
+	 * @throws IllegalArgumentException will be thrown if another method with the same identifier is registered
+	 */
+	public static void register(CompressionMethod method) throws IllegalArgumentException {
+		if(method.getId() < 0) {
+			throw new IllegalArgumentException("Identifier of compression method: " + method.getName() + " is negative");
+		}
+		CompressionMethod registered = methods.putIfAbsent(method.getId(), method);
+		if(registered != null && registered != method) {
+			throw new IllegalArgumentException("Identifier of compression method: " + method.getName() 
+					+ " is already used by method: " + registered.getName());
+		}
+	}
+
+	/**
+	 * Returns the compression method by its identifier
+	 * @param id identifier of the method
+	 * @return the method or <code>null</code> if the method is unknown
+	 */
+	public static CompressionMethod get(int id) {
+		CompressionMethod method = methods.get(id);
+		if(method == null) {
+			for(CompressionMethod provided : ServiceLoader.load(CompressionMethod.class)) {
+				methods.putIfAbsent(provided.getId(), provided);
+			}
+			method = methods.get(id);
+		}
+		return method;
+	}
+
+	/**
+	 * Returns the compression method by its name
+	 * @param name name of the method
+	 * @return the method or <code>null</code> if the method is unknown
+	 */
+	public static CompressionMethod get(String name) {
+		for(CompressionMethod provided : ServiceLoader.load(CompressionMethod.class)) {
+			methods.putIfAbsent(provided.getId(), provided);
+		}
+		for(CompressionMethod method : methods.values()) {
+			if(method.getName().equals(name)) {
+				return method;
+			}
+		}
+		return null;
+	}
+}
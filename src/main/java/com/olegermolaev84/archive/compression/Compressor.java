@@ -0,0 +1,58 @@
+package com.olegermolaev84.archive.compression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses a stream of data. The contract follows java.util.zip.Deflater:
+ * the input is set while <code>needsInput</code> returns <code>true</code>, the compressed data
+ * is taken by <code>compress</code>, the end of the input is denoted by <code>finish</code>.
+ */
+public interface Compressor {
+	/**
+	 * Sets the input data. The buffer is read till <code>needsInput</code> returns <code>true</code>
+	 * @param input data to be compressed
+	 */
+	void setInput(ByteBuffer input);
+
+	/**
+	 * Shows that the input is consumed and new input is to be set
+	 * @return <code>true</code> if the input is consumed
+	 */
+	boolean needsInput();
+
+	/**
+	 * Sets the preset dictionary. Should be called before the data is compressed.
+	 * @param dictionary preset dictionary
+	 */
+	void setDictionary(byte[] dictionary);
+
+	/**
+	 * Denotes that the input is ended
+	 */
+	void finish();
+
+	/**
+	 * Shows that the end of the compressed stream is reached
+	 * @return <code>true</code> if the whole compressed data is taken
+	 */
+	boolean finished();
+
+	/**
+	 * Compresses the input data into the denoted buffer
+	 * @param b buffer for the compressed data
+	 * @param off offset within the buffer
+	 * @param len maximal number of bytes
+	 * @return number of written bytes
+	 */
+	int compress(byte[] b, int off, int len);
+
+	/**
+	 * Resets the Compressor, so new stream can be compressed
+	 */
+	void reset();
+
+	/**
+	 * Releases resources of the Compressor
+	 */
+	void end();
+}
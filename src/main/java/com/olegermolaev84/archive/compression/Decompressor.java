@@ -0,0 +1,83 @@
+package com.olegermolaev84.archive.compression;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+/**
+ * Decompresses a stream of data. The contract follows java.util.zip.Inflater:
+ * if <code>decompress</code> returns 0, either new input or the preset dictionary is needed,
+ * or the end of the stream is reached.
+ */
+public interface Decompressor {
+	/**
+	 * Sets the compressed input data
+	 * @param b array with the compressed data
+	 * @param off offset of the data
+	 * @param len length of the data
+	 */
+	void setInput(byte[] b, int off, int len);
+
+	/**
+	 * Shows that the input is consumed and new input is to be set
+	 * @return <code>true</code> if the input is needed
+	 */
+	boolean needsInput();
+
+	/**
+	 * Shows that the stream is compressed with the preset dictionary which is not set yet
+	 * @return <code>true</code> if the dictionary is needed
+	 */
+	boolean needsDictionary();
+
+	/**
+	 * Sets the preset dictionary
+	 * @param dictionary preset dictionary
+	 */
+	void setDictionary(byte[] dictionary);
+
+	/**
+	 * Decompresses the data into the denoted buffer
+	 * @param b buffer for the uncompressed data
+	 * @param off offset within the buffer
+	 * @param len maximal number of bytes
+	 * @return number of uncompressed bytes
+	 * @throws DataFormatException will be thrown if the compressed data is corrupted
+	 */
+	int decompress(byte[] b, int off, int len) throws DataFormatException;
+
+	/**
+	 * Decompresses the data into the remaining space of the buffer. The position of the buffer
+	 * is moved by the number of uncompressed bytes. The method is to be overridden if 
+	 * the data can be decompressed into the direct buffer without the intermediate array.
+	 * @param output buffer for the uncompressed data
+	 * @return number of uncompressed bytes
+	 * @throws DataFormatException will be thrown if the compressed data is corrupted
+	 */
+	default int decompress(ByteBuffer output) throws DataFormatException {
+		if(output.hasArray()) {
+			int length = decompress(output.array(), output.arrayOffset() + output.position(), output.remaining());
+			output.position(output.position() + length);
+			return length;
+		}
+		byte[] b = new byte[output.remaining()];
+		int length = decompress(b, 0, b.length);
+		output.put(b, 0, length);
+		return length;
+	}
+
+	/**
+	 * Shows that the end of the compressed stream is reached
+	 * @return <code>true</code> if the whole data is decompressed
+	 */
+	boolean finished();
+
+	/**
+	 * Resets the Decompressor, so new stream can be decompressed
+	 */
+	void reset();
+
+	/**
+	 * Releases resources of the Decompressor
+	 */
+	void end();
+}
@@ -0,0 +1,155 @@
+package com.olegermolaev84.archive.compression;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression by java.util.zip. It is the default method and the method
+ * of the archives written before the methods are recorded.
+ * <br>The strategy of Deflater only affects the compression, all strategies share the identifier
+ * and are decompressed by the same Inflater.
+ */
+public class DeflateMethod implements CompressionMethod {
+	/** Identifier of the method */
+	public static final int ID = 0;
+
+	/** Strategy of Deflater: <code>Deflater.DEFAULT_STRATEGY</code>, <code>FILTERED</code> or <code>HUFFMAN_ONLY</code> */
+	private final int strategy;
+
+	/**
+	 * Constructor of the method with the default strategy
+	 */
+	public DeflateMethod() {
+		this(Deflater.DEFAULT_STRATEGY);
+	}
+
+	/**
+	 * Constructor
+	 * @param strategy strategy of Deflater
+	 * @throws IllegalArgumentException will be thrown if the strategy is unknown
+	 */
+	public DeflateMethod(int strategy) throws IllegalArgumentException {
+		if(strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED 
+				&& strategy != Deflater.HUFFMAN_ONLY) {
+			throw new IllegalArgumentException("Unknown strategy of Deflater: " + strategy);
+		}
+		this.strategy = strategy;
+	}
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+
+	@Override
+	public String getName() {
+		switch(strategy) {
+		case Deflater.FILTERED:
+			return "deflate-filtered";
+		case Deflater.HUFFMAN_ONLY:
+			return "deflate-huffman";
+		default:
+			return "deflate";
+		}
+	}
+
+	@Override
+	public Compressor createCompressor(int level) {
+		Deflater deflater = new Deflater(level);
+		deflater.setStrategy(strategy);
+		return new Compressor() {
+			@Override
+			public void setInput(ByteBuffer input) {
+				deflater.setInput(input);
+			}
+
+			@Override
+			public boolean needsInput() {
+				return deflater.needsInput();
+			}
+
+			@Override
+			public void setDictionary(byte[] dictionary) {
+				deflater.setDictionary(dictionary);
+			}
+
+			@Override
+			public void finish() {
+				deflater.finish();
+			}
+
+			@Override
+			public boolean finished() {
+				return deflater.finished();
+			}
+
+			@Override
+			public int compress(byte[] b, int off, int len) {
+				return deflater.deflate(b, off, len);
+			}
+
+			@Override
+			public void reset() {
+				deflater.reset();
+			}
+
+			@Override
+			public void end() {
+				deflater.end();
+			}
+		};
+	}
+
+	@Override
+	public Decompressor createDecompressor() {
+		Inflater inflater = new Inflater();
+		return new Decompressor() {
+			@Override
+			public void setInput(byte[] b, int off, int len) {
+				inflater.setInput(b, off, len);
+			}
+
+			@Override
+			public boolean needsInput() {
+				return inflater.needsInput();
+			}
+
+			@Override
+			public boolean needsDictionary() {
+				return inflater.needsDictionary();
+			}
+
+			@Override
+			public void setDictionary(byte[] dictionary) {
+				inflater.setDictionary(dictionary);
+			}
+
+			@Override
+			public int decompress(byte[] b, int off, int len) throws DataFormatException {
+				return inflater.inflate(b, off, len);
+			}
+
+			@Override
+			public int decompress(ByteBuffer output) throws DataFormatException {
+				return inflater.inflate(output);
+			}
+
+			@Override
+			public boolean finished() {
+				return inflater.finished();
+			}
+
+			@Override
+			public void reset() {
+				inflater.reset();
+			}
+
+			@Override
+			public void end() {
+				inflater.end();
+			}
+		};
+	}
+}
@@ -0,0 +1,377 @@
+package com.olegermolaev84.archive.compression;
+
+import static com.olegermolaev84.archive.compression.LzMethod.*;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compressor of the LzMethod. The input is collected into the frame, the frame is compressed
+ * when it is full or the input is finished. The frame is stored as is if it is not compressible.
+ */
+class LzCompressor implements Compressor {
+	/** Number of bits of the hash of 4 bytes */
+	private static final int HASH_BITS = 14;
+
+	/** The step of search is increased after each 2^SKIP_TRIGGER failed attempts */
+	private static final int SKIP_TRIGGER = 6;
+
+	/** Reads int from the byte array */
+	private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/** Reads long from the byte array */
+	private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/** Previous data (or the dictionary) followed by the data of the current frame */
+	private final byte[] window = new byte[SIZE_OF_WINDOW + SIZE_OF_FRAME];
+
+	/** Length of the previous data within the window */
+	private int sizeOfPrefix = 0;
+
+	/** Length of the data of the current frame within the window */
+	private int sizeOfFrame = 0;
+
+	/** Position of the first byte of the window within the stream */
+	private int base = 0;
+
+	/** Position within the stream the positions of the hash table are counted from */
+	private int origin = 0;
+
+	/** Last positions of 4-byte sequences indexed by their hash. The position is counted from 1, 0 is empty */
+	private final int[] table = new int[1 << HASH_BITS];
+
+	/** Compressed data to be taken by <code>compress</code> */
+	private final byte[] output = new byte[1 + 2 * SIZE_OF_FRAME_HEADER + MAX_SIZE_OF_COMPRESSED_FRAME];
+
+	/** Position of the compressed data to be taken */
+	private int outputPosition = 0;
+
+	/** End of the compressed data */
+	private int outputLimit = 0;
+
+	/** Data to be compressed */
+	private ByteBuffer input;
+
+	/** Shows is the data compressed with the preset dictionary */
+	private boolean usesDictionary = false;
+
+	/** Shows is the byte of flags written */
+	private boolean started = false;
+
+	/** Shows that the input is ended */
+	private boolean finish = false;
+
+	/** Shows that the end of the stream is written */
+	private boolean ended = false;
+
+	@Override
+	public void setInput(ByteBuffer input) {
+		this.input = input;
+	}
+
+	@Override
+	public boolean needsInput() {
+		return input == null || !input.hasRemaining();
+	}
+
+	@Override
+	public void setDictionary(byte[] dictionary) {
+		int length = Math.min(dictionary.length, SIZE_OF_WINDOW);
+		System.arraycopy(dictionary, dictionary.length - length, window, 0, length);
+		sizeOfPrefix = length;
+		usesDictionary = true;
+		for(int i = 0; i + MIN_MATCH <= length; i++) {
+			table[hash(window, i)] = base + i - origin + 1;
+		}
+	}
+
+	@Override
+	public void finish() {
+		finish = true;
+	}
+
+	@Override
+	public boolean finished() {
+		return ended && outputPosition == outputLimit;
+	}
+
+	@Override
+	public int compress(byte[] b, int off, int len) {
+		int written = 0;
+		while(written < len) {
+			if(outputPosition < outputLimit) {
+				int length = Math.min(len - written, outputLimit - outputPosition);
+				System.arraycopy(output, outputPosition, b, off + written, length);
+				outputPosition += length;
+				written += length;
+			}
+			else if(!needsInput()) {
+				int length = Math.min(input.remaining(), SIZE_OF_FRAME - sizeOfFrame);
+				input.get(window, sizeOfPrefix + sizeOfFrame, length);
+				sizeOfFrame += length;
+				if(sizeOfFrame == SIZE_OF_FRAME) {
+					writeFrame(false);
+				}
+			}
+			else if(finish && !ended) {
+				writeFrame(true);
+			}
+			else {
+				break;
+			}
+		}
+		return written;
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(table, 0);
+		sizeOfPrefix = 0;
+		sizeOfFrame = 0;
+		base = 0;
+		origin = 0;
+		outputPosition = 0;
+		outputLimit = 0;
+		input = null;
+		usesDictionary = false;
+		started = false;
+		finish = false;
+		ended = false;
+	}
+
+	@Override
+	public void end() {
+		input = null;
+	}
+
+	/**
+	 * Compresses the current frame into the output and moves it into the previous data
+	 * @param last shows is it the last frame of the stream
+	 */
+	private void writeFrame(boolean last) {
+		outputPosition = 0;
+		outputLimit = 0;
+		if(!started) {
+			output[outputLimit++] = (byte)(usesDictionary ? FLAG_DICTIONARY : 0);
+			started = true;
+		}
+
+		if(sizeOfFrame > 0) {
+			int start = outputLimit + SIZE_OF_FRAME_HEADER;
+			int length = compressFrame(start);
+			if(length < 0 || length >= sizeOfFrame) {
+				System.arraycopy(window, sizeOfPrefix, output, start, sizeOfFrame);
+				length = sizeOfFrame | STORED;
+			}
+			writeInt(outputLimit, sizeOfFrame);
+			writeInt(outputLimit + 4, length);
+			outputLimit = start + (length & ~STORED);
+			slide();
+		}
+
+		if(last) {
+			writeInt(outputLimit, 0);
+			writeInt(outputLimit + 4, 0);
+			outputLimit += SIZE_OF_FRAME_HEADER;
+			ended = true;
+		}
+	}
+
+	/**
+	 * Keeps the last bytes of the data as the previous data of the next frame
+	 */
+	private void slide() {
+		int size = sizeOfPrefix + sizeOfFrame;
+		if(size > SIZE_OF_WINDOW) {
+			System.arraycopy(window, size - SIZE_OF_WINDOW, window, 0, SIZE_OF_WINDOW);
+			base += size - SIZE_OF_WINDOW;
+			size = SIZE_OF_WINDOW;
+		}
+		sizeOfPrefix = size;
+		sizeOfFrame = 0;
+
+		// positions are rebased before they overflow
+		if(base - origin > (1 << 30)) {
+			Arrays.fill(table, 0);
+			origin = base;
+		}
+	}
+
+	/**
+	 * Compresses the data of the current frame into the output
+	 * @param start position of the compressed data within the output
+	 * @return length of the compressed data or -1 if the data is not compressible
+	 */
+	private int compressFrame(int start) {
+		final byte[] src = window;
+		final int end = sizeOfPrefix + sizeOfFrame;
+		final int findLimit = end - MATCH_FIND_LIMIT;
+		final int matchLimit = end - LAST_LITERALS;
+		final int outputEnd = start + sizeOfFrame;
+		final int shift = base - origin + 1;
+
+		int ip = sizeOfPrefix;
+		int anchor = ip;
+		int op = start;
+
+		search:
+		while(ip < findLimit) {
+			// search of the match, the step grows while the data is not compressible
+			int ref;
+			int attempts = 1 << SKIP_TRIGGER;
+			while(true) {
+				int hash = hash(src, ip);
+				ref = table[hash] - shift;
+				table[hash] = ip + shift;
+				if(ref >= 0 && ip - ref <= MAX_OFFSET && readInt(src, ref) == readInt(src, ip)) {
+					break;
+				}
+				ip += attempts++ >>> SKIP_TRIGGER;
+				if(ip >= findLimit) {
+					break search;
+				}
+			}
+
+			// the match is extended backward over the literals
+			while(ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+				ip--;
+				ref--;
+			}
+
+			int matchLength = MIN_MATCH + count(src, ip + MIN_MATCH, ref + MIN_MATCH, matchLimit);
+			int literals = ip - anchor;
+			if(op + literals + literals / 255 + 8 + matchLength / 255 > outputEnd) {
+				return -1;
+			}
+			op = writeSequence(op, anchor, literals, ip - ref, matchLength);
+			ip += matchLength;
+			anchor = ip;
+
+			if(ip < findLimit) {
+				table[hash(src, ip - 2)] = ip - 2 + shift;
+			}
+		}
+
+		int literals = end - anchor;
+		if(op + literals + literals / 255 + 1 > outputEnd) {
+			return -1;
+		}
+		op = writeLiterals(op, anchor, literals, 0);
+		return op - start;
+	}
+
+	/**
+	 * Writes the sequence of literals and the match
+	 * @param op position within the output
+	 * @param anchor position of the literals within the window
+	 * @param literals number of literals
+	 * @param offset offset of the match
+	 * @param matchLength length of the match
+	 * @return position within the output after the sequence
+	 */
+	private int writeSequence(int op, int anchor, int literals, int offset, int matchLength) {
+		int length = matchLength - MIN_MATCH;
+		op = writeLiterals(op, anchor, literals, Math.min(length, 15));
+		output[op++] = (byte)offset;
+		output[op++] = (byte)(offset >>> 8);
+		if(length >= 15) {
+			op = writeLength(op, length - 15);
+		}
+		return op;
+	}
+
+	/**
+	 * Writes the token and the literals
+	 * @param op position within the output
+	 * @param anchor position of the literals within the window
+	 * @param literals number of literals
+	 * @param token low 4 bits of the token
+	 * @return position within the output after the literals
+	 */
+	private int writeLiterals(int op, int anchor, int literals, int token) {
+		if(literals >= 15) {
+			output[op++] = (byte)(0xF0 | token);
+			op = writeLength(op, literals - 15);
+		}
+		else {
+			output[op++] = (byte)(literals << 4 | token);
+		}
+		System.arraycopy(window, anchor, output, op, literals);
+		return op + literals;
+	}
+
+	/**
+	 * Writes the rest of the length as a sequence of bytes 255 terminated by the smaller byte
+	 * @param op position within the output
+	 * @param length rest of the length
+	 * @return position within the output after the length
+	 */
+	private int writeLength(int op, int length) {
+		while(length >= 255) {
+			output[op++] = (byte)255;
+			length -= 255;
+		}
+		output[op++] = (byte)length;
+		return op;
+	}
+
+	/**
+	 * Writes 4-byte big-endian number into the output
+	 * @param position position within the output
+	 * @param value number to be written
+	 */
+	private void writeInt(int position, int value) {
+		output[position] = (byte)(value >>> 24);
+		output[position + 1] = (byte)(value >>> 16);
+		output[position + 2] = (byte)(value >>> 8);
+		output[position + 3] = (byte)value;
+	}
+
+	/**
+	 * Counts the number of equal bytes
+	 * @param src array with the data
+	 * @param ip position of the current data
+	 * @param ref position of the previous data
+	 * @param limit the bytes are not compared from this position of the current data
+	 * @return number of equal bytes
+	 */
+	private static int count(byte[] src, int ip, int ref, int limit) {
+		int start = ip;
+		while(ip + Long.BYTES <= limit) {
+			long diff = (long)LONG.get(src, ip) ^ (long)LONG.get(src, ref);
+			if(diff != 0) {
+				return ip - start + (Long.numberOfTrailingZeros(diff) >>> 3);
+			}
+			ip += Long.BYTES;
+			ref += Long.BYTES;
+		}
+		while(ip < limit && src[ip] == src[ref]) {
+			ip++;
+			ref++;
+		}
+		return ip - start;
+	}
+
+	/**
+	 * Reads 4 bytes
+	 * @param src array with the data
+	 * @param position position of the bytes
+	 * @return read bytes as little-endian number
+	 */
+	private static int readInt(byte[] src, int position) {
+		return (int)INT.get(src, position);
+	}
+
+	/**
+	 * Calculates the hash of 4 bytes
+	 * @param src array with the data
+	 * @param position position of the bytes
+	 * @return hash of <code>HASH_BITS</code> bits
+	 */
+	private static int hash(byte[] src, int position) {
+		return (readInt(src, position) * 0x9E3779B1) >>> (Integer.SIZE - HASH_BITS);
+	}
+}
@@ -0,0 +1,330 @@
+package com.olegermolaev84.archive.compression;
+
+import static com.olegermolaev84.archive.compression.LzMethod.*;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+/**
+ * Decompressor of the LzMethod. The frame is decompressed at once into the window 
+ * after the previous data, then it is taken by <code>decompress</code>.
+ * The compressed frame is decompressed directly from the input if the input contains the whole frame,
+ * otherwise it is collected into the internal buffer.
+ */
+class LzDecompressor implements Decompressor {
+	/** The byte of flags is expected */
+	private static final int STATE_STREAM_HEADER = 0;
+
+	/** The header of the frame is expected */
+	private static final int STATE_FRAME_HEADER = 1;
+
+	/** The compressed data of the frame is expected */
+	private static final int STATE_FRAME = 2;
+
+	/** The end of the stream is reached */
+	private static final int STATE_END = 3;
+
+	/** Previous data (or the dictionary) followed by the data of the current frame */
+	private final byte[] window = new byte[SIZE_OF_WINDOW + SIZE_OF_FRAME];
+
+	/** Length of the previous data within the window */
+	private int sizeOfPrefix = 0;
+
+	/** Position of the decompressed data to be taken */
+	private int outputPosition = 0;
+
+	/** End of the decompressed data */
+	private int outputLimit = 0;
+
+	/** Compressed data collected from several inputs */
+	private final byte[] collected = new byte[MAX_SIZE_OF_COMPRESSED_FRAME];
+
+	/** Number of collected bytes */
+	private int sizeOfCollected = 0;
+
+	/** Array with the input data */
+	private byte[] input;
+
+	/** Position of the input data */
+	private int inputPosition = 0;
+
+	/** End of the input data */
+	private int inputLimit = 0;
+
+	/** Current state of the stream */
+	private int state = STATE_STREAM_HEADER;
+
+	/** Length of the uncompressed data of the current frame */
+	private int sizeOfFrame;
+
+	/** Length of the compressed data of the current frame with the flag of the stored data */
+	private int sizeOfCompressedFrame;
+
+	/** Shows that the stream needs the dictionary which is not set yet */
+	private boolean needsDictionary = false;
+
+	@Override
+	public void setInput(byte[] b, int off, int len) {
+		input = b;
+		inputPosition = off;
+		inputLimit = off + len;
+	}
+
+	@Override
+	public boolean needsInput() {
+		return state != STATE_END && !needsDictionary && outputPosition == outputLimit && inputPosition == inputLimit;
+	}
+
+	@Override
+	public boolean needsDictionary() {
+		return needsDictionary;
+	}
+
+	@Override
+	public void setDictionary(byte[] dictionary) {
+		int length = Math.min(dictionary.length, SIZE_OF_WINDOW);
+		System.arraycopy(dictionary, dictionary.length - length, window, 0, length);
+		sizeOfPrefix = length;
+		needsDictionary = false;
+	}
+
+	@Override
+	public int decompress(byte[] b, int off, int len) throws DataFormatException {
+		int read = 0;
+		while(read < len) {
+			if(outputPosition < outputLimit) {
+				int length = Math.min(len - read, outputLimit - outputPosition);
+				System.arraycopy(window, outputPosition, b, off + read, length);
+				outputPosition += length;
+				read += length;
+				if(outputPosition == outputLimit) {
+					slide();
+				}
+			}
+			else if(state == STATE_END || needsDictionary || !next()) {
+				break;
+			}
+		}
+		return read;
+	}
+
+	@Override
+	public int decompress(ByteBuffer output) throws DataFormatException {
+		int read = 0;
+		while(output.hasRemaining()) {
+			if(outputPosition < outputLimit) {
+				int length = Math.min(output.remaining(), outputLimit - outputPosition);
+				output.put(window, outputPosition, length);
+				outputPosition += length;
+				read += length;
+				if(outputPosition == outputLimit) {
+					slide();
+				}
+			}
+			else if(state == STATE_END || needsDictionary || !next()) {
+				break;
+			}
+		}
+		return read;
+	}
+
+	@Override
+	public boolean finished() {
+		return state == STATE_END && outputPosition == outputLimit;
+	}
+
+	@Override
+	public void reset() {
+		sizeOfPrefix = 0;
+		outputPosition = 0;
+		outputLimit = 0;
+		sizeOfCollected = 0;
+		input = null;
+		inputPosition = 0;
+		inputLimit = 0;
+		state = STATE_STREAM_HEADER;
+		needsDictionary = false;
+	}
+
+	@Override
+	public void end() {
+		input = null;
+	}
+
+	/**
+	 * Processes the next element of the stream
+	 * @return <code>false</code> if more input is needed
+	 * @throws DataFormatException will be thrown if the stream is corrupted
+	 */
+	private boolean next() throws DataFormatException {
+		switch(state) {
+		case STATE_STREAM_HEADER:
+			if(inputPosition == inputLimit) {
+				return false;
+			}
+			int flags = input[inputPosition++];
+			if((flags & ~FLAG_DICTIONARY) != 0) {
+				throw new DataFormatException("Unknown flags of the stream: " + flags);
+			}
+			needsDictionary = (flags & FLAG_DICTIONARY) != 0;
+			state = STATE_FRAME_HEADER;
+			return true;
+
+		case STATE_FRAME_HEADER:
+			if(!collect(SIZE_OF_FRAME_HEADER)) {
+				return false;
+			}
+			sizeOfFrame = readInt(collected, 0);
+			sizeOfCompressedFrame = readInt(collected, 4);
+			sizeOfCollected = 0;
+			int length = sizeOfCompressedFrame & ~STORED;
+			if(sizeOfFrame == 0 && sizeOfCompressedFrame == 0) {
+				state = STATE_END;
+			}
+			else if(sizeOfFrame <= 0 || sizeOfFrame > SIZE_OF_FRAME || length > MAX_SIZE_OF_COMPRESSED_FRAME
+					|| ((sizeOfCompressedFrame & STORED) != 0 && length != sizeOfFrame)) {
+				throw new DataFormatException("Wrong header of the frame");
+			}
+			else {
+				state = STATE_FRAME;
+			}
+			return true;
+
+		case STATE_FRAME:
+			length = sizeOfCompressedFrame & ~STORED;
+			if(sizeOfCollected == 0 && inputLimit - inputPosition >= length) {
+				decompressFrame(input, inputPosition, length);
+				inputPosition += length;
+			}
+			else if(collect(length)) {
+				decompressFrame(collected, 0, length);
+				sizeOfCollected = 0;
+			}
+			else {
+				return false;
+			}
+			state = STATE_FRAME_HEADER;
+			return true;
+
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Collects the denoted number of bytes from the input
+	 * @param length number of bytes
+	 * @return <code>true</code> if all bytes are collected
+	 */
+	private boolean collect(int length) {
+		int available = Math.min(length - sizeOfCollected, inputLimit - inputPosition);
+		System.arraycopy(input, inputPosition, collected, sizeOfCollected, available);
+		inputPosition += available;
+		sizeOfCollected += available;
+		return sizeOfCollected == length;
+	}
+
+	/**
+	 * Decompresses the frame into the window after the previous data
+	 * @param src array with the compressed data
+	 * @param start position of the compressed data
+	 * @param length length of the compressed data
+	 * @throws DataFormatException will be thrown if the data is corrupted
+	 */
+	private void decompressFrame(byte[] src, int start, int length) throws DataFormatException {
+		outputPosition = sizeOfPrefix;
+		outputLimit = sizeOfPrefix + sizeOfFrame;
+		if((sizeOfCompressedFrame & STORED) != 0) {
+			System.arraycopy(src, start, window, sizeOfPrefix, length);
+			return;
+		}
+
+		try {
+			int ip = start;
+			int end = start + length;
+			int op = sizeOfPrefix;
+			byte[] dst = window;
+			while(true) {
+				int token = src[ip++] & 0xFF;
+
+				int literals = token >>> 4;
+				if(literals == 15) {
+					int b;
+					do {
+						b = src[ip++] & 0xFF;
+						literals += b;
+					} while(b == 255);
+				}
+				if(literals > outputLimit - op || literals > end - ip) {
+					throw new DataFormatException("Corrupted literals of the frame");
+				}
+				System.arraycopy(src, ip, dst, op, literals);
+				ip += literals;
+				op += literals;
+				if(ip == end) {
+					break;
+				}
+
+				int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+				ip += 2;
+				int matchLength = token & 0x0F;
+				if(matchLength == 15) {
+					int b;
+					do {
+						b = src[ip++] & 0xFF;
+						matchLength += b;
+					} while(b == 255);
+				}
+				matchLength += MIN_MATCH;
+
+				int ref = op - offset;
+				if(offset == 0 || ref < 0 || matchLength > outputLimit - op) {
+					throw new DataFormatException("Corrupted match of the frame");
+				}
+				if(offset >= matchLength) {
+					System.arraycopy(dst, ref, dst, op, matchLength);
+					op += matchLength;
+				}
+				else {
+					// overlapped match repeats the data, the copied part grows twice per step
+					while(matchLength > 0) {
+						int part = Math.min(matchLength, op - ref);
+						System.arraycopy(dst, ref, dst, op, part);
+						op += part;
+						matchLength -= part;
+					}
+				}
+			}
+			if(op != outputLimit) {
+				throw new DataFormatException("Wrong length of the frame");
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new DataFormatException("Corrupted data of the frame");
+		}
+	}
+
+	/**
+	 * Keeps the last bytes of the data as the previous data of the next frame
+	 */
+	private void slide() {
+		int size = outputLimit;
+		if(size > SIZE_OF_WINDOW) {
+			System.arraycopy(window, size - SIZE_OF_WINDOW, window, 0, SIZE_OF_WINDOW);
+			size = SIZE_OF_WINDOW;
+		}
+		sizeOfPrefix = size;
+		outputPosition = size;
+		outputLimit = size;
+	}
+
+	/**
+	 * Reads 4-byte big-endian number
+	 * @param src array with the number
+	 * @param position position of the number
+	 * @return read number
+	 */
+	private static int readInt(byte[] src, int position) {
+		return (src[position] & 0xFF) << 24 | (src[position + 1] & 0xFF) << 16
+				| (src[position + 2] & 0xFF) << 8 | (src[position + 3] & 0xFF);
+	}
+}
@@ -0,0 +1,67 @@
+package com.olegermolaev84.archive.compression;
+
+/**
+ * Fast compression of the LZ77 family without entropy coding. The compression ratio is 
+ * lower than ratio of deflate, but both compression and decompression are several times faster.
+ * <br>The stream starts with the byte of flags (bit 0: the data is compressed with the preset dictionary).
+ * Then frames follow, each frame is the length of the uncompressed data, the length of the compressed data
+ * (the highest bit shows that the data is stored as is) and the data. Both lengths are 4-byte big-endian numbers.
+ * The stream is terminated by the frame with both lengths equal to 0.
+ * <br>The data of the frame is a sequence of LZ4-like sequences: the token (4 bits of literals length and 
+ * 4 bits of match length), literals, 2-byte little-endian offset of the match and the rest of the match length.
+ * A match can reference the data of previous frames and the preset dictionary within the window of 64 KB.
+ */
+public class LzMethod implements CompressionMethod {
+	/** Identifier of the method */
+	public static final int ID = 2;
+
+	/** Flag of the stream: the data is compressed with the preset dictionary */
+	static final int FLAG_DICTIONARY = 1;
+
+	/** Maximal length of the uncompressed data of the frame */
+	static final int SIZE_OF_FRAME = 64 * 1024;
+
+	/** Size of the window the matches are searched within */
+	static final int SIZE_OF_WINDOW = 64 * 1024;
+
+	/** Maximal offset of the match */
+	static final int MAX_OFFSET = SIZE_OF_WINDOW - 1;
+
+	/** Minimal length of the match */
+	static final int MIN_MATCH = 4;
+
+	/** Number of the last bytes of the frame which are always literals */
+	static final int LAST_LITERALS = 5;
+
+	/** Matches are not started within this number of the last bytes of the frame */
+	static final int MATCH_FIND_LIMIT = 12;
+
+	/** Bit of the length of the compressed data, which shows that the data is stored as is */
+	static final int STORED = 0x80000000;
+
+	/** Size of the header of the frame */
+	static final int SIZE_OF_FRAME_HEADER = 8;
+
+	/** Maximal length of the compressed data of the frame */
+	static final int MAX_SIZE_OF_COMPRESSED_FRAME = SIZE_OF_FRAME + SIZE_OF_FRAME / 255 + 16;
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+
+	@Override
+	public String getName() {
+		return "lz";
+	}
+
+	@Override
+	public Compressor createCompressor(int level) {
+		return new LzCompressor();
+	}
+
+	@Override
+	public Decompressor createDecompressor() {
+		return new LzDecompressor();
+	}
+}
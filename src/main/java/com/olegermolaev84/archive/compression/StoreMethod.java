@@ -0,0 +1,147 @@
+package com.olegermolaev84.archive.compression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores the data as is. It is useful for already compressed data and when
+ * the speed is more important than the size of the archive. The preset dictionary is ignored.
+ */
+public class StoreMethod implements CompressionMethod {
+	/** Identifier of the method */
+	public static final int ID = 1;
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+
+	@Override
+	public String getName() {
+		return "store";
+	}
+
+	@Override
+	public Compressor createCompressor(int level) {
+		return new Compressor() {
+			/** Data to be copied */
+			private ByteBuffer input;
+
+			/** Shows that the input is ended */
+			private boolean finish = false;
+
+			@Override
+			public void setInput(ByteBuffer input) {
+				this.input = input;
+			}
+
+			@Override
+			public boolean needsInput() {
+				return input == null || !input.hasRemaining();
+			}
+
+			@Override
+			public void setDictionary(byte[] dictionary) {
+			}
+
+			@Override
+			public void finish() {
+				finish = true;
+			}
+
+			@Override
+			public boolean finished() {
+				return finish && needsInput();
+			}
+
+			@Override
+			public int compress(byte[] b, int off, int len) {
+				if(needsInput()) {
+					return 0;
+				}
+				int length = Math.min(len, input.remaining());
+				input.get(b, off, length);
+				return length;
+			}
+
+			@Override
+			public void reset() {
+				input = null;
+				finish = false;
+			}
+
+			@Override
+			public void end() {
+				reset();
+			}
+		};
+	}
+
+	@Override
+	public Decompressor createDecompressor() {
+		return new Decompressor() {
+			/** Array with the data to be copied */
+			private byte[] input;
+
+			/** Position of the data */
+			private int position;
+
+			/** End of the data */
+			private int limit;
+
+			@Override
+			public void setInput(byte[] b, int off, int len) {
+				input = b;
+				position = off;
+				limit = off + len;
+			}
+
+			@Override
+			public boolean needsInput() {
+				return position == limit;
+			}
+
+			@Override
+			public boolean needsDictionary() {
+				return false;
+			}
+
+			@Override
+			public void setDictionary(byte[] dictionary) {
+			}
+
+			@Override
+			public int decompress(byte[] b, int off, int len) {
+				int length = Math.min(len, limit - position);
+				System.arraycopy(input, position, b, off, length);
+				position += length;
+				return length;
+			}
+
+			@Override
+			public int decompress(ByteBuffer output) {
+				int length = Math.min(output.remaining(), limit - position);
+				output.put(input, position, length);
+				position += length;
+				return length;
+			}
+
+			@Override
+			public boolean finished() {
+				// the stored stream does not have the end marker, it is ended with the input
+				return input != null && position == limit;
+			}
+
+			@Override
+			public void reset() {
+				input = null;
+				position = 0;
+				limit = 0;
+			}
+
+			@Override
+			public void end() {
+				reset();
+			}
+		};
+	}
+}
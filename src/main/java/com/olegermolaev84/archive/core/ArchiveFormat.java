@@ -0,0 +1,410 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.olegermolaev84.archive.compression.CompressionMethods;
+import com.olegermolaev84.archive.util.FileFormatException;
+
+/**
+ * Describes the binary format of the archive and implements reading and writing of its elements.
+ * <br>The archive starts with the magic number and the version of the format.
+ * Then entries follow, each entry starts with the byte of its type.
+ * The entry of a path consists of the encoded PathHeader followed by the compressed data.
+ * The entry of a solid block consists of the encoded SolidBlockHeader followed by the compressed data
+ * of all its files.
+ * The entry of the preset dictionary precedes all other entries if the files are compressed with
+ * the dictionary, such entries have the dictionary flag.
+ * The entry of a path with the reference flag does not have compressed data, its content is
+ * the content of the target path (or its block) which precedes it.
+ * The data compressed with a method other than deflate has the identifier of the method in the header:
+ * the path header has the method flag, the solid block has its own type of the entry.
+ * The path header of the file's data and the headers of files of the solid block have the checksum flag 
+ * followed by the CRC32C checksum of the uncompressed data of the file (or block) at the end of the header.
+ * The sequence of entries is terminated by the end entry.
+ * <br>Numbers are written as unsigned variable-length integers (7 bits per byte,
+ * the least significant group first), strings are written as the length followed by UTF-8 bytes.
+ */
+final class ArchiveFormat {
+	/** Magic number the archive starts with: "ARCH" */
+	static final int MAGIC = 0x41524348;
+
+	/** First two bytes of the legacy archive written by ObjectOutputStream */
+	static final int LEGACY_MAGIC = 0xACED;
+
+	/** Version of the format */
+	static final byte VERSION = 2;
+
+	/** Type of the entry which terminates the sequence of entries */
+	static final byte ENTRY_END = 0;
+
+	/** Type of the entry with PathHeader and compressed data */
+	static final byte ENTRY_PATH = 1;
+	
+	/** Type of the entry with SolidBlockHeader and compressed data */
+	static final byte ENTRY_SOLID = 2;
+	
+	/** Type of the entry with the preset dictionary */
+	static final byte ENTRY_DICTIONARY = 3;
+	
+	/** Type of the entry with the identifier of the compression method, SolidBlockHeader and compressed data */
+	static final byte ENTRY_SOLID_METHOD = 4;
+
+	/** Flag of PathHeader: regular file */
+	private static final int FLAG_REGULAR_FILE = 1;
+
+	/** Flag of PathHeader: block of the file */
+	private static final int FLAG_BLOCK = 1 << 1;
+
+	/** Flag of PathHeader: data is compressed with the preset dictionary */
+	private static final int FLAG_DICTIONARY = 1 << 2;
+
+	/** Flag of PathHeader: content is the same as content of the preceding target path */
+	private static final int FLAG_REFERENCE = 1 << 3;
+
+	/** Flag of PathHeader: time of the last modification is written */
+	private static final int FLAG_MODIFIED_TIME = 1 << 4;
+
+	/** Flag of PathHeader: file is unchanged since the base archive */
+	private static final int FLAG_UNCHANGED = 1 << 5;
+
+	/** Flag of PathHeader: path is deleted since the base archive */
+	private static final int FLAG_DELETED = 1 << 6;
+
+	/** Flag of PathHeader: identifier of the compression method is written */
+	private static final int FLAG_METHOD = 1 << 7;
+
+	/** Flag of PathHeader: CRC32C checksum of the uncompressed data is written */
+	private static final int FLAG_CHECKSUM = 1 << 8;
+
+	/** Maximal length of the encoded path name */
+	private static final int MAX_PATH_LENGTH = 64 * 1024;
+	
+	/** Maximal number of members of the solid block */
+	private static final int MAX_SOLID_MEMBERS = 1024 * 1024;
+
+	private ArchiveFormat() {
+	}
+
+	/**
+	 * Writes the magic number and the version of the format
+	 * @param out output the archive is written to
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static void writeArchiveHeader(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+	}
+
+	/**
+	 * Reads and checks the magic number and the version of the format
+	 * @param in input the archive is read from
+	 * @throws FileFormatException will be thrown if the input is not an archive of supported version
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static void readArchiveHeader(DataInput in) throws FileFormatException, IOException {
+		try {
+			if(in.readInt() != MAGIC) {
+				throw new FileFormatException("Corrupted input stream format: unknown archive format");
+			}
+		} catch (EOFException e) {
+			throw new FileFormatException("Corrupted input stream format: unknown archive format");
+		}
+		byte version = in.readByte();
+		if(version != VERSION) {
+			throw new FileFormatException("Unsupported version of the archive format: " + version);
+		}
+	}
+
+	/**
+	 * Writes the entry type and the encoded PathHeader
+	 * @param out output the archive is written to
+	 * @param header header to be written
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static void writePathHeader(DataOutput out, PathHeader header) throws IOException {
+		int flags = (header.isRegularFile() ? FLAG_REGULAR_FILE : 0)
+				| (header.isBlock() ? FLAG_BLOCK : 0)
+				| (header.usesDictionary() ? FLAG_DICTIONARY : 0)
+				| (header.isReference() ? FLAG_REFERENCE : 0)
+				| (header.getLastModifiedTime() > 0 ? FLAG_MODIFIED_TIME : 0)
+				| (header.isUnchanged() ? FLAG_UNCHANGED : 0)
+				| (header.isDeleted() ? FLAG_DELETED : 0)
+				| (header.getCompressionMethod() != 0 ? FLAG_METHOD : 0)
+				| (header.hasChecksum() ? FLAG_CHECKSUM : 0);
+
+		out.writeByte(ENTRY_PATH);
+		writeVarLong(out, flags);
+		writeString(out, header.getPathName());
+		writeVarLong(out, header.getSizeOfData());
+		if(header.isRegularFile()) {
+			writeVarLong(out, header.getSizeOfFile());
+		}
+		if(header.isBlock()) {
+			writeVarLong(out, header.getOffset());
+			writeVarLong(out, header.getSizeOfBlock());
+		}
+		if(header.isReference()) {
+			writeString(out, header.getTargetPathName());
+			writeVarLong(out, header.getTargetOffset());
+		}
+		if(header.getLastModifiedTime() > 0) {
+			writeVarLong(out, header.getLastModifiedTime());
+		}
+		if(header.getCompressionMethod() != 0) {
+			writeVarLong(out, header.getCompressionMethod());
+		}
+		if(header.hasChecksum()) {
+			out.writeInt(header.getChecksum());
+		}
+	}
+
+	/**
+	 * Reads the encoded PathHeader. The entry type should be already read.
+	 * @param in input the archive is read from
+	 * @return read PathHeader
+	 * @throws FileFormatException will be thrown if the header is corrupted
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static PathHeader readPathHeader(DataInput in) throws FileFormatException, IOException {
+		long flags = readVarLong(in);
+		String pathName = readString(in);
+		long sizeOfData = readVarLong(in);
+		long sizeOfFile = 0;
+		long offset = 0;
+
+		boolean isRegularFile = (flags & FLAG_REGULAR_FILE) != 0;
+		if(isRegularFile) {
+			sizeOfFile = readVarLong(in);
+		}
+		long sizeOfBlock = sizeOfFile;
+		if((flags & FLAG_BLOCK) != 0) {
+			offset = readVarLong(in);
+			sizeOfBlock = readVarLong(in);
+			if(offset + sizeOfBlock > sizeOfFile || sizeOfBlock == sizeOfFile) {
+				throw new FileFormatException("Corrupted input stream format: wrong block of file: " + pathName);
+			}
+		}
+
+		String targetPathName = null;
+		long targetOffset = 0;
+		if((flags & FLAG_REFERENCE) != 0) {
+			if(!isRegularFile || sizeOfData != 0) {
+				throw new FileFormatException("Corrupted input stream format: wrong reference of file: " + pathName);
+			}
+			targetPathName = readString(in);
+			targetOffset = readVarLong(in);
+		}
+		long lastModifiedTime = (flags & FLAG_MODIFIED_TIME) != 0 ? readVarLong(in) : 0;
+		int compressionMethod = (flags & FLAG_METHOD) != 0 ? readCompressionMethod(in) : 0;
+		boolean hasChecksum = (flags & FLAG_CHECKSUM) != 0;
+		int checksum = hasChecksum ? in.readInt() : 0;
+
+		if((flags & (FLAG_UNCHANGED | FLAG_DELETED)) != 0 && sizeOfData != 0) {
+			throw new FileFormatException("Corrupted input stream format: wrong entry of path: " + pathName);
+		}
+		else if((flags & FLAG_UNCHANGED) != 0) {
+			return PathHeader.unchanged(pathName, sizeOfFile, lastModifiedTime);
+		}
+		else if((flags & FLAG_DELETED) != 0) {
+			return PathHeader.deleted(isRegularFile, pathName);
+		}
+
+		PathHeader header = hasChecksum 
+				? new PathHeader(isRegularFile, sizeOfData, pathName, sizeOfFile, offset, sizeOfBlock,
+						(flags & FLAG_DICTIONARY) != 0, lastModifiedTime, compressionMethod, checksum)
+				: new PathHeader(isRegularFile, sizeOfData, pathName, sizeOfFile, offset, sizeOfBlock,
+						(flags & FLAG_DICTIONARY) != 0, lastModifiedTime, compressionMethod);
+		return targetPathName == null ? header : new PathHeader(header, targetPathName, targetOffset);
+	}
+
+	/**
+	 * Writes the entry type and the encoded SolidBlockHeader
+	 * @param out output the archive is written to
+	 * @param header header to be written
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static void writeSolidBlockHeader(DataOutput out, SolidBlockHeader header) throws IOException {
+		if(header.getCompressionMethod() != 0) {
+			out.writeByte(ENTRY_SOLID_METHOD);
+			writeVarLong(out, header.getCompressionMethod());
+		}
+		else {
+			out.writeByte(ENTRY_SOLID);
+		}
+		writeVarLong(out, header.getMembers().size());
+		for(PathHeader member : header.getMembers()) {
+			writeVarLong(out, (member.isRegularFile() ? FLAG_REGULAR_FILE : 0)
+					| (member.getLastModifiedTime() > 0 ? FLAG_MODIFIED_TIME : 0)
+					| (member.hasChecksum() ? FLAG_CHECKSUM : 0));
+			writeString(out, member.getPathName());
+			if(member.isRegularFile()) {
+				writeVarLong(out, member.getSizeOfFile());
+			}
+			if(member.getLastModifiedTime() > 0) {
+				writeVarLong(out, member.getLastModifiedTime());
+			}
+			if(member.hasChecksum()) {
+				out.writeInt(member.getChecksum());
+			}
+		}
+		writeVarLong(out, header.getSizeOfData());
+	}
+
+	/**
+	 * Shows is the entry of the denoted type a solid block
+	 * @param type type of the entry
+	 * @return <code>true</code> if the entry is a solid block
+	 */
+	static boolean isSolidBlock(byte type) {
+		return type == ENTRY_SOLID || type == ENTRY_SOLID_METHOD;
+	}
+
+	/**
+	 * Reads the encoded SolidBlockHeader. The entry type should be already read.
+	 * @param in input the archive is read from
+	 * @param type type of the entry
+	 * @return read SolidBlockHeader
+	 * @throws FileFormatException will be thrown if the header is corrupted
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static SolidBlockHeader readSolidBlockHeader(DataInput in, byte type) throws FileFormatException, IOException {
+		int compressionMethod = type == ENTRY_SOLID_METHOD ? readCompressionMethod(in) : 0;
+		long numberOfMembers = readVarLong(in);
+		if(numberOfMembers > MAX_SOLID_MEMBERS) {
+			throw new FileFormatException("Corrupted input stream format: too many files in the solid block");
+		}
+
+		List<PathHeader> members = new ArrayList<>((int)numberOfMembers);
+		for(int i = 0; i < numberOfMembers; i++) {
+			long flags = readVarLong(in);
+			boolean isRegularFile = (flags & FLAG_REGULAR_FILE) != 0;
+			String pathName = readString(in);
+			long sizeOfFile = isRegularFile ? readVarLong(in) : 0;
+			long lastModifiedTime = (flags & FLAG_MODIFIED_TIME) != 0 ? readVarLong(in) : 0;
+			if((flags & FLAG_CHECKSUM) != 0) {
+				members.add(new PathHeader(isRegularFile, 0, pathName, sizeOfFile, 0, sizeOfFile, false, 
+						lastModifiedTime, 0, in.readInt()));
+			}
+			else {
+				members.add(new PathHeader(isRegularFile, 0, pathName, sizeOfFile, 0, sizeOfFile, false, 
+						lastModifiedTime));
+			}
+		}
+		return new SolidBlockHeader(members, readVarLong(in), compressionMethod);
+	}
+
+	/**
+	 * Reads the identifier of the compression method and checks that the method is known
+	 * @param in input the archive is read from
+	 * @return identifier of the compression method
+	 * @throws FileFormatException will be thrown if the method is unknown
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private static int readCompressionMethod(DataInput in) throws FileFormatException, IOException {
+		long id = readVarLong(in);
+		if(id > Integer.MAX_VALUE || CompressionMethods.get((int)id) == null) {
+			throw new FileFormatException("Corrupted input stream format: unknown compression method: " + id);
+		}
+		return (int)id;
+	}
+
+	/**
+	 * Writes the entry type and the preset dictionary
+	 * @param out output the archive is written to
+	 * @param dictionary dictionary to be written
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static void writeDictionary(DataOutput out, byte[] dictionary) throws IOException {
+		out.writeByte(ENTRY_DICTIONARY);
+		writeVarLong(out, dictionary.length);
+		out.write(dictionary);
+	}
+
+	/**
+	 * Reads the preset dictionary. The entry type should be already read.
+	 * @param in input the archive is read from
+	 * @return read dictionary
+	 * @throws FileFormatException will be thrown if the dictionary is too large
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static byte[] readDictionary(DataInput in) throws FileFormatException, IOException {
+		long length = readVarLong(in);
+		if(length > DictionaryTrainer.MAX_DICTIONARY_SIZE) {
+			throw new FileFormatException("Corrupted input stream format: dictionary is too large");
+		}
+		byte[] dictionary = new byte[(int)length];
+		in.readFully(dictionary);
+		return dictionary;
+	}
+
+	/**
+	 * Writes the number as unsigned variable-length integer
+	 * @param out output the number is written to
+	 * @param value not negative number
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	/**
+	 * Reads the unsigned variable-length integer
+	 * @param in input the number is read from
+	 * @return read number
+	 * @throws FileFormatException will be thrown if the number is too long
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static long readVarLong(DataInput in) throws FileFormatException, IOException {
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				if(value < 0) {
+					break;
+				}
+				return value;
+			}
+		}
+		throw new FileFormatException("Corrupted input stream format: malformed number");
+	}
+
+	/**
+	 * Writes the string as its length followed by UTF-8 bytes
+	 * @param out output the string is written to
+	 * @param value string to be written
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static void writeString(DataOutput out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads the string written by <code>writeString</code>
+	 * @param in input the string is read from
+	 * @return read string
+	 * @throws FileFormatException will be thrown if the string is too long
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static String readString(DataInput in) throws FileFormatException, IOException {
+		long length = readVarLong(in);
+		if(length > MAX_PATH_LENGTH) {
+			throw new FileFormatException("Corrupted input stream format: path name is too long");
+		}
+		byte[] bytes = new byte[(int)length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
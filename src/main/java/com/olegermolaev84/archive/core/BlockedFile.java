@@ -0,0 +1,108 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The file which is unpacked from several blocks in parallel.
+ * The file is created by the first block being unpacked and closed
+ * when all blocks are written.
+ */
+class BlockedFile {
+	/** Path of the file to be created */
+	private final Path path;
+
+	/** Number of bytes which are not written yet */
+	private final AtomicLong remaining;
+
+	/** Channel the blocks are written to */
+	private FileChannel channel;
+
+	/** Shows that the file could not be created */
+	private boolean failed = false;
+
+	/** Cache of the created directories */
+	private final Directories directories;
+
+	/**
+	 * Constructor
+	 * @param path Path of the file to be created
+	 * @param sizeOfFile size of the whole uncompressed file
+	 * @param directories cache of the created directories
+	 */
+	BlockedFile(Path path, long sizeOfFile, Directories directories) {
+		this.path = path;
+		this.remaining = new AtomicLong(sizeOfFile);
+		this.directories = directories;
+	}
+
+	/**
+	 * Returns the channel to write blocks to. The file is created by the first call.
+	 * @return channel or <code>null</code> if the file could not be created by previous call
+	 * @throws IOException will be thrown if the file cannot be created
+	 */
+	synchronized FileChannel getChannel() throws IOException {
+		if(channel == null && !failed) {
+			try {
+				directories.createParent(path);
+				channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+		return channel;
+	}
+
+	/**
+	 * Writes the block into the file. The file is closed when the last block is written.
+	 * @param data uncompressed data of the block
+	 * @param position offset of the block within the file
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	void write(ByteBuffer data, long position) throws IOException {
+		FileChannel channel = getChannel();
+		if(channel == null) {
+			return;
+		}
+
+		int length = data.remaining();
+		while(data.hasRemaining()) {
+			position += channel.write(data, position);
+		}
+		written(length);
+	}
+
+	/**
+	 * Counts the bytes written into the channel. The file is closed when the last block is written.
+	 * @param length number of written bytes
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	void written(long length) throws IOException {
+		if(remaining.addAndGet(-length) == 0) {
+			close();
+		}
+	}
+
+	/**
+	 * Closes the channel if it is opened
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	synchronized void close() throws IOException {
+		if(channel != null) {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns path of the file
+	 * @return path of the file
+	 */
+	Path getPath() {
+		return path;
+	}
+}
@@ -0,0 +1,217 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.olegermolaev84.archive.util.FileFormatException;
+
+/**
+ * Index of the entries of the archive. It is written after the end entry when the archive
+ * is a file and allows to unpack the denoted entries without reading the preceding ones.
+ * <br>The directory consists of the number of entries followed by the offset of the compressed
+ * data and the encoded PathHeader (or SolidBlockHeader) of each entry. The archive is terminated 
+ * by the trailer: the offset of the directory (8 bytes) and the magic number "ARCD" (4 bytes).
+ */
+class CentralDirectory {
+	/** Magic number which terminates the archive with the directory: "ARCD" */
+	static final int MAGIC = 0x41524344;
+
+	/** Size of the trailer */
+	static final int SIZE_OF_TRAILER = Long.BYTES + Integer.BYTES;
+
+	/**
+	 * Entry of the directory
+	 */
+	static class Entry {
+		/** Offset of the compressed data within the archive */
+		private final long offset;
+
+		/** Header of the entry. <code>null</code> if the entry is the solid block */
+		private final PathHeader header;
+
+		/** Header of the solid block. <code>null</code> if the entry is not the solid block */
+		private final SolidBlockHeader solidBlock;
+
+		/**
+		 * Constructor
+		 * @param offset offset of the compressed data within the archive
+		 * @param header header of the entry
+		 * @param solidBlock header of the solid block
+		 */
+		private Entry(long offset, PathHeader header, SolidBlockHeader solidBlock) {
+			this.offset = offset;
+			this.header = header;
+			this.solidBlock = solidBlock;
+		}
+
+		/**
+		 * Returns offset of the compressed data within the archive
+		 * @return offset of the compressed data
+		 */
+		long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Returns header of the entry
+		 * @return header of the entry or <code>null</code> if the entry is the solid block
+		 */
+		PathHeader getHeader() {
+			return header;
+		}
+
+		/**
+		 * Returns header of the solid block
+		 * @return header of the solid block or <code>null</code> if the entry is not the solid block
+		 */
+		SolidBlockHeader getSolidBlock() {
+			return solidBlock;
+		}
+
+		/**
+		 * Returns size of compressed data of the entry
+		 * @return size of compressed data
+		 */
+		long getSizeOfData() {
+			return header != null ? header.getSizeOfData() : solidBlock.getSizeOfData();
+		}
+	}
+
+	/** Entries in the order they are written to the archive */
+	private final List<Entry> entries = new ArrayList<>();
+
+	/** Offset of the directory within the archive. -1 if the directory is not read from the archive */
+	private long offset = -1;
+
+	/**
+	 * Adds the entry to the directory
+	 * @param offset offset of the compressed data within the archive
+	 * @param header header of the entry
+	 */
+	void add(long offset, PathHeader header) {
+		entries.add(new Entry(offset, header, null));
+	}
+
+	/**
+	 * Adds the solid block to the directory
+	 * @param offset offset of the compressed data within the archive
+	 * @param solidBlock header of the solid block
+	 */
+	void add(long offset, SolidBlockHeader solidBlock) {
+		entries.add(new Entry(offset, null, solidBlock));
+	}
+
+	/**
+	 * Returns entries in the order they are written to the archive
+	 * @return list of entries
+	 */
+	List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Returns the offset of the directory read from the archive. The end entry precedes the directory.
+	 * @return offset of the directory or -1 if the directory is not read from the archive
+	 */
+	long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Removes the entries added after the denoted number of entries
+	 * @param numberOfEntries number of entries to be kept
+	 */
+	void truncate(int numberOfEntries) {
+		entries.subList(numberOfEntries, entries.size()).clear();
+	}
+
+	/**
+	 * Writes the directory and the trailer
+	 * @param out output the archive is written to
+	 * @param directoryOffset offset of the directory within the archive
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	void write(DataOutput out, long directoryOffset) throws IOException {
+		ArchiveFormat.writeVarLong(out, entries.size());
+		for(Entry entry : entries) {
+			ArchiveFormat.writeVarLong(out, entry.offset);
+			if(entry.header != null) {
+				ArchiveFormat.writePathHeader(out, entry.header);
+			}
+			else {
+				ArchiveFormat.writeSolidBlockHeader(out, entry.solidBlock);
+			}
+		}
+		out.writeLong(directoryOffset);
+		out.writeInt(MAGIC);
+	}
+
+	/**
+	 * Reads the directory of the archive file. The position of the channel is changed.
+	 * The offsets of the directory are relative to the start of the archive, which is not 
+	 * the start of the file if the archive is written after other data.
+	 * @param channel channel of the archive file
+	 * @param start position of the start of the archive within the file
+	 * @return read directory or <code>null</code> if the archive does not have the directory
+	 * @throws FileFormatException will be thrown if the directory is corrupted
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	static CentralDirectory read(FileChannel channel, long start) throws FileFormatException, IOException {
+		long size = channel.size() - start;
+		if(size < SIZE_OF_TRAILER) {
+			return null;
+		}
+
+		ByteBuffer trailer = ByteBuffer.allocate(SIZE_OF_TRAILER);
+		while(trailer.hasRemaining()) {
+			if(channel.read(trailer, start + size - SIZE_OF_TRAILER + trailer.position()) < 0) {
+				return null;
+			}
+		}
+		trailer.flip();
+		long directoryOffset = trailer.getLong();
+		if(trailer.getInt() != MAGIC) {
+			return null;
+		}
+		if(directoryOffset < 0 || directoryOffset > size - SIZE_OF_TRAILER) {
+			throw new FileFormatException("Corrupted input stream format: wrong offset of the directory");
+		}
+
+		// the stream is not closed in order to keep the channel opened
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Channels.newInputStream(channel.position(start + directoryOffset))));
+		CentralDirectory directory = new CentralDirectory();
+		directory.offset = directoryOffset;
+		try {
+			long numberOfEntries = ArchiveFormat.readVarLong(in);
+			for(long i = 0; i < numberOfEntries; i++) {
+				long offset = ArchiveFormat.readVarLong(in);
+				byte type = in.readByte();
+				if(type == ArchiveFormat.ENTRY_PATH) {
+					directory.add(offset, ArchiveFormat.readPathHeader(in));
+				}
+				else if(ArchiveFormat.isSolidBlock(type)) {
+					directory.add(offset, ArchiveFormat.readSolidBlockHeader(in, type));
+				}
+				else {
+					throw new FileFormatException("Corrupted input stream format: cannot read the directory");
+				}
+				Entry entry = directory.entries.get(directory.entries.size() - 1);
+				if(offset + entry.getSizeOfData() > directoryOffset) {
+					throw new FileFormatException("Corrupted input stream format: wrong offset of the entry");
+				}
+			}
+		} catch (EOFException e) {
+			throw new FileFormatException("Corrupted input stream format: cannot read the directory");
+		}
+		return directory;
+	}
+}
@@ -4,29 +4,148 @@ import java.io.IOException;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.olegermolaev84.archive.metrics.CodecMetrics;
+
 /**
  * Implements common logic for both Coder and Decoder classes
  */
 public abstract class Codec {
 	protected Logger log = Logger.getGlobal();
 	
-	/** Threads executor. number of threads = number of processors */
+	/** Default number of threads which compress and decompress data */
+	public static final int DEFAULT_NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+	
+	/** Default number of threads which read and write files */
+	public static final int DEFAULT_NUMBER_OF_IO_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+	
+	/** Executor which compresses and decompresses data. Its threads do not wait for the file system */
 	protected ExecutorService executor; 
 	
+	/** Executor which reads and writes files. Its threads wait for the file system */
+	protected ExecutorService ioExecutor;
+	
 	/** Contains error description in case of any failures of coding or decoding */
 	protected String errorMessage = "";
 	
 	/** Total number of files and directories to be archived/dearchived. */
 	protected int numberOfPaths = 0;
 	
+	/** Metrics of packing or unpacking */
+	protected final CodecMetrics metrics;
+	
+	/** Progress of packing or unpacking */
+	protected ProgressTracker progress;
+	
+	/** Compressors and Decompressors reused by the threads of the executor */
+	protected final CompressorPool compressorPool;
+	
+	/** Default maximal number of tasks which are submitted but not completed yet */
+	public static final int DEFAULT_MAX_TASKS_IN_FLIGHT = 4 * Runtime.getRuntime().availableProcessors();
+	
+	/** Default maximal number of bytes buffered by tasks which are submitted but not completed yet */
+	public static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 256L * 1024 * 1024;
+	
+	/** Maximal number of tasks which are submitted but not completed yet */
+	protected int maxTasksInFlight = DEFAULT_MAX_TASKS_IN_FLIGHT;
+	
+	/** Maximal number of bytes buffered by tasks which are submitted but not completed yet */
+	protected long maxBytesInFlight = DEFAULT_MAX_BYTES_IN_FLIGHT;
+	
 	public Codec() {
-		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		this(null);
+	}
+	
+	/**
+	 * Constructor
+	 * @param parent codec whose run this codec is a part of: the tasks of this codec are run 
+	 * by the executors of the parent within its windows and are added to its metrics and progress. 
+	 * <code>null</code> if the codec runs by itself
+	 */
+	protected Codec(Codec parent) {
+		if(parent != null) {
+			executor = parent.executor;
+			ioExecutor = parent.ioExecutor;
+			compressorPool = parent.compressorPool;
+			metrics = parent.metrics;
+			progress = parent.progress;
+			maxTasksInFlight = parent.maxTasksInFlight;
+			maxBytesInFlight = parent.maxBytesInFlight;
+			log = parent.log;
+			return;
+		}
+		executor = Executors.newFixedThreadPool(DEFAULT_NUMBER_OF_THREADS);
+		ioExecutor = Executors.newFixedThreadPool(DEFAULT_NUMBER_OF_IO_THREADS);
+		compressorPool = new CompressorPool();
+		metrics = new CodecMetrics(()->queueDepth(executor), ()->queueDepth(ioExecutor));
+		progress = new ProgressTracker(null, 0);
 		Logger.getGlobal().setLevel(Level.WARNING);
 	}
 	
+	/**
+	 * Sets the number of threads which compress and decompress data. The number limits 
+	 * the processors used by the archiving. By default it equals to the number of processors.
+	 * @param numberOfThreads number of threads, should be positive
+	 * @throws IllegalArgumentException will be thrown if the denoted number is not positive
+	 */
+	public void setNumberOfThreads(int numberOfThreads) throws IllegalArgumentException {
+		if(numberOfThreads < 1) {
+			throw new IllegalArgumentException("Number of threads should be positive. Given value: " 
+					+ numberOfThreads);
+		}
+		executor.shutdown();
+		executor = Executors.newFixedThreadPool(numberOfThreads);
+	}
+	
+	/**
+	 * Sets the number of threads which read and write files. The threads mostly wait 
+	 * for the file system, so there can be more of them than processors on high-latency storage.
+	 * @param numberOfIoThreads number of threads, should be positive
+	 * @throws IllegalArgumentException will be thrown if the denoted number is not positive
+	 */
+	public void setNumberOfIoThreads(int numberOfIoThreads) throws IllegalArgumentException {
+		if(numberOfIoThreads < 1) {
+			throw new IllegalArgumentException("Number of I/O threads should be positive. Given value: " 
+					+ numberOfIoThreads);
+		}
+		ioExecutor.shutdown();
+		ioExecutor = Executors.newFixedThreadPool(numberOfIoThreads);
+	}
+	
+	/**
+	 * Reads and writes files by virtual threads, one thread per task. 
+	 * Virtual threads are provided by Java 21 and later.
+	 * @throws UnsupportedOperationException will be thrown if the Java runtime does not provide virtual threads
+	 */
+	public void setVirtualIoThreads() throws UnsupportedOperationException {
+		ExecutorService virtualExecutor;
+		try {
+			virtualExecutor = (ExecutorService)Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads are not supported by Java " 
+					+ Runtime.version());
+		}
+		ioExecutor.shutdown();
+		ioExecutor = virtualExecutor;
+	}
+	
+	/**
+	 * Shows are virtual threads provided by the Java runtime
+	 * @return <code>true</code> if virtual threads are provided
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+	
 	/**
 	 * Sets logger. By default the Logger.getGlobal() is used
 	 * @param log Logger to be set
@@ -36,6 +155,70 @@ public abstract class Codec {
 		this.log = log;
 	}
 	
+	/**
+	 * Sets the maximal number of tasks which are submitted but not completed yet: not written 
+	 * to the output by Coder or not unpacked by Decoder. Submission of new tasks is blocked until 
+	 * the completed tasks free the window.
+	 * @param maxTasksInFlight maximal number of tasks, should be positive
+	 * @throws IllegalArgumentException will be thrown if the denoted number is not positive
+	 */
+	public void setMaxTasksInFlight(int maxTasksInFlight) throws IllegalArgumentException {
+		if(maxTasksInFlight < 1) {
+			throw new IllegalArgumentException("Maximal number of tasks in flight should be positive. Given value: " 
+					+ maxTasksInFlight);
+		}
+		this.maxTasksInFlight = maxTasksInFlight;
+	}
+	
+	/**
+	 * Sets the maximal number of bytes buffered by the tasks which are submitted but not completed yet.
+	 * Coder reserves the size of the file or block for each task, Decoder reserves the size 
+	 * of the compressed data of the entry. A task which is larger than the window is submitted 
+	 * when no other tasks are in flight.
+	 * @param maxBytesInFlight maximal number of bytes, should be positive
+	 * @throws IllegalArgumentException will be thrown if the denoted number is not positive
+	 */
+	public void setMaxBytesInFlight(long maxBytesInFlight) throws IllegalArgumentException {
+		if(maxBytesInFlight < 1) {
+			throw new IllegalArgumentException("Maximal number of bytes in flight should be positive. Given value: " 
+					+ maxBytesInFlight);
+		}
+		this.maxBytesInFlight = maxBytesInFlight;
+	}
+	
+	/**
+	 * Sets the listener of the progress. The listener is called by the separate thread in the 
+	 * denoted intervals and once more when the run is finished.
+	 * @param listener listener of the progress, <code>null</code> if the progress is not reported
+	 * @param intervalMillis interval of the reports in milliseconds, should be positive
+	 * @throws IllegalArgumentException will be thrown if the denoted interval is not positive
+	 */
+	public void setProgressListener(ProgressListener listener, long intervalMillis) throws IllegalArgumentException {
+		if(intervalMillis < 1) {
+			throw new IllegalArgumentException("Interval of progress reports should be positive. Given value: " 
+					+ intervalMillis);
+		}
+		progress = new ProgressTracker(listener, intervalMillis);
+	}
+	
+	/**
+	 * Returns metrics of packing or unpacking. While the run is in progress the metrics 
+	 * are registered as MBean in the domain <code>CodecMetrics.DOMAIN</code>.
+	 * @return metrics
+	 */
+	public CodecMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Returns number of the tasks waiting in the queue of the executor
+	 * @param executor executor
+	 * @return number of the tasks, 0 if the executor does not have the queue
+	 */
+	private static int queueDepth(ExecutorService executor) {
+		return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor)executor).getQueue().size() : 0;
+	}
+	
 	/**
 	 * Returns error description in case of any failures of coding or decoding
 	 * @return error description
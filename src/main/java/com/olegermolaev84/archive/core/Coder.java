@@ -1,19 +1,52 @@
 package com.olegermolaev84.archive.core;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.olegermolaev84.archive.compression.CompressionMethod;
+import com.olegermolaev84.archive.compression.CompressionMethods;
+import com.olegermolaev84.archive.metrics.Stage;
+import com.olegermolaev84.archive.util.CountingOutputStream;
+import com.olegermolaev84.archive.util.FileFormatException;
 
 /**
- * Compresses and packs denoted files and directories into the denoted OutputStream
+ * Compresses and packs denoted files and directories into the denoted OutputStream.
+ * The archive is written in the format described by ArchiveFormat. If the output is a file,
+ * the archive is terminated by the CentralDirectory which allows random access to the entries.
+ * <br>The stored entries (compression level 0 or incompressible content) are not read into memory:
+ * their data is transferred from the files into the archive by <code>FileChannel.transferTo</code>.
+ * <br>If the positional writes are enabled, the tasks reserve ranges of the archive file and write 
+ * their entries at the reserved positions in parallel, so the entries are not written by one thread.
+ * <br>The entries can be appended to the existing archive file which has the CentralDirectory. 
+ * The new entries overwrite the end of the archive and are followed by the updated directory.
  *
  */
 public class Coder extends Codec {
@@ -21,20 +54,266 @@ public class Coder extends Codec {
 	private final String[] pathNames;
 	
 	/** Output stream the archived data to be written to */
-	private final ObjectOutputStream outputStream;
+	private final DataOutputStream outputStream;
+	
+	/** Counts bytes written to the output stream in order to know offsets of the entries */
+	private final CountingOutputStream countingStream;
+	
+	/** Channel of the archive file the stored data is transferred to. <code>null</code> if the output is not a file */
+	private final FileChannel outputChannel;
+	
+	/** Shows are the entries written by the tasks at the reserved positions of the archive file */
+	private boolean positionalWrites;
+	
+	/** Next free position within the archive. <code>null</code> if the entries are written into the stream */
+	private AtomicLong outputPosition;
+	
+	/** Position of the archive file the archive begins at */
+	private long startOfArchive;
+	
+	/** Lowest reserved position the entry is failed to be written at. <code>Long.MAX_VALUE</code> if there is no such position */
+	private final AtomicLong firstHole = new AtomicLong(Long.MAX_VALUE);
+	
+	/** Index of the written entries. <code>null</code> if the directory is not to be written */
+	private CentralDirectory directory;
+	
+	/** Offset of the end entry of the archive the entries are appended to. -1 if the archive is new */
+	private final long appendOffset;
+	
+	/** Number of entries of the archive the entries are appended to */
+	private final int numberOfBaseEntries;
 	
 	/** Compression level. Value from 0 to 9 */
 	private int compressionLevel = 9;
 	
+	/** Compression method of the entries */
+	private CompressionMethod compressionMethod = CompressionMethods.DEFLATE;
+	
+	/** Shows is the content of files classified to choose how it is compressed */
+	private boolean contentClassification = true;
+	
+	/** Default size of the block large files are split into */
+	public static final int DEFAULT_BLOCK_SIZE = 32 * 1024 * 1024;
+	
+	/** Minimal size of the block */
+	public static final int MIN_BLOCK_SIZE = 64 * 1024;
+	
+	/** Maximal size of the block */
+	public static final int MAX_BLOCK_SIZE = 1024 * 1024 * 1024;
+	
+	/** Files larger than this size are split into blocks which are compressed in parallel */
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+	
+	/** Default size of the solid block */
+	public static final int DEFAULT_SOLID_BLOCK_SIZE = 1024 * 1024;
+	
+	/** Files which are not larger than this size are packed into solid blocks in the solid mode */
+	public static final int SOLID_FILE_SIZE_LIMIT = 64 * 1024;
+	
+	/** Maximal number of files and directories in the solid block */
+	private static final int MAX_SOLID_BLOCK_PATHS = 16 * 1024;
+	
+	/** Shows are small files grouped into solid blocks */
+	private boolean solidMode = false;
+	
+	/** Target size of the uncompressed solid block */
+	private int solidBlockSize = DEFAULT_SOLID_BLOCK_SIZE;
+	
+	/** Files and directories collected for the next solid block */
+	private final List<Path> solidBlockPaths = new ArrayList<>();
+	
+	/** Size of the files collected for the next solid block */
+	private long sizeOfSolidBlock = 0;
+	
+	/** Files which are not larger than this size are sampled for the preset dictionary */
+	private static final int DICTIONARY_FILE_SIZE_LIMIT = 64 * 1024;
+	
+	/** Maximal number of files sampled for the preset dictionary */
+	private static final int MAX_DICTIONARY_SAMPLES = 1024;
+	
+	/** Maximal number of paths taken from the walk while the preset dictionary is trained */
+	private static final int MAX_DICTIONARY_PATHS = 64 * 1024;
+	
+	/** Shows is the preset dictionary trained before packing */
+	private boolean dictionaryTraining = false;
+	
+	/** Preset dictionary the files are compressed with. <code>null</code> if there is no dictionary */
+	private byte[] dictionary;
+	
+	/** Shows are files with the same content packed once */
+	private boolean deduplication = false;
+	
+	/** Shows are blocks of large files with the same content packed once */
+	private boolean chunkDeduplication = false;
+	
 	/**
-	 * Constructor.
+	 * Content of the file or block which is packed once
+	 */
+	private static class Content {
+		/** Name of the path the content is packed with */
+		private final String pathName;
+		
+		/** Offset of the content within the path */
+		private final long offset;
+		
+		/** Coder which packs the content */
+		private final DataCoder owner;
+		
+		/** Shows is the content written to the output stream. Accessed by the thread which writes results */
+		private boolean written = false;
+		
+		/** References which are to be written after the content. Accessed by the thread which writes results */
+		private final List<PathHeader> references = new ArrayList<>();
+		
+		/**
+		 * Constructor
+		 * @param pathName Name of the path the content is packed with
+		 * @param offset Offset of the content within the path
+		 * @param owner Coder which packs the content
+		 */
+		private Content(String pathName, long offset, DataCoder owner) {
+			this.pathName = pathName;
+			this.offset = offset;
+			this.owner = owner;
+		}
+	}
+	
+	/** Packed contents indexed by their SHA-256 hash. The tasks add their contents once they are read */
+	private final Map<ByteBuffer, Content> contents = new ConcurrentHashMap<>();
+	
+	/** Contents which are packed or referenced by the completed tasks but not processed by the writing thread yet */
+	private final Map<DataCoder, Content> taskContents = new ConcurrentHashMap<>();
+	
+	/** Paths of the base archive indexed by names. <code>null</code> if the archive is not incremental */
+	private Map<String, PathHeader> baseManifest;
+	
+	/** Submitted but not written tasks and the number of bytes reserved for each of them */
+	private final Map<Future<DataCoder>, Long> tasksInFlight = new HashMap<>();
+	
+	/** Number of bytes reserved by the submitted but not written tasks */
+	private long bytesInFlight = 0;
+	
+	/**
+	 * Constructor. The central directory is written if the output stream is FileOutputStream.
 	 * @param pathNames Array of files and directories' names to the archived.
 	 * @param os Output stream the archived data to be written to
 	 * @throws IOException will be thrown in case of IO errors
 	 */
 	public Coder(String[] pathNames, OutputStream os) throws IOException {
+		this(pathNames, os, os instanceof FileOutputStream ? new CentralDirectory() : null, -1);
+		ArchiveFormat.writeArchiveHeader(outputStream);
+	}
+	
+	/**
+	 * Constructor
+	 * @param pathNames Array of files and directories' names to the archived.
+	 * @param os Output stream the archived data to be written to
+	 * @param directory Index of the entries to be written
+	 * @param appendOffset offset of the end entry of the archive the entries are appended to, 
+	 *         -1 if the archive is new
+	 */
+	private Coder(String[] pathNames, OutputStream os, CentralDirectory directory, long appendOffset) {
 		this.pathNames = pathNames;
-		this.outputStream = new ObjectOutputStream(new BufferedOutputStream(os));
+		this.countingStream = new CountingOutputStream(new BufferedOutputStream(os));
+		this.outputStream = new DataOutputStream(countingStream);
+		this.directory = directory;
+		this.outputChannel = os instanceof FileOutputStream ? ((FileOutputStream)os).getChannel() : null;
+		this.appendOffset = appendOffset;
+		this.numberOfBaseEntries = directory != null ? directory.getEntries().size() : 0;
+		if(appendOffset >= 0) {
+			countingStream.addCount(appendOffset);
+		}
+	}
+	
+	/**
+	 * Creates the coder which appends the entries to the existing archive file. 
+	 * The archive is to have the CentralDirectory. Only the header and the end of the archive are read,
+	 * so the time of appending does not depend on the size of the packed data.
+	 * If the archive has the preset dictionary, the new entries are compressed with it.
+	 * If packing fails, the previous end of the archive is restored.
+	 * @param pathNames Array of files and directories' names to the appended.
+	 * @param archive archive file the entries are to be appended to
+	 * @return Coder which appends the entries when <code>pack</code> is called
+	 * @throws IllegalArgumentException will be thrown if the archive has corrupted format or does not have 
+	 *          the central directory
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	public static Coder append(String[] pathNames, Path archive) throws IllegalArgumentException, IOException {
+		RandomAccessFile file = new RandomAccessFile(archive.toFile(), "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			CentralDirectory directory;
+			byte[] dictionary = null;
+			try {
+				directory = CentralDirectory.read(channel, 0);
+				if(directory == null) {
+					throw new IllegalArgumentException("Archive: " + archive + " does not have the central directory");
+				}
+				
+				// the stream is not closed in order to keep the file opened
+				DataInputStream in = new DataInputStream(
+						new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+				ArchiveFormat.readArchiveHeader(in);
+				if(in.readByte() == ArchiveFormat.ENTRY_DICTIONARY) {
+					dictionary = ArchiveFormat.readDictionary(in);
+				}
+				
+				ByteBuffer end = ByteBuffer.allocate(1);
+				if(directory.getOffset() < 1 || channel.read(end, directory.getOffset() - 1) < 1 
+						|| end.get(0) != ArchiveFormat.ENTRY_END) {
+					throw new FileFormatException("Corrupted input stream format: end of the archive is not found");
+				}
+			} catch (FileFormatException | EOFException e) {
+				throw new IllegalArgumentException("Archive: " + archive + " has corrupted format: " + e.getMessage());
+			}
+			
+			// the new entries are written instead of the end entry
+			long appendOffset = directory.getOffset() - 1;
+			file.seek(appendOffset);
+			Coder coder = new Coder(pathNames, new FileOutputStream(file.getFD()), directory, appendOffset);
+			coder.dictionary = dictionary;
+			// the file is opened by the coder at the known position and not in the append mode
+			coder.positionalWrites = true;
+			return coder;
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Enables or disables writing of the entries at the reserved positions of the archive file. 
+	 * If enabled, each task reserves the range of the archive for its entry and writes the entry 
+	 * in parallel with the other tasks. It must not be enabled if the file is opened in the append mode:
+	 * the positions of such writes are ignored, so the entries would not match the directory.
+	 * If the position of the file cannot be known, the entries are written into the stream.
+	 * By default it is disabled, the coders created by <code>append</code> enable it.
+	 * @param enabled <code>true</code> if the entries are to be written in parallel
+	 * @throws IllegalArgumentException will be thrown if the output stream is not FileOutputStream
+	 */
+	public void setPositionalWrites(boolean enabled) throws IllegalArgumentException {
+		if(enabled && outputChannel == null) {
+			throw new IllegalArgumentException("Positional writes require the output stream to be FileOutputStream");
+		}
+		this.positionalWrites = enabled;
+	}
+	
+	/**
+	 * Enables or disables writing of the central directory. It allows to unpack denoted entries
+	 * without reading the whole archive, but the archive is to be read from a file. 
+	 * By default the directory is written if the output stream is FileOutputStream.
+	 * @param enabled <code>true</code> if the directory is to be written
+	 */
+	public void setCentralDirectory(boolean enabled) throws IllegalArgumentException {
+		if(!enabled && appendOffset >= 0) {
+			throw new IllegalArgumentException("Central directory is required to append entries to the archive");
+		}
+		if(!enabled) {
+			directory = null;
+		}
+		else if(directory == null) {
+			directory = new CentralDirectory();
+		}
 	}
 	
 	/**
@@ -46,39 +325,159 @@ public class Coder extends Codec {
 		if(compressionLevel > 9 || compressionLevel < 0) {
 			throw new IllegalArgumentException("Compression level is out of range (0-9). Geven value: " + compressionLevel);
 		}
+		this.compressionLevel = compressionLevel;
 	}
 	
 	/**
-	 * Checks each file from the denoted directories and files. Each file should exist, have read permissions 
-	 * and the size of file should not exceed 2Gb
+	 * Sets the compression method of the entries. By default the entries are deflated.
+	 * The identifier of the method is recorded in the archive, so the method is to be registered
+	 * in CompressionMethods while unpacking.
+	 * @param compressionMethod compression method
+	 * @throws IllegalArgumentException will be thrown if the method is not registered in CompressionMethods
+	 */
+	public void setCompressionMethod(CompressionMethod compressionMethod) throws IllegalArgumentException {
+		if(compressionMethod == null || CompressionMethods.get(compressionMethod.getId()) == null) {
+			throw new IllegalArgumentException("Compression method is not registered: " 
+					+ (compressionMethod == null ? null : compressionMethod.getName()));
+		}
+		this.compressionMethod = compressionMethod;
+	}
+	
+	/**
+	 * Enables or disables the classification of the content. If it is enabled, each file (or block)
+	 * is sampled before compressing: already compressed formats and random data are stored as is,
+	 * data without repeated strings is deflated by Huffman coding only and data of small values 
+	 * is deflated by the filtered strategy. Files packed into solid blocks are not classified.
+	 * By default the classification is enabled.
+	 * @param enabled <code>true</code> if the content is to be classified
+	 */
+	public void setContentClassification(boolean enabled) {
+		this.contentClassification = enabled;
+	}
+	
+	/**
+	 * Sets the size of the block. Files larger than the block are split into blocks of this size,
+	 * the blocks are compressed in parallel.
+	 * @param blockSize size of the block in bytes
+	 * @throws IllegalArgumentException will be thrown if the denoted size is out of range
+	 *          (<code>MIN_BLOCK_SIZE</code> - <code>MAX_BLOCK_SIZE</code>).
+	 */
+	public void setBlockSize(int blockSize) throws IllegalArgumentException {
+		if(blockSize > MAX_BLOCK_SIZE || blockSize < MIN_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Block size is out of range (" + MIN_BLOCK_SIZE + "-" 
+					+ MAX_BLOCK_SIZE + "). Given value: " + blockSize);
+		}
+		this.blockSize = blockSize;
+	}
+	
+	/**
+	 * Enables or disables the solid mode. In the solid mode consecutive directories and files 
+	 * which are not larger than <code>SOLID_FILE_SIZE_LIMIT</code> are grouped into solid blocks. 
+	 * Each block is compressed as one stream by one task, which improves both speed and 
+	 * compression ratio of many small files. By default the solid mode is disabled.
+	 * @param enabled <code>true</code> if small files are to be grouped into solid blocks
+	 */
+	public void setSolidMode(boolean enabled) {
+		this.solidMode = enabled;
+	}
+	
+	/**
+	 * Sets the target size of the uncompressed solid block.
+	 * @param solidBlockSize size of the solid block in bytes
+	 * @throws IllegalArgumentException will be thrown if the denoted size is out of range
+	 *          (<code>MIN_BLOCK_SIZE</code> - <code>MAX_BLOCK_SIZE</code>).
+	 */
+	public void setSolidBlockSize(int solidBlockSize) throws IllegalArgumentException {
+		if(solidBlockSize > MAX_BLOCK_SIZE || solidBlockSize < MIN_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Solid block size is out of range (" + MIN_BLOCK_SIZE + "-" 
+					+ MAX_BLOCK_SIZE + "). Given value: " + solidBlockSize);
+		}
+		this.solidBlockSize = solidBlockSize;
+	}
+	
+	/**
+	 * Enables or disables the deduplication. If it is enabled, content of each file is hashed 
+	 * by the task while it is read for compressing and a file with the same content as already packed one 
+	 * is written as the reference without compressed data. Files packed into solid blocks are not deduplicated.
+	 * By default the deduplication is disabled.
+	 * @param enabled <code>true</code> if files with the same content are to be packed once
+	 */
+	public void setDeduplication(boolean enabled) {
+		this.deduplication = enabled;
+	}
+	
+	/**
+	 * Enables or disables the deduplication of blocks of the files which are larger than
+	 * the block size. Each block is hashed while it is read and a block with the same content
+	 * as already packed one is written as the reference. By default it is disabled.
+	 * @param enabled <code>true</code> if blocks with the same content are to be packed once
+	 */
+	public void setChunkDeduplication(boolean enabled) {
+		this.chunkDeduplication = enabled;
+	}
+	
+	/**
+	 * Sets the base archive and makes this archive incremental. Only new files and files whose 
+	 * size or time of the last modification differ from the base archive are compressed. 
+	 * Unchanged files and paths deleted since the base archive are recorded without data.
+	 * The base archive may be incremental too, Decoder restores the full tree by 
+	 * <code>restore</code> from the chain of archives.
+	 * @param baseArchive Path to the base archive file with the central directory
+	 * @throws IllegalArgumentException will be thrown if the base archive does not have the central directory
+	 *          or has corrupted format
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	public void setBaseArchive(Path baseArchive) throws IllegalArgumentException, IOException {
+		CentralDirectory baseDirectory;
+		try (FileChannel channel = FileChannel.open(baseArchive, StandardOpenOption.READ)) {
+			baseDirectory = CentralDirectory.read(channel, 0);
+		} catch (FileFormatException e) {
+			throw new IllegalArgumentException("Archive: " + baseArchive + " has corrupted format: " + e.getMessage());
+		}
+		if(baseDirectory == null) {
+			throw new IllegalArgumentException("Archive: " + baseArchive + " does not have the central directory");
+		}
+		
+		baseManifest = new HashMap<>();
+		for(CentralDirectory.Entry entry : baseDirectory.getEntries()) {
+			List<PathHeader> headers = entry.getHeader() != null 
+					? List.of(entry.getHeader()) : entry.getSolidBlock().getMembers();
+			for(PathHeader header : headers) {
+				if(!header.isDeleted()) {
+					baseManifest.put(header.getPathName(), header);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Enables or disables training of the preset dictionary. If it is enabled, small files are 
+	 * sampled before packing and the dictionary of their common content is built. The dictionary is 
+	 * written once into the archive and each file is compressed with it, so small similar files 
+	 * are compressed better while they are still compressed and unpacked independently. 
+	 * Solid blocks are compressed without the dictionary. By default the training is disabled.
+	 * @param enabled <code>true</code> if the preset dictionary is to be trained
+	 */
+	public void setDictionaryTraining(boolean enabled) throws IllegalArgumentException {
+		if(enabled && appendOffset >= 0) {
+			throw new IllegalArgumentException("Dictionary cannot be trained while entries are appended to the archive");
+		}
+		this.dictionaryTraining = enabled;
+	}
+	
+	/**
+	 * Checks the denoted directories and files. Each of them should exist. The content 
+	 * of directories is checked while walking.
 	 * @return <code>true</code> if all tests are passed, otherwise <code>false</code>
 	 */
 	private boolean checkFiles() {
 		StringBuffer errors = new StringBuffer();
 		
-		Arrays.asList(pathNames).stream()
-		.forEach((pathName)->{
-			try(Stream<Path> paths = Files.walk(Path.of(pathName))){
-					paths.parallel().forEach((path)->{
-					if(!Files.isReadable(path)) {
-						errors.append("File: " + path + " does not have read permissions" + "\n");
-					} 
-					else {
-						try {
-							if(Files.size(path)>Integer.MAX_VALUE) {
-								errors.append("Size of file: + " + path + " exeeds " +  Integer.MAX_VALUE + " bytes\n");
-							}
-						} catch (IOException e) {
-							errors.append("IO error occurred while files checking: " + e.getMessage() + "\n");
-						}
-					}
-				
-					numberOfPaths++;
-				});
-			} catch (IOException e) {
+		for(String pathName : pathNames) {
+			if(!Files.exists(Path.of(pathName), LinkOption.NOFOLLOW_LINKS)) {
 				errors.append("File: " + pathName + " does not exist" + "\n");
 			}
-		});
+		}
 		
 		errorMessage = errors.toString();
 		return errorMessage.length() == 0;
@@ -90,90 +489,686 @@ public class Coder extends Codec {
 	 * @throws IOException will be thrown in case of IO errors
 	 */
 	public boolean pack() throws IOException {
+		metrics.start("Coder");
+		progress.start();
+		boolean result = false;
+		try {
+			result = packPaths();
+		} finally {
+			// the threads are stopped and the output is closed even if packing is broken by an exception
+			shutdown(result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Walks the denoted paths and packs them into the archive
+	 * @return <code>true</code> if archiving is performed successfully, otherwise <code>false</code>
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private boolean packPaths() throws IOException {
 		if(!checkFiles()) {
-			return shutdown(false);
+			return false;
 		}
 		
 		StringBuffer errors = new StringBuffer();
 		
-		ExecutorCompletionService<SingleFileCoder> service 
-			= new ExecutorCompletionService<SingleFileCoder>(executor);
+		// the tasks run by the I/O threads pass the entries to the executor of compression, which streams
+		// the files through its direct buffers, and write the stored and compressed entries
+		ExecutorCompletionService<DataCoder> service 
+			= new ExecutorCompletionService<DataCoder>(ioExecutor);
 		
-		Arrays.asList(pathNames).stream()
-		.forEach((pathName)->{
-			try(Stream<Path> paths = Files.walk(Path.of(pathName))){
-					paths.forEach((path)->{
-						submitTask(path, service, errors);
-				});
-			} catch (IOException e) {
-				errors.append("Error occured while files submitting: " + e.getMessage() + "\n");
+		// paths are packed while the trees are walked
+		try(PathWalker walker = new PathWalker(errors, progress)) {
+			List<Path> roots = new ArrayList<>();
+			for(String pathName : pathNames) {
+				roots.add(Path.of(pathName));
 			}
-		});
-		
-		if(errors.length() > 0) {
-			errorMessage = errors.toString();
-			return shutdown(false);
+			walker.start(roots);
+			
+			List<Path> sampledPaths = dictionaryTraining ? trainDictionary(walker) : List.of();
+			if(positionalWrites) {
+				startPositionalWrites();
+			}
+			for(Path path : sampledPaths) {
+				submitTask(path, service, errors);
+			}
+			
+			for(Path path = walker.next(); path != null; path = walker.next()) {
+				submitTask(path, service, errors);
+			}
+			numberOfPaths = (int)walker.getNumberOfPaths();
 		}
+		submitSolidBlock(service, errors);
 		
 		//
-		// Collect results into the output stream
+		// Collect the rest of results into the output stream
 		// 
-		for(int i = 0; i < numberOfPaths; i++) {
-			try {
-				writeCompressedData(service.take().get());
-			} catch (IOException | InterruptedException | ExecutionException e1) {
-				errors.append("Error occurred while files compressing: " + e1.getMessage() + "\n");
+		while(!tasksInFlight.isEmpty()) {
+			writeNextResult(service, errors);
+		}
+		
+		// paths of the base archive which are not walked are deleted
+		if(baseManifest != null) {
+			for(PathHeader header : baseManifest.values()) {
+				writeHeader(PathHeader.deleted(header.isRegularFile(), header.getPathName()), errors);
 			}
 		}
 		
 		if(errors.length() > 0) {
 			errorMessage = errors.toString();
-			return shutdown(false);
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Samples small files and builds the preset dictionary. The first walked files are sampled 
+	 * until enough samples are collected. If the dictionary is built, it is written into the output stream.
+	 * @param walker walker the paths are taken from
+	 * @return the taken paths which are to be packed
+	 * @throws IOException will be thrown if the dictionary cannot be written
+	 */
+	private List<Path> trainDictionary(PathWalker walker) throws IOException {
+		DictionaryTrainer trainer = new DictionaryTrainer();
+		List<Path> sampledPaths = new ArrayList<>();
+		int numberOfSamples = 0;
+		
+		while(numberOfSamples < MAX_DICTIONARY_SAMPLES && sampledPaths.size() < MAX_DICTIONARY_PATHS) {
+			Path path = walker.next();
+			if(path == null) {
+				break;
+			}
+			sampledPaths.add(path);
+			
+			try {
+				if(!Files.isRegularFile(path) || Files.size(path) > DICTIONARY_FILE_SIZE_LIMIT) {
+					continue;
+				}
+				
+				byte[] sample;
+				try(InputStream is = Files.newInputStream(path)) {
+					sample = is.readNBytes(DictionaryTrainer.MAX_SIZE_OF_SAMPLE);
+				}
+				numberOfSamples++;
+				if(!trainer.addSample(sample)) {
+					break;
+				}
+			} catch (IOException e) {
+				// the file which cannot be read is reported while packing
+				log.info(()->"File cannot be sampled: " + e.getMessage());
+			}
 		}
 		
-		return shutdown(true);
+		dictionary = trainer.train();
+		if(dictionary != null) {
+			log.info(()->"Dictionary is trained, size: " + dictionary.length);
+			ArchiveFormat.writeDictionary(outputStream, dictionary);
+		}
+		return sampledPaths;
 	}
 	
 	@Override
 	protected boolean shutdown(boolean result) throws IOException {
-		executor.shutdown();
+		// the I/O tasks submit their compression, so they are awaited before the executor of compression.
+		// Compressors are released only when no task uses them
+		ioExecutor.shutdown();
+		if(awaitTermination(ioExecutor)) {
+			executor.shutdown();
+			if(awaitTermination(executor)) {
+				compressorPool.release();
+			}
+		}
+		else {
+			executor.shutdown();
+		}
+		metrics.finish();
+		progress.finish();
+		// the end entry is written only if packing is successful, 
+		// so the incomplete archive is detected by Decoder
+		if(outputPosition != null) {
+			// the stream continues after the entries written at the reserved positions. 
+			// The entries after the range which is failed to be written are cut off, so the file does not have holes
+			long end = Math.min(outputPosition.get(), firstHole.get());
+			countingStream.addCount(end - countingStream.getCount());
+			outputChannel.position(startOfArchive + end);
+			if(end < outputPosition.get()) {
+				outputChannel.truncate(startOfArchive + end);
+			}
+		}
+		if(result) {
+			outputStream.writeByte(ArchiveFormat.ENTRY_END);
+			if(directory != null) {
+				directory.write(outputStream, countingStream.getCount());
+			}
+		}
+		else if(appendOffset >= 0) {
+			restoreEndOfArchive();
+		}
+		if(appendOffset >= 0) {
+			// the rest of the previous end of the archive is cut off
+			outputStream.flush();
+			outputChannel.truncate(outputChannel.position());
+		}
 		outputStream.close();
 		return result;
 	}
 	
 	/**
-	 * Creates new Callable task for the given path. The task is responsible for packing
-	 *  the denoted file. Then the task is submitted into the ExecutorCompletionService
+	 * Waits till the tasks of the executor are completed. 
+	 * @param executor executor which is shut down
+	 * @return <code>true</code> if the executor is terminated, <code>false</code> if the waiting is interrupted
+	 */
+	private static boolean awaitTermination(ExecutorService executor) {
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * Restores the end entry and the directory of the archive the entries are appended to, 
+	 * so the archive remains valid if packing fails
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private void restoreEndOfArchive() throws IOException {
+		outputStream.flush();
+		outputChannel.position(appendOffset);
+		directory.truncate(numberOfBaseEntries);
+		outputStream.writeByte(ArchiveFormat.ENTRY_END);
+		directory.write(outputStream, appendOffset + 1);
+	}
+	
+	/**
+	 * Creates new Callable tasks for the given path. Each task is responsible for packing
+	 *  the denoted file or its block. Then the tasks are submitted into the ExecutorCompletionService.
+	 *  In the solid mode small files are collected for the solid block.
 	 * @param path file or directory to be packed
 	 * @param service ExecutorCompletionService
 	 * @param errors StringBuffer to collect error which can occur while the file packing.
 	 */
 	private void submitTask(Path path, 
-			ExecutorCompletionService<SingleFileCoder> service, StringBuffer errors) {
-		Callable<SingleFileCoder> task = ()->{
-			SingleFileCoder coder = new SingleFileCoder(path, compressionLevel);
+			ExecutorCompletionService<DataCoder> service, StringBuffer errors) {
+		long size = 0;
+		if(Files.isRegularFile(path)) {
 			try {
-				coder.packFile();
+				size = Files.size(path);
+				if(baseManifest != null && isUnchanged(path, size, errors)) {
+					return;
+				}
+			} catch (IOException e) {
+				errors.append("Error occurred while packing of file: " + path + ", error: " + e + "\n");
+				return;
+			}
+		}
+		else if(baseManifest != null) {
+			baseManifest.remove(path.normalize().toString());
+		}
+		
+		if(solidMode && size <= SOLID_FILE_SIZE_LIMIT) {
+			if(sizeOfSolidBlock + size > solidBlockSize || solidBlockPaths.size() >= MAX_SOLID_BLOCK_PATHS) {
+				submitSolidBlock(service, errors);
+			}
+			solidBlockPaths.add(path);
+			sizeOfSolidBlock += size;
+			return;
+		}
+		
+		if(size <= blockSize) {
+			submitTask(path, 0, size, deduplication, service, errors);
+			return;
+		}
+		
+		for(long offset = 0; offset < size; offset += blockSize) {
+			submitTask(path, offset, Math.min(blockSize, size - offset), chunkDeduplication, service, errors);
+		}
+	}
+	
+	/**
+	 * Checks whether the file is unchanged since the base archive. The unchanged file 
+	 * is written without data. The file is removed from the base manifest, so the rest of 
+	 * the manifest are deleted paths.
+	 * @param path file to be checked
+	 * @param size size of the file
+	 * @param errors StringBuffer to collect error which can occur while the file packing.
+	 * @return <code>true</code> if the file is unchanged
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	private boolean isUnchanged(Path path, long size, StringBuffer errors) throws IOException {
+		String pathName = path.normalize().toString();
+		PathHeader base = baseManifest.remove(pathName);
+		long lastModifiedTime = Files.getLastModifiedTime(path).toMillis();
+		if(base == null || !base.isRegularFile() || base.getSizeOfFile() != size 
+				|| base.getLastModifiedTime() != lastModifiedTime || lastModifiedTime == 0) {
+			return false;
+		}
+		
+		log.info(()->"File is unchanged: " + pathName);
+		writeHeader(PathHeader.unchanged(pathName, size, lastModifiedTime), errors);
+		return true;
+	}
+	
+	/**
+	 * Creates new Callable task for the given block of the file and submits it
+	 * into the ExecutorCompletionService. If the deduplication is enabled, the content is read for its 
+	 * SHA-256 digest before it is compressed. The task whose content is already packed by another task
+	 * does not compress it and keeps no data, the reference is written instead when the task is completed.
+	 * @param path file or directory to be packed
+	 * @param offset offset of the block within the file
+	 * @param length length of the block
+	 * @param deduplicate shows is the content to be deduplicated
+	 * @param service ExecutorCompletionService
+	 * @param errors StringBuffer to collect error which can occur while the file packing.
+	 */
+	private void submitTask(Path path, long offset, long length, boolean deduplicate,
+			ExecutorCompletionService<DataCoder> service, StringBuffer errors) {
+		Callable<DataCoder> task = ()->{
+			SingleFileCoder coder = new SingleFileCoder(path, compressionLevel, offset, length);
+			try {
+				if(deduplicate && length > 0) {
+					coder.enableDigest();
+				}
+				CompressionMethod method = selectCompressionMethod(path, offset, length);
+				if(method != CompressionMethods.STORE) {
+					coder.setDictionary(dictionary);
+				}
+				coder.setCompressionMethod(method);
+				boolean read = false;
+				if(deduplicate && length > 0) {
+					long startTime = metrics.startTime();
+					coder.enableDigest();
+					coder.calculateChecksum();
+					metrics.record(Stage.READ, startTime, length);
+					read = true;
+					
+					Content content = new Content(path.normalize().toString(), offset, coder);
+					Content packed = contents.putIfAbsent(ByteBuffer.wrap(coder.getDigest()), content);
+					taskContents.put(coder, packed != null ? packed : content);
+					if(packed != null) {
+						// the same content is packed by another task, so it is not compressed
+						metrics.addBytesIn(length);
+						return coder;
+					}
+				}
+				if(coder.isTransferable()) {
+					// the stored data passes the stage of compression as is. Its checksum is calculated in advance 
+					// if the header is written into the stream before the data, otherwise while the data is transferred
+					if(!read && outputPosition == null) {
+						long startTime = metrics.startTime();
+						coder.calculateChecksum();
+						metrics.record(Stage.READ, startTime, length);
+					}
+					metrics.record(Stage.COMPRESS, metrics.startTime(), length);
+				}
+				else {
+					compress(coder, length);
+				}
+				metrics.addBytesIn(length);
+				if(outputPosition != null) {
+					writeAtPosition(coder);
+				}
 			}catch (IOException e) {
 				errors.append("Error occurred while packing of file: " + path + ", error: " + e + "\n");
 			}
 			return coder;
 		};
-		log.info("Submitting task for path: " + path);
-		service.submit(task);	
+		log.info(()->"Submitting task for path: " + path + ", offset: " + offset);
+		submitTask(task, length, service, errors);
+	}
+	
+	/**
+	 * Compresses the data by the executor of compression. The data is streamed from the file 
+	 * through the direct buffer of the compressing thread, so the whole entry is not buffered 
+	 * in the heap before compression. The calling I/O thread waits for the result.
+	 * @param coder DataCoder to be packed
+	 * @param length length of the uncompressed data
+	 * @throws IOException will be thrown if the compression fails or is interrupted
+	 */
+	private void compress(DataCoder coder, long length) throws IOException {
+		Future<?> future = executor.submit(()->{
+			long startTime = metrics.startTime();
+			coder.pack(compressorPool.getCompressor(coder.getCompressionMethod(), compressionLevel));
+			// the data is read while it is compressed, so the time of reading is recorded separately
+			long readNanos = coder.getReadNanos();
+			metrics.record(Stage.READ, metrics.startTime() - readNanos, length);
+			metrics.record(Stage.COMPRESS, startTime + readNanos, length);
+			return null;
+		});
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Compression is interrupted", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Selects the compression method of the denoted part of the file by its content
+	 * @param path file or directory to be packed
+	 * @param offset offset of the block within the file
+	 * @param length length of the block
+	 * @return compression method of the block
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	private CompressionMethod selectCompressionMethod(Path path, long offset, long length) throws IOException {
+		if(compressionLevel == 0 && compressionMethod == CompressionMethods.DEFLATE) {
+			// deflate would store the data too, but with the overhead of its blocks
+			return CompressionMethods.STORE;
+		}
+		else if(!contentClassification) {
+			return compressionMethod;
+		}
+		
+		switch(ContentClassifier.classify(path, offset, length)) {
+		case INCOMPRESSIBLE:
+			return CompressionMethods.STORE;
+		case LOW_REDUNDANCY:
+			return compressionMethod == CompressionMethods.DEFLATE ? CompressionMethods.DEFLATE_HUFFMAN_ONLY : compressionMethod;
+		case FILTERED:
+			return compressionMethod == CompressionMethods.DEFLATE ? CompressionMethods.DEFLATE_FILTERED : compressionMethod;
+		default:
+			return compressionMethod;
+		}
+	}
+	
+	/**
+	 * Creates new Callable task for the collected solid block and submits it
+	 * into the ExecutorCompletionService. Nothing is done if no files are collected.
+	 * @param service ExecutorCompletionService
+	 * @param errors StringBuffer to collect error which can occur while the file packing.
+	 */
+	private void submitSolidBlock(ExecutorCompletionService<DataCoder> service, StringBuffer errors) {
+		if(solidBlockPaths.isEmpty()) {
+			return;
+		}
+		
+		long sizeOfBlock = sizeOfSolidBlock;
+		SolidBlockCoder coder = new SolidBlockCoder(new ArrayList<>(solidBlockPaths), sizeOfBlock);
+		coder.setCompressionMethod(compressionMethod);
+		Callable<DataCoder> task = ()->{
+			try {
+				compress(coder, sizeOfBlock);
+				metrics.addBytesIn(sizeOfBlock);
+				if(outputPosition != null) {
+					writeAtPosition(coder);
+				}
+			}catch (IOException e) {
+				errors.append("Error occurred while packing of solid block: " + e + "\n");
+			}
+			return coder;
+		};
+		log.info(()->"Submitting task for solid block of " + solidBlockPaths.size() + " paths");
+		submitTask(task, sizeOfSolidBlock, service, errors);
+		
+		solidBlockPaths.clear();
+		sizeOfSolidBlock = 0;
 	}
 	
 	/**
-	 * Writes PathHeader and compressed data of the file  into the output stream. 
+	 * Submits the task into the ExecutorCompletionService. Prior the submission
+	 * the completed tasks are written till the task fits the window.
+	 * @param task task to be submitted
+	 * @param length number of bytes reserved by the task
+	 * @param service ExecutorCompletionService
+	 * @param errors StringBuffer to collect error which can occur while the file packing.
+	 * @return Future of the submitted task
+	 */
+	private Future<DataCoder> submitTask(Callable<DataCoder> task, long length,
+			ExecutorCompletionService<DataCoder> service, StringBuffer errors) {
+		// wait till the written tasks free the window
+		while(!tasksInFlight.isEmpty() && 
+				(tasksInFlight.size() >= maxTasksInFlight || bytesInFlight + length > maxBytesInFlight)) {
+			writeNextResult(service, errors);
+		}
+		
+		Future<DataCoder> future = service.submit(task);
+		metrics.taskSubmitted();
+		tasksInFlight.put(future, length);
+		bytesInFlight += length;
+		return future;
+	}
+	
+	/**
+	 * Waits for the next completed task and writes its result into the output stream.
+	 * The bytes reserved by the task are released.
+	 * @param service ExecutorCompletionService
+	 * @param errors StringBuffer to collect error which can occur while the file packing.
+	 */
+	private void writeNextResult(ExecutorCompletionService<DataCoder> service, StringBuffer errors) {
+		Future<DataCoder> future;
+		try {
+			future = service.take();
+		} catch (InterruptedException e) {
+			errors.append("Error occurred while files compressing: " + e.getMessage() + "\n");
+			return;
+		}
+		
+		try {
+			DataCoder coder = future.get();
+			Content content = taskContents.remove(coder);
+			if(content == null || content.owner == coder) {
+				writeCompressedData(coder);
+			}
+			if(content != null) {
+				writeReferences(coder, content, errors);
+			}
+		} catch (IOException | InterruptedException | ExecutionException e) {
+			errors.append("Error occurred while files compressing: " + e.getMessage() + "\n");
+		} finally {
+			metrics.taskCompleted();
+			bytesInFlight -= tasksInFlight.remove(future);
+		}
+	}
+	
+	/**
+	 * Writes the references to the content. The references are written after the content, 
+	 * so Decoder can resolve them.
+	 * @param coder DataCoder of the completed task
+	 * @param content content which is packed or referenced by the task
+	 * @param errors StringBuffer to collect error which can occur while the file packing.
+	 */
+	private void writeReferences(DataCoder coder, Content content, StringBuffer errors) {
+		if(content.owner == coder) {
+			content.written = true;
+			for(PathHeader reference : content.references) {
+				writeHeader(reference, errors);
+			}
+			content.references.clear();
+			return;
+		}
+		
+		PathHeader reference = coder.getReference(content.pathName, content.offset);
+		log.info(()->"Reference to the same content: " + content.pathName + ", offset: " + content.offset);
+		if(content.written) {
+			writeHeader(reference, errors);
+		}
+		else {
+			content.references.add(reference);
+		}
+	}
+	
+	/**
+	 * Writes the header and compressed data of the entry into the output stream. 
 	 * The method is called for each Callable task when it is completed.
-	 * @param coder		SingleFileCoder which already has compressed file's data
+	 * @param coder		DataCoder which already has compressed data
 	 * @throws IOException will be thrown if some IO error occurred while the data is being written to the output stream
 	 */
-	private void writeCompressedData(SingleFileCoder coder) throws IOException {
-		log.info("Writing data: " + coder);
-		PathHeader header = coder.getPathHeader();
+	private void writeCompressedData(DataCoder coder) throws IOException {
+		long positionOfData = coder.getPositionOfData();
+		if(outputPosition == null) {
+			log.info(()->"Writing data: " + coder);
+			long startTime = metrics.startTime();
+			coder.writeHeader(outputStream);
+			positionOfData = countingStream.getCount();
+			if(coder.isTransferable()) {
+				transferData(coder);
+			}
+			else {
+				outputStream.write(coder.getCompressedData(), 0, coder.size());
+			}
+			metrics.record(Stage.WRITE, startTime, coder.getSizeOfData());
+		}
+		else if(positionOfData < 0) {
+			// the task has failed before writing, the error is already collected
+			return;
+		}
+		
+		if(directory != null) {
+			coder.addTo(directory, positionOfData);
+		}
+		metrics.addBytesOut(coder.getSizeOfData());
+		metrics.addEntry();
+		progress.addProcessed(coder.getNumberOfPaths(), coder.getSizeOfInput());
+	}
+	
+	/**
+	 * Starts writing of the entries at the reserved positions of the archive file. 
+	 * The data written into the stream so far is flushed, the entries are written after it.
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private void startPositionalWrites() throws IOException {
+		outputStream.flush();
+		long position;
+		try {
+			position = outputChannel.position();
+		} catch (IOException e) {
+			// the file is a pipe, it does not support random access
+			log.info(()->"Entries are written into the stream: " + e.getMessage());
+			return;
+		}
+		if(position < countingStream.getCount()) {
+			log.info(()->"Entries are written into the stream, unexpected position of the file: " + position);
+			return;
+		}
+		startOfArchive = position - countingStream.getCount();
+		outputPosition = new AtomicLong(countingStream.getCount());
+	}
+	
+	/**
+	 * Writes the header and compressed data of the entry at the reserved position of the archive file.
+	 * The method is called by the task, so the entries are written in parallel.
+	 * @param coder DataCoder which already has compressed data
+	 * @throws IOException will be thrown if some IO error occurred while the entry is being written
+	 */
+	private void writeAtPosition(DataCoder coder) throws IOException {
+		log.info(()->"Writing data: " + coder);
+		long startTime = metrics.startTime();
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		coder.writeHeader(new DataOutputStream(header));
 		
-		outputStream.writeObject(header);
-		outputStream.write(coder.getCompressedData(), 0, header.getSizeOfData());
+		long position = outputPosition.getAndAdd(header.size() + coder.getSizeOfData());
+		long positionOfData = position + header.size();
+		try {
+			// the header extends the file to the position of the data, the data is not transferred beyond the end
+			write(ByteBuffer.wrap(header.toByteArray()), position);
+			if(coder.isTransferable()) {
+				boolean checksumCalculated = coder.isChecksumCalculated();
+				long readNanos = coder.getReadNanos();
+				coder.transferTo(outputChannel, startOfArchive + positionOfData);
+				if(!checksumCalculated) {
+					// the checksum is calculated while the data is transferred, so the header is written again. 
+					// The checksum has the fixed size, so the size of the header does not change
+					metrics.record(Stage.READ, metrics.startTime() - (coder.getReadNanos() - readNanos), 
+							coder.getSizeOfData());
+					header.reset();
+					coder.writeHeader(new DataOutputStream(header));
+					write(ByteBuffer.wrap(header.toByteArray()), position);
+				}
+			}
+			else {
+				write(ByteBuffer.wrap(coder.getCompressedData(), 0, coder.size()), positionOfData);
+			}
+		} catch (IOException e) {
+			firstHole.accumulateAndGet(position, Math::min);
+			throw e;
+		}
+		coder.setPositionOfData(positionOfData);
+		metrics.record(Stage.WRITE, startTime, coder.getSizeOfData());
+	}
+	
+	/**
+	 * Writes the header without data at the reserved position of the archive file
+	 * @param header header to be written
+	 * @return position within the archive after the header
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private long writeAtPosition(PathHeader header) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ArchiveFormat.writePathHeader(new DataOutputStream(bytes), header);
+		long position = outputPosition.getAndAdd(bytes.size());
+		try {
+			write(ByteBuffer.wrap(bytes.toByteArray()), position);
+		} catch (IOException e) {
+			firstHole.accumulateAndGet(position, Math::min);
+			throw e;
+		}
+		return position + bytes.size();
+	}
+	
+	/**
+	 * Writes the buffer at the denoted position of the archive file
+	 * @param buffer buffer to be written
+	 * @param position position within the archive
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private void write(ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			position += outputChannel.write(buffer, startOfArchive + position);
+		}
+	}
+	
+	/**
+	 * Transfers the stored data of the entry from the file into the archive. If the archive is a file,
+	 * the data is transferred by the file system without being copied into the Java heap.
+	 * @param coder DataCoder with the transferable data
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private void transferData(DataCoder coder) throws IOException {
+		if(outputChannel == null) {
+			// the stream is not a file, so the data is copied through the stream's buffer
+			coder.transferTo(Channels.newChannel(countingStream));
+			return;
+		}
+		
+		// the buffered header is written before the data
+		outputStream.flush();
+		coder.transferTo(outputChannel);
+		countingStream.addCount(coder.getSizeOfData());
+	}
+	
+	/**
+	 * Writes the header without data (the reference, unchanged or deleted path) into the output stream.
+	 * @param header header to be written
+	 * @param errors StringBuffer to collect error which can occur while the file packing.
+	 */
+	private void writeHeader(PathHeader header, StringBuffer errors) {
+		try {
+			long position;
+			if(outputPosition == null) {
+				ArchiveFormat.writePathHeader(outputStream, header);
+				position = countingStream.getCount();
+			}
+			else {
+				position = writeAtPosition(header);
+			}
+			if(directory != null) {
+				directory.add(position, header);
+			}
+			metrics.addEntry();
+			if(!header.isDeleted()) {
+				progress.addProcessed(header.getOffset() == 0 ? 1 : 0, header.getSizeOfBlock());
+			}
+		} catch (IOException e) {
+			errors.append("Error occurred while files compressing: " + e.getMessage() + "\n");
+		}
 	}
 }
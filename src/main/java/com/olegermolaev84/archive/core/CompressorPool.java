@@ -0,0 +1,89 @@
+package com.olegermolaev84.archive.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.olegermolaev84.archive.compression.CompressionMethod;
+import com.olegermolaev84.archive.compression.Compressor;
+import com.olegermolaev84.archive.compression.Decompressor;
+
+/**
+ * Pool of Compressor and Decompressor objects. Each thread has its own Compressor per
+ * compression method and level and its own Decompressor per compression method, which are 
+ * reset and reused for every entry, so the memory is bounded by the number of threads.
+ * <br>The objects are released by <code>release</code> when the pool is not needed anymore.
+ */
+class CompressorPool {
+	/** Number of compression levels */
+	private static final int NUMBER_OF_LEVELS = 10;
+
+	/** Compressors of the current thread by method, indexed by compression level. Variants 
+	 * of the method with the same identifier have their own compressors */
+	private final ThreadLocal<Map<CompressionMethod, Compressor[]>> compressors = ThreadLocal.withInitial(HashMap::new);
+
+	/** Decompressors of the current thread indexed by method identifier */
+	private final ThreadLocal<Map<Integer, Decompressor>> decompressors = ThreadLocal.withInitial(HashMap::new);
+
+	/** All created objects to be released */
+	private final Queue<Compressor> createdCompressors = new ConcurrentLinkedQueue<>();
+
+	/** All created objects to be released */
+	private final Queue<Decompressor> createdDecompressors = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Returns Compressor of the current thread, which is ready to compress new data
+	 * @param method compression method
+	 * @param compressionLevel Compression level. Value from 0 to 9
+	 * @return Compressor
+	 */
+	Compressor getCompressor(CompressionMethod method, int compressionLevel) {
+		Compressor[] threadCompressors = compressors.get().computeIfAbsent(method, m->new Compressor[NUMBER_OF_LEVELS]);
+		Compressor compressor = threadCompressors[compressionLevel];
+		if(compressor == null) {
+			compressor = method.createCompressor(compressionLevel);
+			threadCompressors[compressionLevel] = compressor;
+			createdCompressors.add(compressor);
+		}
+		else {
+			compressor.reset();
+		}
+		return compressor;
+	}
+
+	/**
+	 * Returns Decompressor of the current thread, which is ready to decompress new data
+	 * @param method compression method
+	 * @return Decompressor
+	 */
+	Decompressor getDecompressor(CompressionMethod method) {
+		Map<Integer, Decompressor> threadDecompressors = decompressors.get();
+		Decompressor decompressor = threadDecompressors.get(method.getId());
+		if(decompressor == null) {
+			decompressor = method.createDecompressor();
+			threadDecompressors.put(method.getId(), decompressor);
+			createdDecompressors.add(decompressor);
+		}
+		else {
+			decompressor.reset();
+		}
+		return decompressor;
+	}
+
+	/**
+	 * Releases resources of all created objects. Should be called
+	 * when no thread uses the pool anymore.
+	 */
+	void release() {
+		Compressor compressor;
+		while((compressor = createdCompressors.poll()) != null) {
+			compressor.end();
+		}
+
+		Decompressor decompressor;
+		while((decompressor = createdDecompressors.poll()) != null) {
+			decompressor.end();
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Classifies the content of the file (or its block) by a few samples before compressing.
+ * <br>Already compressed formats are recognized by their magic bytes, other data by the entropy
+ * of bytes and the share of 4-byte sequences which repeat within the samples.
+ */
+class ContentClassifier {
+	/**
+	 * Kind of the content which determines how the content is compressed
+	 */
+	enum Content {
+		/** Compressed or random data, which is to be stored as is */
+		INCOMPRESSIBLE,
+		/** Data without repeated strings, only its bytes distribution can be encoded shorter */
+		LOW_REDUNDANCY,
+		/** Data of small values such as deltas or samples, which is produced by a filter */
+		FILTERED,
+		/** Data with repeated strings like text */
+		GENERIC
+	}
+
+	/** Size of one sample */
+	private static final int SIZE_OF_SAMPLE = 4 * 1024;
+
+	/** Number of samples taken from the beginning, the middle and the end of the data */
+	private static final int NUMBER_OF_SAMPLES = 3;
+
+	/** Data smaller than this size is not classified */
+	private static final int MIN_SIZE_OF_DATA = 256;
+
+	/** Entropy in bits per byte, from which the data is not compressed */
+	private static final double INCOMPRESSIBLE_ENTROPY = 7.5;
+
+	/** Share of repeated 4-byte sequences below which the repeated strings are not searched */
+	private static final double LOW_REDUNDANCY_MATCHES = 0.1;
+
+	/** Share of small values from which the data is considered as filtered */
+	private static final double FILTERED_SMALL_VALUES = 0.5;
+
+	/** Number of bits of the hash of 4 bytes */
+	private static final int HASH_BITS = 12;
+
+	/** Magic bytes of the compressed formats: images, audio, video and archives */
+	private static final byte[][] MAGICS = {
+			{(byte)0xFF, (byte)0xD8, (byte)0xFF}, // JPEG
+			{(byte)0x89, 'P', 'N', 'G'}, // PNG
+			{'G', 'I', 'F', '8'}, // GIF
+			{'P', 'K', 3, 4}, // ZIP, JAR, DOCX
+			{0x1F, (byte)0x8B}, // GZIP
+			{'B', 'Z', 'h'}, // BZIP2
+			{(byte)0xFD, '7', 'z', 'X', 'Z', 0}, // XZ
+			{'7', 'z', (byte)0xBC, (byte)0xAF, 0x27, 0x1C}, // 7-Zip
+			{0x28, (byte)0xB5, 0x2F, (byte)0xFD}, // Zstandard
+			{'R', 'a', 'r', '!'}, // RAR
+			{'A', 'R', 'C', 'H'}, // this archive
+			{'O', 'g', 'g', 'S'}, // OGG
+			{'f', 'L', 'a', 'C'}, // FLAC
+			{'I', 'D', '3'}, // MP3
+	};
+
+	/** Buffer the samples are read into. The buffer is reused by all tasks running in the thread */
+	private static final ThreadLocal<ByteBuffer> sampleBuffer =
+			ThreadLocal.withInitial(()->ByteBuffer.allocate(SIZE_OF_SAMPLE * NUMBER_OF_SAMPLES));
+
+	private ContentClassifier() {
+	}
+
+	/**
+	 * Classifies the denoted part of the file
+	 * @param path path of the file
+	 * @param offset offset of the data within the file
+	 * @param length length of the data
+	 * @return kind of the content
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	static Content classify(Path path, long offset, long length) throws IOException {
+		if(length < MIN_SIZE_OF_DATA) {
+			return Content.GENERIC;
+		}
+
+		ByteBuffer buffer = sampleBuffer.get();
+		buffer.clear();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if(length <= buffer.capacity()) {
+				read(channel, buffer, offset, (int)length);
+			}
+			else {
+				long step = (length - SIZE_OF_SAMPLE) / (NUMBER_OF_SAMPLES - 1);
+				for(int i = 0; i < NUMBER_OF_SAMPLES; i++) {
+					read(channel, buffer, offset + i * step, SIZE_OF_SAMPLE);
+				}
+			}
+		}
+		buffer.flip();
+		return classify(buffer.array(), buffer.limit(), offset == 0);
+	}
+
+	/**
+	 * Classifies the samples
+	 * @param data array with the samples
+	 * @param length length of the samples
+	 * @param start shows do the samples start at the beginning of the file
+	 * @return kind of the content
+	 */
+	static Content classify(byte[] data, int length, boolean start) {
+		if(start && hasCompressedMagic(data, length)) {
+			return Content.INCOMPRESSIBLE;
+		}
+
+		int[] counts = new int[256];
+		for(int i = 0; i < length; i++) {
+			counts[data[i] & 0xFF]++;
+		}
+		double entropy = 0;
+		int smallValues = 0;
+		for(int value = 0; value < counts.length; value++) {
+			if(counts[value] > 0) {
+				double p = (double)counts[value] / length;
+				entropy -= p * Math.log(p) / Math.log(2);
+			}
+			if(value < 8 || value >= 248) {
+				smallValues += counts[value];
+			}
+		}
+		if(entropy >= INCOMPRESSIBLE_ENTROPY) {
+			return Content.INCOMPRESSIBLE;
+		}
+		else if(countMatches(data, length) < LOW_REDUNDANCY_MATCHES * length) {
+			return Content.LOW_REDUNDANCY;
+		}
+		else if(smallValues >= FILTERED_SMALL_VALUES * length) {
+			return Content.FILTERED;
+		}
+		return Content.GENERIC;
+	}
+
+	/**
+	 * Reads the sample from the file
+	 * @param channel channel of the file
+	 * @param buffer buffer the sample is appended to
+	 * @param position position of the sample within the file
+	 * @param length length of the sample
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+		int limit = buffer.position() + length;
+		buffer.limit(limit);
+		while(buffer.position() < limit) {
+			int read = channel.read(buffer, position);
+			if(read < 0) {
+				break;
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Checks the magic bytes of the compressed formats
+	 * @param data array with the beginning of the file
+	 * @param length length of the data
+	 * @return <code>true</code> if the data starts with the magic bytes of the compressed format
+	 */
+	private static boolean hasCompressedMagic(byte[] data, int length) {
+		for(byte[] magic : MAGICS) {
+			if(startsWith(data, length, 0, magic)) {
+				return true;
+			}
+		}
+		// MP4, MOV: size of the box followed by "ftyp"; WEBP: RIFF container of "WEBP" type
+		return startsWith(data, length, 4, new byte[] {'f', 't', 'y', 'p'})
+				|| (startsWith(data, length, 0, new byte[] {'R', 'I', 'F', 'F'})
+						&& startsWith(data, length, 8, new byte[] {'W', 'E', 'B', 'P'}));
+	}
+
+	/**
+	 * Compares the data with the magic bytes
+	 * @param data array with the data
+	 * @param length length of the data
+	 * @param offset offset of the magic bytes within the data
+	 * @param magic magic bytes
+	 * @return <code>true</code> if the data contains the magic bytes at the offset
+	 */
+	private static boolean startsWith(byte[] data, int length, int offset, byte[] magic) {
+		if(offset + magic.length > length) {
+			return false;
+		}
+		for(int i = 0; i < magic.length; i++) {
+			if(data[offset + i] != magic[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the 4-byte sequences which occur earlier within the data
+	 * @param data array with the data
+	 * @param length length of the data
+	 * @return number of the repeated sequences
+	 */
+	private static int countMatches(byte[] data, int length) {
+		int[] table = new int[1 << HASH_BITS];
+		int matches = 0;
+		for(int i = 0; i + 4 <= length; i++) {
+			int value = (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF) << 16 | data[i + 3] << 24;
+			int hash = (value * 0x9E3779B1) >>> (Integer.SIZE - HASH_BITS);
+			int candidate = table[hash] - 1;
+			if(candidate >= 0 && data[candidate] == data[i] && data[candidate + 1] == data[i + 1]
+					&& data[candidate + 2] == data[i + 2] && data[candidate + 3] == data[i + 3]) {
+				matches++;
+			}
+			table[hash] = i + 1;
+		}
+		return matches;
+	}
+}
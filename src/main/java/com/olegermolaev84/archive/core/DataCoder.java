@@ -0,0 +1,338 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+import com.olegermolaev84.archive.compression.CompressionMethod;
+import com.olegermolaev84.archive.compression.CompressionMethods;
+import com.olegermolaev84.archive.compression.Compressor;
+
+/**
+ * Common logic of the coders which compress data of files into the byte array
+ * and write it into the archive as one entry. The files are read in chunks into the direct buffer 
+ * of the thread and each chunk is passed to Compressor, so the uncompressed data is not copied into the heap.
+ * The CRC32C checksum and optionally SHA-256 digest of the uncompressed data are computed 
+ * while the data is passed to Compressor.
+ */
+abstract class DataCoder extends ByteArrayOutputStream {
+	/** Size of data to be read from the file per one loop */
+	private static final int SIZE_OF_INPUT_BUFFER = 64 * 1024;
+
+	/** Direct buffer the files are read into. The buffer is reused by all coders running in the thread */
+	private static final ThreadLocal<ByteBuffer> inputBuffer =
+			ThreadLocal.withInitial(()->ByteBuffer.allocateDirect(SIZE_OF_INPUT_BUFFER));
+
+	/** Compression method of the data */
+	protected CompressionMethod compressionMethod = CompressionMethods.DEFLATE;
+
+	/** Checksum of the uncompressed data passed to Compressor */
+	protected final CRC32C checksum = new CRC32C();
+
+	/** Position of the data within the archive if the entry is written at the reserved position, otherwise -1 */
+	private long positionOfData = -1;
+
+	/** SHA-256 digest of the uncompressed data. <code>null</code> if the digest is not computed */
+	private MessageDigest digest;
+
+	/** Shows is the checksum (and the digest) of the data calculated before compression, 
+	 * so they are not updated while the data is compressed */
+	protected boolean checksumCalculated = false;
+
+	/** Time spent on reading of the files in nanoseconds */
+	private long readNanos = 0;
+
+	/**
+	 * Constructor
+	 * @param size initial size of the byte array
+	 */
+	DataCoder(int size) {
+		super(size);
+	}
+
+	/**
+	 * Sets the compression method of the data. By default the data is deflated.
+	 * @param compressionMethod compression method
+	 */
+	void setCompressionMethod(CompressionMethod compressionMethod) {
+		this.compressionMethod = compressionMethod;
+	}
+
+	/**
+	 * Returns the compression method of the data
+	 * @return compression method
+	 */
+	CompressionMethod getCompressionMethod() {
+		return compressionMethod;
+	}
+
+	/**
+	 * Compresses the data of the entry by the denoted Compressor. The Compressor is to be reset,
+	 * belong to the compression method and have the compression level of this coder, it is not ended.
+	 * @param compressor Compressor to compress the data
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	abstract void pack(Compressor compressor) throws IOException;
+
+	/**
+	 * Returns the number of files and directories the entry completes
+	 * @return number of files and directories
+	 */
+	abstract int getNumberOfPaths();
+
+	/**
+	 * Returns the size of the uncompressed data of the entry
+	 * @return size of the uncompressed data
+	 */
+	abstract long getSizeOfInput();
+
+	/**
+	 * Writes the type and the header of the entry
+	 * @param out output the archive is written to
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	abstract void writeHeader(DataOutput out) throws IOException;
+
+	/**
+	 * Adds the entry to the central directory
+	 * @param directory central directory of the archive
+	 * @param offset offset of the compressed data within the archive
+	 */
+	abstract void addTo(CentralDirectory directory, long offset);
+
+	/**
+	 * Returns array of compressed data
+	 * @return array of compressed data
+	 */
+	public byte[] getCompressedData() {
+		return buf;
+	}
+
+	/**
+	 * Shows is the data of the entry stored as is and transferred from the file into the archive
+	 * by <code>transferTo</code>, so it is not kept in the byte array
+	 * @return <code>true</code> if the data is to be transferred
+	 */
+	boolean isTransferable() {
+		return false;
+	}
+
+	/**
+	 * Returns the size of the data which follows the header of the entry in the archive
+	 * @return size of the compressed data
+	 */
+	long getSizeOfData() {
+		return count;
+	}
+
+	/**
+	 * Transfers the stored data of the entry from the file into the archive. 
+	 * Should be called only if <code>isTransferable</code> returns <code>true</code>.
+	 * @param target channel the archive is written to
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	void transferTo(WritableByteChannel target) throws IOException {
+		throw new UnsupportedOperationException("Data of " + this + " is not transferable");
+	}
+
+	/**
+	 * Transfers the stored data of the entry from the file into the denoted position of the archive file. 
+	 * If the checksum is not calculated yet, it is calculated while the data is transferred.
+	 * Should be called only if <code>isTransferable</code> returns <code>true</code>.
+	 * @param target channel of the archive file
+	 * @param position position of the archive file the data is to be written at
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	void transferTo(FileChannel target, long position) throws IOException {
+		throw new UnsupportedOperationException("Data of " + this + " is not transferable");
+	}
+
+	/**
+	 * Shows is the checksum of the data calculated before the data is compressed or transferred
+	 * @return <code>true</code> if the checksum is calculated
+	 */
+	boolean isChecksumCalculated() {
+		return checksumCalculated;
+	}
+
+	/**
+	 * Sets the position the data is written at within the archive
+	 * @param positionOfData position of the data within the archive
+	 */
+	void setPositionOfData(long positionOfData) {
+		this.positionOfData = positionOfData;
+	}
+
+	/**
+	 * Returns the position the data is written at within the archive
+	 * @return position of the data or -1 if the entry is not written at the reserved position
+	 */
+	long getPositionOfData() {
+		return positionOfData;
+	}
+
+	/**
+	 * Enables computing of SHA-256 digest of the uncompressed data, which identifies the content 
+	 * for the deduplication. The digest is computed while the data is read for its checksum.
+	 */
+	void enableDigest() {
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns SHA-256 digest of the uncompressed data. Should be called after the data is read.
+	 * @return digest or <code>null</code> if the digest is not enabled
+	 */
+	byte[] getDigest() {
+		return digest != null ? digest.digest() : null;
+	}
+
+	/**
+	 * Returns the header of the reference to the same content which is packed by another entry.
+	 * The reference is written instead of this entry.
+	 * @param targetPathName name of the path the content is packed with
+	 * @param targetOffset offset of the content within the target path
+	 * @return header of the reference
+	 */
+	PathHeader getReference(String targetPathName, long targetOffset) {
+		throw new UnsupportedOperationException("Data of " + this + " cannot be referenced");
+	}
+
+	/**
+	 * Returns the time spent on reading of the files while packing
+	 * @return time in nanoseconds
+	 */
+	long getReadNanos() {
+		return readNanos;
+	}
+
+	/**
+	 * Reads the denoted part of the file into the reusable direct buffer and adds it to the checksum.
+	 * The data is not copied into the heap.
+	 * @param path path of the file
+	 * @param channel channel of the file
+	 * @param offset offset of the data within the file
+	 * @param length length of the data
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	protected void updateChecksum(Path path, FileChannel channel, long offset, long length) throws IOException {
+		ByteBuffer input = inputBuffer.get();
+		long position = offset;
+		long end = offset + length;
+
+		while (position < end) {
+			position += read(path, channel, input, position, end);
+			input.flip();
+			updateDigest(input);
+			checksum.update(input);
+		}
+	}
+
+	/**
+	 * Reads the denoted part of the file and passes it to Compressor.
+	 * The file is read through FileChannel into the reusable direct buffer which is passed
+	 * to Compressor as is, the compressed data is written directly into the byte array.
+	 * @param path path of the file
+	 * @param channel channel of the file
+	 * @param offset offset of the data within the file
+	 * @param length length of the data
+	 * @param compressor Compressor to compress the data
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	protected void compress(Path path, FileChannel channel, long offset, long length, Compressor compressor)
+			throws IOException {
+		ByteBuffer input = inputBuffer.get();
+		long position = offset;
+		long end = offset + length;
+
+		while (position < end) {
+			position += read(path, channel, input, position, end);
+			input.flip();
+			if (!checksumCalculated) {
+				updateDigest(input);
+				checksum.update(input.duplicate());
+			}
+			compressor.setInput(input);
+			while (!compressor.needsInput()) {
+				compress(compressor);
+			}
+		}
+	}
+
+	/**
+	 * Adds the chunk of data to the digest if it is enabled. The position of the buffer is not changed.
+	 * @param input buffer with the chunk of data
+	 */
+	private void updateDigest(ByteBuffer input) {
+		if (digest != null) {
+			digest.update(input.duplicate());
+		}
+	}
+
+	/**
+	 * Reads the next chunk of the file into the buffer. The time of reading is accumulated.
+	 * @param path path of the file
+	 * @param channel channel of the file
+	 * @param input buffer the chunk is read into
+	 * @param position position of the chunk within the file
+	 * @param end end of the data within the file
+	 * @return number of read bytes
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	private int read(Path path, FileChannel channel, ByteBuffer input, long position, long end) throws IOException {
+		long startTime = System.nanoTime();
+		input.clear();
+		input.limit((int)Math.min(input.capacity(), end - position));
+		int read = channel.read(input, position);
+		readNanos += System.nanoTime() - startTime;
+		if (read < 0) {
+			throw new IOException("File: " + path + " has been truncated while packing");
+		}
+		return read;
+	}
+
+	/**
+	 * Extends the byte array, so the compressed data of the denoted size fits it without copying
+	 * @param size expected size of the compressed data
+	 */
+	protected void reserve(int size) {
+		if (buf.length < size) {
+			buf = Arrays.copyOf(buf, size);
+		}
+	}
+
+	/**
+	 * Compresses the rest of data passed to Compressor
+	 * @param compressor Compressor to compress the data
+	 */
+	protected void finish(Compressor compressor) {
+		compressor.finish();
+		while (!compressor.finished()) {
+			compress(compressor);
+		}
+	}
+
+	/**
+	 * Compresses the next portion of data into the free space of the byte array.
+	 * The array is extended if it is full.
+	 * @param compressor Compressor with the input data
+	 */
+	private void compress(Compressor compressor) {
+		if (count == buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(64, buf.length + (buf.length >> 1)));
+		}
+		count += compressor.compress(buf, count, buf.length - count);
+	}
+}
@@ -0,0 +1,105 @@
+package com.olegermolaev84.archive.core;
+
+import java.util.concurrent.Executor;
+
+import com.olegermolaev84.archive.compression.CompressionMethod;
+import com.olegermolaev84.archive.compression.CompressionMethods;
+import com.olegermolaev84.archive.compression.Decompressor;
+import com.olegermolaev84.archive.metrics.CodecMetrics;
+
+/**
+ * Base class of the decoders which unpack one entry of the archive
+ */
+abstract class DataDecoder {
+	/** Compression method of the data */
+	protected CompressionMethod compressionMethod = CompressionMethods.DEFLATE;
+
+	/** Cache of the created directories */
+	protected Directories directories = new Directories();
+
+	/** Executor which writes files. <code>null</code> if files are written by the decompressing thread */
+	protected Executor ioExecutor;
+
+	/** Metrics shared by the decoders which are used without Decoder */
+	private static final CodecMetrics standaloneMetrics = new CodecMetrics();
+
+	/** Metrics the decompression and writing are recorded to */
+	protected CodecMetrics metrics = standaloneMetrics;
+
+	/** Shows is the data only decompressed and checked, files and directories are not created */
+	protected boolean verifyOnly = false;
+
+	/**
+	 * Sets the cache of the created directories shared by the decoders of the archive
+	 * @param directories cache of the created directories
+	 */
+	void setDirectories(Directories directories) {
+		this.directories = directories;
+	}
+
+	/**
+	 * Sets the executor which writes files while the next data is being decompressed
+	 * @param ioExecutor executor which writes files. If <code>null</code>, files are written 
+	 *                   by the decompressing thread
+	 */
+	void setIoExecutor(Executor ioExecutor) {
+		this.ioExecutor = ioExecutor;
+	}
+
+	/**
+	 * Sets the metrics of the decoder the decompression and writing are recorded to
+	 * @param metrics metrics of the decoder
+	 */
+	void setMetrics(CodecMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Sets the mode in which the data is only decompressed and checked against its checksums,
+	 * files and directories are not created
+	 * @param verifyOnly <code>true</code> if files and directories are not to be created
+	 */
+	void setVerifyOnly(boolean verifyOnly) {
+		this.verifyOnly = verifyOnly;
+	}
+
+	/**
+	 * Sets the compression method of the data. By default the data is inflated.
+	 * @param compressionMethod compression method
+	 */
+	void setCompressionMethod(CompressionMethod compressionMethod) {
+		this.compressionMethod = compressionMethod;
+	}
+
+	/**
+	 * Returns the compression method of the data
+	 * @return compression method
+	 */
+	CompressionMethod getCompressionMethod() {
+		return compressionMethod;
+	}
+
+	/**
+	 * Returns the number of bytes of the compressed data kept by this decoder
+	 * @return size of the compressed data
+	 */
+	abstract long getSizeOfData();
+
+	/**
+	 * Returns the number of bytes of the data of the entry in the archive, including the data
+	 * which is not kept by this decoder
+	 * @return size of the data of the entry
+	 */
+	long getSizeOfEntry() {
+		return getSizeOfData();
+	}
+
+	/**
+	 * Decompresses the data of the entry by the denoted Decompressor and creates the corresponding 
+	 * files and directories. The Decompressor is to be reset and belong to the compression method
+	 * of this decoder, it is not ended.
+	 * @param decompressor Decompressor to decompress the data
+	 * @param errors StringBuffer to collect errors which can occur while the files unpacking.
+	 */
+	abstract void unpack(Decompressor decompressor, StringBuffer errors);
+}
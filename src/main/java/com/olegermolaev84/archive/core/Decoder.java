@@ -1,43 +1,192 @@
 package com.olegermolaev84.archive.core;
 
 import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.OptionalDataException;
-import java.nio.file.FileAlreadyExistsException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+import com.olegermolaev84.archive.compression.CompressionMethods;
+import com.olegermolaev84.archive.metrics.Stage;
+import com.olegermolaev84.archive.util.CountingInputStream;
 import com.olegermolaev84.archive.util.FileFormatException;
 
 
 /**
  * Unpacks files from the denoted stream and saves them 
- * into the specified directory (by default the current directory)
+ * into the specified directory (by default the current directory).
+ * <br>Both the binary format described by ArchiveFormat and the legacy format 
+ * written by ObjectOutputStream are supported. The format is detected automatically.
+ * <br>If the archive is a file with the CentralDirectory, the denoted entries can be unpacked
+ * without reading the whole archive.
+ * <br>The entries are read ahead of the unpacking tasks within the window which is limited by
+ * <code>setMaxTasksInFlight</code> and <code>setMaxBytesInFlight</code>, so the memory 
+ * does not depend on the size of the archive.
+ * <br>The uncompressed data is checked against the CRC32C checksums of the entries. The archive can be
+ * verified by <code>verify</code> without creating files.
+ * <br>The content of the archive can be listed by <code>list</code> without decompressing the data.
+ * <br>If the archive is a file, the stored entries are transferred from the archive into the files 
+ * by <code>FileChannel.transferTo</code> without being read into memory.
+ * <br>The entries can be selected by the include and exclude glob patterns. The entries which are not 
+ * selected are skipped before their data is read into memory.
  *
  */
 public class Decoder extends Codec{
 	/** Stream with packed files */
-	private final ObjectInputStream inputStream;
+	private final DataInputStream inputStream;
+	
+	/** Stream of the legacy archive format. <code>null</code> if the archive has the binary format */
+	private final ObjectInputStream legacyStream;
 	
 	/** Path to the directory the unpacked files to be stored to */
 	private Path parrentPath = Paths.get(".");
 	
+	/** Files which are unpacked from several blocks */
+	private final Map<Path, BlockedFile> blockedFiles = new HashMap<>();
+	
+	/** Latches of the unpacked files and blocks indexed by their content keys. References wait for them */
+	private final Map<String, CountDownLatch> unpackedContents = new HashMap<>();
+	
+	/** Content keys of the targets of the references. The latches are registered for them only.
+	 * <code>null</code> if the targets are unknown because the archive does not have the central directory */
+	private Set<String> referencedContents = Collections.emptySet();
+	
+	/** Directories created while unpacking, shared by all decoders */
+	private final Directories directories = new Directories();
+	
+	/** Preset dictionary of the archive. <code>null</code> if the archive does not have the dictionary */
+	private byte[] dictionary;
+	
+	/** Channel of the archive file. <code>null</code> if the archive is not read from a seekable file */
+	private final FileChannel channel;
+	
+	/** Counts bytes read from the archive in order to know offsets of the entries */
+	private final CountingInputStream countingStream;
+	
+	/** Offset of the beginning of the input stream within the archive file */
+	private final long startOffset;
+	
+	/** Submitted but not completed tasks and the number of bytes of compressed data of each of them */
+	private final Map<Future<Void>, Long> tasksInFlight = new HashMap<>();
+	
+	/** Number of bytes of compressed data kept by the submitted but not completed tasks */
+	private long bytesInFlight = 0;
+	
+	/** Shows is the archive only verified, files and directories are not created */
+	private boolean verifyOnly = false;
+	
+	/** Size of the buffer the skipped data is read into if the input stream does not support seeking */
+	private static final int SIZE_OF_SKIP_BUFFER = 64 * 1024;
+	
+	/** Buffer the skipped data is read into. <code>null</code> while the input stream supports seeking */
+	private byte[] skipBuffer;
+	
+	/** Patterns of the paths to be unpacked. All paths are unpacked if the list is empty */
+	private final List<PathMatcher> includes = new ArrayList<>();
+	
+	/** Patterns of the paths not to be unpacked */
+	private final List<PathMatcher> excludes = new ArrayList<>();
+	
 	/**
 	 * Constructor 
 	 * @param is Stream with packed files
 	 * @throws IOException will be thrown in case of IO errors
 	 */
 	public Decoder(InputStream is) throws IOException {
-		this.inputStream = new ObjectInputStream(new BufferedInputStream(is));
+		this(is, is instanceof FileInputStream ? ((FileInputStream)is).getChannel() : null, null);
+	}
+	
+	/**
+	 * Constructor which opens the archive file. The denoted entries can be unpacked 
+	 * by <code>unpack(String...)</code> without reading the whole archive.
+	 * @param archive Path to the archive file
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	public Decoder(Path archive) throws IOException {
+		this(FileChannel.open(archive, StandardOpenOption.READ), null);
+	}
+	
+	/**
+	 * Constructor
+	 * @param channel Channel of the archive file
+	 * @param parent Decoder whose run this decoder is a part of or <code>null</code>
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private Decoder(FileChannel channel, Decoder parent) throws IOException {
+		this(Channels.newInputStream(channel), channel, parent);
+	}
+	
+	/**
+	 * Constructor 
+	 * @param is Stream with packed files
+	 * @param channel Channel of the archive file or <code>null</code>
+	 * @param parent Decoder whose run this decoder is a part of or <code>null</code>. 
+	 * The parent's output folder and patterns of the paths are used
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private Decoder(InputStream is, FileChannel channel, Decoder parent) throws IOException {
+		super(parent);
+		if(parent != null) {
+			parrentPath = parent.parrentPath;
+			includes.addAll(parent.includes);
+			excludes.addAll(parent.excludes);
+		}
+		long startOffset = -1;
+		if(channel != null) {
+			try {
+				startOffset = channel.position();
+			} catch (IOException e) {
+				// the file is a pipe, it does not support random access
+				log.info(()->"Archive is not seekable: " + e.getMessage());
+			}
+		}
+		this.channel = startOffset >= 0 ? channel : null;
+		this.startOffset = startOffset;
+		
+		BufferedInputStream bis = new BufferedInputStream(is);
+		bis.mark(2);
+		int magic = (bis.read() << 8) | bis.read();
+		bis.reset();
+		
+		this.countingStream = new CountingInputStream(bis);
+		if(magic == ArchiveFormat.LEGACY_MAGIC) {
+			this.legacyStream = new ObjectInputStream(countingStream);
+			this.inputStream = new DataInputStream(legacyStream);
+		}
+		else {
+			this.legacyStream = null;
+			this.inputStream = new DataInputStream(countingStream);
+		}
 	}
 	
 	/**
@@ -62,40 +211,368 @@ public class Decoder extends Codec{
 		this.parrentPath = parrentPath;
 	}
 	
+	/**
+	 * Adds the glob pattern of the paths to be unpacked. If patterns are added, only the paths
+	 * which match at least one of them (or are within the matching directory) are unpacked.
+	 * @param glob glob pattern of the path names, e.g. <code>dir/**.txt</code>
+	 * @throws IllegalArgumentException will be thrown if the pattern is invalid
+	 */
+	public void addInclude(String glob) throws IllegalArgumentException {
+		includes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+	}
+	
+	/**
+	 * Adds the glob pattern of the paths not to be unpacked. The paths which match 
+	 * the pattern (or are within the matching directory) are skipped.
+	 * @param glob glob pattern of the path names
+	 * @throws IllegalArgumentException will be thrown if the pattern is invalid
+	 */
+	public void addExclude(String glob) throws IllegalArgumentException {
+		excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+	}
+	
 	/**
 	 * Unpacks files from the input stream
 	 * @return <code>true</code> if unpacking is performed successfully, otherwise <code>false</code>
 	 * @throws IOException will be thrown in case of IO errors
 	 */
 	public boolean unpack() throws IOException {
+		metrics.start("Decoder");
+		progress.start();
+		StringBuffer errors = new StringBuffer();
+		
+		if(!verifyOnly && !Files.isWritable(parrentPath)) {
+			errorMessage = "Path: " + parrentPath + " does not have write permissions";
+			return shutdown(false);
+		}
+		
+		ExecutorCompletionService<Void> service 
+			= new ExecutorCompletionService<Void>(executor);
+		
+		try {
+			if(legacyStream == null) {
+				ArchiveFormat.readArchiveHeader(inputStream);
+			}
+			
+			CentralDirectory directory = readDirectory();
+			if(directory != null) {
+				progress.setTotalBytes(getSizeOfSelectedData(directory));
+			}
+			referencedContents = getReferencedContents(directory);
+			DataDecoder dataDecoder = readPackedData(errors);
+			while (dataDecoder != null) {
+				submitTask(dataDecoder, service, errors);
+				dataDecoder = readPackedData(errors);
+			}
+			progress.setTotalKnown();
+		} catch (FileFormatException e) {
+			errorMessage = "Error occurred while input stream decoding: " + e.getMessage();
+			return shutdown(false);
+		}
+		
+		waitForTasks(service, errors);
+		
+		if(errors.length() > 0) {
+			errorMessage = errors.toString();
+			return shutdown(false);
+		}
+		
+		return shutdown(true);
+	}
+	
+	/**
+	 * Verifies the archive from the input stream: all entries are decompressed in parallel and 
+	 * checked against their checksums, files and directories are not created
+	 * @return <code>true</code> if the archive is valid, otherwise <code>false</code>
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	public boolean verify() throws IOException {
+		verifyOnly = true;
+		return unpack();
+	}
+	
+	/**
+	 * Lists the files and directories of the archive without decompressing their data. If the archive
+	 * is a file with the central directory, only the directory is read. Otherwise the headers are read 
+	 * from the input stream and the compressed data of the entries is skipped.
+	 * <br>The file which is split into blocks is passed once by the header of its first block.
+	 * The members of the solid blocks are passed one by one.
+	 * @param consumer receives the headers of the files and directories in the order of the archive
+	 * @return <code>true</code> if listing is performed successfully, otherwise <code>false</code>
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	public boolean list(Consumer<PathHeader> consumer) throws IOException {
+		try {
+			CentralDirectory directory = channel != null && legacyStream == null ? CentralDirectory.read(channel, startOffset) : null;
+			if(directory != null) {
+				for(CentralDirectory.Entry entry : directory.getEntries()) {
+					if(entry.getHeader() != null) {
+						list(entry.getHeader(), consumer);
+					}
+					else {
+						entry.getSolidBlock().getMembers().forEach((member)->list(member, consumer));
+					}
+				}
+				return shutdown(true);
+			}
+			
+			if(legacyStream == null) {
+				ArchiveFormat.readArchiveHeader(inputStream);
+			}
+			listEntries(consumer);
+		} catch (FileFormatException e) {
+			errorMessage = "Error occurred while input stream decoding: " + e.getMessage();
+			return shutdown(false);
+		}
+		return shutdown(true);
+	}
+	
+	/**
+	 * Reads the headers of the entries from the input stream and skips their compressed data
+	 * @param consumer receives the headers of the files and directories
+	 * @throws FileFormatException will be thrown if the input stream has corrupted format
+	 * @throws IOException  will be thrown in case of IO errors
+	 */
+	private void listEntries(Consumer<PathHeader> consumer) throws FileFormatException, IOException {
+		if(legacyStream != null) {
+			for(PathHeader header = readLegacyPathHeader(); header != null; header = readLegacyPathHeader()) {
+				list(header, consumer);
+				skipData(header.getSizeOfData());
+			}
+			return;
+		}
+		
+		try {
+			while(true) {
+				byte type = inputStream.readByte();
+				if(type == ArchiveFormat.ENTRY_END) {
+					return;
+				}
+				else if(type == ArchiveFormat.ENTRY_PATH) {
+					PathHeader header = ArchiveFormat.readPathHeader(inputStream);
+					list(header, consumer);
+					skipData(header.getSizeOfData());
+				}
+				else if(ArchiveFormat.isSolidBlock(type)) {
+					SolidBlockHeader header = ArchiveFormat.readSolidBlockHeader(inputStream, type);
+					header.getMembers().forEach((member)->list(member, consumer));
+					skipData(header.getSizeOfData());
+				}
+				else if(type == ArchiveFormat.ENTRY_DICTIONARY) {
+					skipData(ArchiveFormat.readVarLong(inputStream));
+				}
+				else {
+					throw new FileFormatException("Corrupted input stream format: cannot read path header");
+				}
+			}
+		} catch (EOFException e) {
+			throw new FileFormatException("Corrupted input stream format: unexpected end of the archive");
+		}
+	}
+	
+	/**
+	 * Passes the selected header to the consumer unless it is a subsequent block of the file
+	 * @param header header of the entry
+	 * @param consumer receives the headers of the files and directories
+	 */
+	private void list(PathHeader header, Consumer<PathHeader> consumer) {
+		if(header.getOffset() == 0 && isSelected(header)) {
+			consumer.accept(header);
+		}
+	}
+	
+	/**
+	 * Checks the path of the entry against the include and exclude patterns
+	 * @param header header of the entry
+	 * @return <code>true</code> if the path is to be unpacked
+	 */
+	private boolean isSelected(PathHeader header) {
+		return isSelected(header.getPathName());
+	}
+	
+	/**
+	 * Checks the path name against the include and exclude patterns
+	 * @param pathName name of the path in the archive
+	 * @return <code>true</code> if the path is to be unpacked
+	 */
+	private boolean isSelected(String pathName) {
+		if(includes.isEmpty() && excludes.isEmpty()) {
+			return true;
+		}
+		
+		Path path;
+		try {
+			path = Paths.get(pathName);
+		} catch (InvalidPathException e) {
+			// the error is reported when the path is resolved
+			return true;
+		}
+		return (includes.isEmpty() || matches(path, includes)) && !matches(path, excludes);
+	}
+	
+	/**
+	 * Checks whether the path or one of its parents matches one of the patterns
+	 * @param path path of the entry
+	 * @param matchers patterns
+	 * @return <code>true</code> if the path or one of its parents matches
+	 */
+	private static boolean matches(Path path, List<PathMatcher> matchers) {
+		for(Path parent = path; parent != null; parent = parent.getParent()) {
+			for(PathMatcher matcher : matchers) {
+				if(matcher.matches(parent)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Skips the compressed data of the entry in the input stream. The data is not read 
+	 * if the underlying stream supports seeking, otherwise it is read into the reusable buffer.
+	 * @param sizeOfData size of compressed data
+	 * @throws FileFormatException will be thrown if the stream ends before the data
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private void skipData(long sizeOfData) throws FileFormatException, IOException {
+		while(sizeOfData > 0) {
+			long skipped;
+			if(skipBuffer == null) {
+				try {
+					skipped = inputStream.skip(sizeOfData);
+				} catch (IOException e) {
+					// pipes do not support seeking
+					skipBuffer = new byte[SIZE_OF_SKIP_BUFFER];
+					continue;
+				}
+			}
+			else {
+				skipped = inputStream.read(skipBuffer, 0, (int)Math.min(skipBuffer.length, sizeOfData));
+			}
+			
+			if(skipped <= 0) {
+				// skip does not report the end of the stream
+				if(inputStream.read() < 0) {
+					throw new FileFormatException("Corrupted file format: cannot read file data");
+				}
+				skipped = 1;
+			}
+			sizeOfData -= skipped;
+		}
+	}
+	
+	/**
+	 * Unpacks the denoted files and directories (with all their content) from the archive file.
+	 * Only the central directory and the data of the denoted entries are read.
+	 * @param pathNames names of the paths in the archive
+	 * @return <code>true</code> if unpacking is performed successfully, otherwise <code>false</code>
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	public boolean unpack(String... pathNames) throws IOException {
+		metrics.start("Decoder");
+		progress.start();
 		StringBuffer errors = new StringBuffer();
 		
 		if(!Files.isWritable(parrentPath)) {
 			errorMessage = "Path: " + parrentPath + " does not have write permissions";
 			return shutdown(false);
 		}
+		else if(channel == null) {
+			errorMessage = "The archive is not a file, random access is not possible";
+			return shutdown(false);
+		}
 		
 		ExecutorCompletionService<Void> service 
 			= new ExecutorCompletionService<Void>(executor);
 		
 		try {
-			SingleFileDecoder fileDecoder = readPackedData();
-			while (fileDecoder != null) {
-				submitTask(fileDecoder, service, errors);
-				fileDecoder = readPackedData();
+			CentralDirectory directory = CentralDirectory.read(channel, startOffset);
+			if(directory == null) {
+				errorMessage = "The archive does not have the central directory";
+				return shutdown(false);
+			}
+			readDictionary();
+			
+			List<Path> requestedPaths = new ArrayList<>();
+			for(String pathName : pathNames) {
+				requestedPaths.add(toPath(pathName));
+			}
+			boolean[] found = new boolean[pathNames.length];
+			submitEntries(directory, (header)->matches(header, requestedPaths, found) && isSelected(header), 
+					(member)->matches(member, requestedPaths, null) && isSelected(member), service, errors);
+			progress.setTotalKnown();
+			
+			for(int i = 0; i < pathNames.length; i++) {
+				if(!found[i]) {
+					errors.append("File: " + pathNames[i] + " is not found in the archive\n");
+				}
 			}
 		} catch (FileFormatException e) {
 			errorMessage = "Error occurred while input stream decoding: " + e.getMessage();
 			return shutdown(false);
 		}
 		
-		// wait till all files decoded
-		for(int i = 0; i < numberOfPaths; i++) {
-			try {
-				service.take().get();
-			} catch (InterruptedException | ExecutionException e) {
-				errors.append("Error occurred while files unpacking: " + e.getMessage() + "\n");
+		waitForTasks(service, errors);
+		
+		if(errors.length() > 0) {
+			errorMessage = errors.toString();
+			return shutdown(false);
+		}
+		
+		return shutdown(true);
+	}
+	
+	/**
+	 * Restores the full tree from the base archive and the chain of incremental archives. 
+	 * This decoder's archive is the last one of the chain. The content of each path is unpacked 
+	 * from the latest archive which has it, the deleted paths are not unpacked.
+	 * @param baseArchives Paths to the base archive and the incremental archives preceding
+	 * this decoder's archive, from the oldest to the newest
+	 * @return <code>true</code> if unpacking is performed successfully, otherwise <code>false</code>
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	public boolean restore(Path... baseArchives) throws IOException {
+		metrics.start("Decoder");
+		progress.start();
+		StringBuffer errors = new StringBuffer();
+		
+		if(!Files.isWritable(parrentPath)) {
+			errorMessage = "Path: " + parrentPath + " does not have write permissions";
+			return shutdown(false);
+		}
+		else if(channel == null) {
+			errorMessage = "The archive is not a file, random access is not possible";
+			return shutdown(false);
+		}
+		
+		ExecutorCompletionService<Void> service 
+			= new ExecutorCompletionService<Void>(executor);
+		
+		Set<String> unchanged;
+		try {
+			CentralDirectory directory = CentralDirectory.read(channel, startOffset);
+			if(directory == null) {
+				errorMessage = "The archive does not have the central directory";
+				return shutdown(false);
 			}
+			readDictionary();
+			unchanged = submitEntries(directory, this::isSelected, this::isSelected, service, errors);
+		} catch (FileFormatException e) {
+			errorMessage = "Error occurred while input stream decoding: " + e.getMessage();
+			return shutdown(false);
+		}
+		
+		waitForTasks(service, errors);
+		
+		// the unchanged files are unpacked from the preceding archives by the executors of this decoder. 
+		// Their entries are added to the metrics and progress of this decoder, so the totals are known after them
+		for(int i = baseArchives.length - 1; i >= 0 && !unchanged.isEmpty(); i--) {
+			Decoder decoder = new Decoder(FileChannel.open(baseArchives[i], StandardOpenOption.READ), this);
+			unchanged = decoder.restoreUnchanged(unchanged, errors);
+		}
+		progress.setTotalKnown();
+		for(String pathName : unchanged) {
+			errors.append("File: " + pathName + " is not found in the archive\n");
 		}
 		
 		if(errors.length() > 0) {
@@ -106,79 +583,713 @@ public class Decoder extends Codec{
 		return shutdown(true);
 	}
 	
+	/**
+	 * Unpacks the denoted files which are unchanged in the newer archive. The archive is closed,
+	 * the executors, metrics and progress are shut down by the decoder of the newer archive.
+	 * @param pathNames names of the unchanged files
+	 * @param errors StringBuffer to collect errors which can occur while the files unpacking.
+	 * @return names of the files which are unchanged in this archive too
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private Set<String> restoreUnchanged(Set<String> pathNames, StringBuffer errors) throws IOException {
+		ExecutorCompletionService<Void> service 
+			= new ExecutorCompletionService<Void>(executor);
+		
+		Set<String> unchanged = pathNames;
+		try {
+			CentralDirectory directory = CentralDirectory.read(channel, startOffset);
+			if(directory == null) {
+				throw new FileFormatException("the archive does not have the central directory");
+			}
+			readDictionary();
+			Predicate<PathHeader> selector = (header)->pathNames.contains(header.getPathName());
+			unchanged = submitEntries(directory, selector, selector, service, errors);
+		} catch (FileFormatException e) {
+			errors.append("Error occurred while input stream decoding: " + e.getMessage() + "\n");
+		}
+		
+		waitForTasks(service, errors);
+		close();
+		return unchanged;
+	}
+	
+	/**
+	 * Submits tasks for the selected entries of the archive file. The references are unpacked 
+	 * by inflating the data of their targets.
+	 * @param directory central directory of the archive
+	 * @param selector selects paths to be unpacked. It is called by the current thread for every path
+	 * @param filter selects members of the solid blocks. It is called by the tasks. 
+	 * <code>null</code> if all members of the selected blocks are to be unpacked
+	 * @param service ExecutorCompletionService
+	 * @param errors StringBuffer to collect errors which can occur while the files unpacking.
+	 * @return names of the selected files which are unchanged since the base archive
+	 * @throws FileFormatException will be thrown if the archive has corrupted format
+	 * @throws IOException  will be thrown in case of IO errors
+	 */
+	private Set<String> submitEntries(CentralDirectory directory, Predicate<PathHeader> selector, 
+			Predicate<PathHeader> filter, ExecutorCompletionService<Void> service, StringBuffer errors) 
+					throws FileFormatException, IOException {
+		Set<String> unchanged = new LinkedHashSet<>();
+		Map<String, CentralDirectory.Entry> targets = null;
+		
+		for(CentralDirectory.Entry entry : directory.getEntries()) {
+			PathHeader header = entry.getHeader();
+			if(header != null && (header.isUnchanged() || header.isDeleted())) {
+				if(header.isUnchanged() && selector.test(header)) {
+					unchanged.add(header.getPathName());
+				}
+			}
+			else if(header != null && header.isReference()) {
+				if(selector.test(header)) {
+					if(targets == null) {
+						targets = getTargets(directory);
+					}
+					// the reference is unpacked by inflating the data of the target
+					CentralDirectory.Entry target = targets.get(contentKey(header.getTargetPathName(), header.getTargetOffset()));
+					if(target == null) {
+						throw new FileFormatException("Corrupted input stream format: referenced file is not found: " 
+								+ header.getTargetPathName());
+					}
+					submitTask(createFileDecoder(header, target), service, errors);
+				}
+			}
+			else if(header != null) {
+				if(selector.test(header)) {
+					submitTask(createFileDecoder(header, entry), service, errors);
+				}
+			}
+			else {
+				boolean selected = false;
+				for(PathHeader member : entry.getSolidBlock().getMembers()) {
+					selected |= selector.test(member);
+				}
+				if(selected) {
+					submitTask(createSolidBlockDecoder(entry.getSolidBlock(), readData(entry), filter), 
+							service, errors);
+				}
+			}
+		}
+		return unchanged;
+	}
+	
+	/**
+	 * Waits till all submitted tasks are completed
+	 * @param service ExecutorCompletionService
+	 * @param errors StringBuffer to collect error which can occur while the file unpacking.
+	 */
+	private void waitForTasks(ExecutorCompletionService<Void> service, StringBuffer errors) {
+		while(!tasksInFlight.isEmpty()) {
+			waitForNextTask(service, errors);
+		}
+	}
+	
+	/**
+	 * Waits till the next submitted task is completed and frees its part of the window
+	 * @param service ExecutorCompletionService
+	 * @param errors StringBuffer to collect error which can occur while the file unpacking.
+	 */
+	private void waitForNextTask(ExecutorCompletionService<Void> service, StringBuffer errors) {
+		Future<Void> future;
+		try {
+			future = service.take();
+		} catch (InterruptedException e) {
+			errors.append("Error occurred while files unpacking: " + e.getMessage() + "\n");
+			Thread.currentThread().interrupt();
+			tasksInFlight.clear();
+			return;
+		}
+		
+		try {
+			future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			errors.append("Error occurred while files unpacking: " + e.getMessage() + "\n");
+		} finally {
+			metrics.taskCompleted();
+			bytesInFlight -= tasksInFlight.remove(future);
+		}
+	}
+	
+	/**
+	 * Indexes the entries with compressed data of files and blocks by their content keys
+	 * @param directory central directory of the archive
+	 * @return entries indexed by content keys
+	 */
+	private static Map<String, CentralDirectory.Entry> getTargets(CentralDirectory directory) {
+		Map<String, CentralDirectory.Entry> targets = new HashMap<>();
+		for(CentralDirectory.Entry entry : directory.getEntries()) {
+			PathHeader header = entry.getHeader();
+			if(header != null && header.isRegularFile() && !header.isReference()) {
+				targets.put(contentKey(header.getPathName(), header.getOffset()), entry);
+			}
+		}
+		return targets;
+	}
+	
+	/**
+	 * Reads the central directory by the channel of the input stream. The position of the channel is restored.
+	 * @return central directory or <code>null</code> if the archive does not have the valid directory
+	 * @throws IOException  will be thrown in case of IO errors
+	 */
+	private CentralDirectory readDirectory() throws IOException {
+		if(channel == null || legacyStream != null) {
+			return null;
+		}
+		long position = channel.position();
+		try {
+			return CentralDirectory.read(channel, startOffset);
+		} catch (FileFormatException e) {
+			// the entries are unpacked from the stream anyway
+			log.info(()->"Central directory is not read: " + e.getMessage());
+			return null;
+		} finally {
+			channel.position(position);
+		}
+	}
+	
+	/**
+	 * Returns the content keys of the targets of the references listed by the central directory
+	 * @param directory central directory of the archive or <code>null</code>
+	 * @return content keys of the targets or <code>null</code> if the directory is unknown, 
+	 * then the latches are registered for all targets
+	 */
+	private static Set<String> getReferencedContents(CentralDirectory directory) {
+		if(directory == null) {
+			return null;
+		}
+		Set<String> targets = new HashSet<>();
+		for(CentralDirectory.Entry entry : directory.getEntries()) {
+			PathHeader header = entry.getHeader();
+			if(header != null && header.isReference()) {
+				targets.add(contentKey(header.getTargetPathName(), header.getTargetOffset()));
+			}
+		}
+		return targets;
+	}
+	
+	/**
+	 * Sums the sizes of the data of the entries which are unpacked from the stream 
+	 * with the current include and exclude patterns
+	 * @param directory central directory of the archive
+	 * @return number of bytes of the data of the selected entries
+	 */
+	private long getSizeOfSelectedData(CentralDirectory directory) {
+		long size = 0;
+		for(CentralDirectory.Entry entry : directory.getEntries()) {
+			PathHeader header = entry.getHeader();
+			if(header != null) {
+				if(!header.isUnchanged() && !header.isDeleted() && !header.isReference() && isSelected(header)) {
+					size += header.getSizeOfData();
+				}
+			}
+			else {
+				boolean selected = false;
+				for(PathHeader member : entry.getSolidBlock().getMembers()) {
+					selected |= isSelected(member);
+				}
+				size += selected ? entry.getSizeOfData() : 0;
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Returns the key of the content of the file or block
+	 * @param pathName name of the path
+	 * @param offset offset of the block within the file
+	 * @return key of the content
+	 */
+	private static String contentKey(String pathName, long offset) {
+		return pathName + "@" + offset;
+	}
+	
+	/**
+	 * Checks whether the header's path is one of the denoted paths or is within one of them
+	 * @param header header of the entry
+	 * @param requestedPaths denoted paths
+	 * @param found flags of the denoted paths which are set if the path matches. May be <code>null</code>
+	 * @return <code>true</code> if the header's path matches at least one of the denoted paths
+	 */
+	private static boolean matches(PathHeader header, List<Path> requestedPaths, boolean[] found) {
+		Path path;
+		try {
+			path = Paths.get(header.getPathName());
+		} catch (InvalidPathException e) {
+			return false;
+		}
+		
+		boolean matched = false;
+		for(int i = 0; i < requestedPaths.size(); i++) {
+			if(requestedPaths.get(i) != null && path.startsWith(requestedPaths.get(i))) {
+				matched = true;
+				if(found != null) {
+					found[i] = true;
+				}
+			}
+		}
+		return matched;
+	}
+	
+	/**
+	 * Converts the path name into the normalized path
+	 * @param pathName name of the path
+	 * @return normalized path or <code>null</code> if the name is not a valid path
+	 */
+	private static Path toPath(String pathName) {
+		try {
+			return Paths.get(pathName).normalize();
+		} catch (InvalidPathException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Reads compressed data of the entry from the archive file
+	 * @param entry entry of the central directory
+	 * @return compressed data
+	 * @throws FileFormatException will be thrown if the data cannot be read
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private byte[] readData(CentralDirectory.Entry entry) throws FileFormatException, IOException {
+		if(entry.getSizeOfData() > Integer.MAX_VALUE) {
+			throw new FileFormatException("Corrupted file format: size of data exceeds " + Integer.MAX_VALUE + " bytes");
+		}
+		
+		long startTime = metrics.startTime();
+		ByteBuffer data = ByteBuffer.allocate((int)entry.getSizeOfData());
+		while(data.hasRemaining()) {
+			if(channel.read(data, startOffset + entry.getOffset() + data.position()) < 0) {
+				throw new FileFormatException("Corrupted file format: cannot read file data");
+			}
+		}
+		metrics.record(Stage.READ, startTime, data.capacity());
+		metrics.addBytesIn(data.capacity());
+		return data.array();
+	}
+	
 	@Override
 	protected boolean shutdown(boolean result) throws IOException {
+		release();
+		metrics.finish();
+		progress.finish();
+		return result;
+	}
+	
+	/**
+	 * Shutdowns the executors and closes the archive and the unpacked files
+	 * @throws IOException will be thrown in case of IO exceptions
+	 */
+	private void release() throws IOException {
 		executor.shutdown();
+		// the files being unpacked are to be closed prior the return
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// the tasks wait for their writes, so the I/O threads are not needed anymore
+		ioExecutor.shutdown();
+		compressorPool.release();
+		close();
+	}
+	
+	/**
+	 * Closes the archive and the unpacked files. The tasks are to be completed.
+	 * @throws IOException will be thrown in case of IO exceptions
+	 */
+	private void close() throws IOException {
 		inputStream.close();
-		return result;
+		for(BlockedFile blockedFile : blockedFiles.values()) {
+			blockedFile.close();
+		}
 	}
 	
 	/**
-	 * Creates new Callable task for the given SingleFileDecoder. The task is responsible for unpacking
-	 * and saving the file (or directory) to the output folder. Then the task is submitted into the 
-	 * ExecutorCompletionService
-	 * @param fileDecoder initialized with compressed data SingleFileDecoder class object.
+	 * Creates new Callable task for the given DataDecoder. The task is responsible for unpacking
+	 * and saving the files (or directories) of the entry to the output folder. Then the task is submitted 
+	 * into the ExecutorCompletionService. Prior the submission the reading thread waits till 
+	 * the completed tasks free the window, so the compressed data buffered by the tasks is bounded.
+	 * @param dataDecoder initialized with compressed data DataDecoder class object.
 	 * @param service ExecutorCompletionService
 	 * @param errors StringBuffer to collect error which can occur while the file unpacking.
 	 */
-	private void submitTask(SingleFileDecoder fileDecoder, 
+	private void submitTask(DataDecoder dataDecoder, 
 			ExecutorCompletionService<Void> service, StringBuffer errors) {
+		long length = dataDecoder.getSizeOfData();
+		long sizeOfEntry = dataDecoder.getSizeOfEntry();
+		while(!tasksInFlight.isEmpty() && 
+				(tasksInFlight.size() >= maxTasksInFlight || bytesInFlight + length > maxBytesInFlight)) {
+			waitForNextTask(service, errors);
+		}
+		
 		Callable<Void> task =()->{
-			try {
-				fileDecoder.unpackFile();
-			}catch (FileAlreadyExistsException e) {
-				errors.append("File: " + fileDecoder.getFileName() + " already exists\n");
-			}catch (IOException e) {
-				errors.append("Error occurred while unpacking of file: " + fileDecoder.getFileName() + ", error: " + e + "\n");
-			}
+			dataDecoder.unpack(compressorPool.getDecompressor(dataDecoder.getCompressionMethod()), errors);
+			metrics.addEntry();
+			progress.addProcessed(1, sizeOfEntry);
 			return null;
 		};
-		service.submit(task);
+		progress.addTotal(sizeOfEntry);
+		tasksInFlight.put(service.submit(task), length);
+		metrics.taskSubmitted();
+		bytesInFlight += length;
 	}
 
 	/**
-	 * Reads next PathHeader and the compressed data.
-	 * Creates and initializes SingleFileDecoder class object.
-	 * @return SingleFileDecoder class object or <code>null</code> if EOF is reached
+	 * Reads next entry header and the compressed data.
+	 * Creates and initializes DataDecoder class object. The entries which are not selected are skipped.
+	 * @param errors StringBuffer to collect errors of the selected references whose content is skipped
+	 * @return DataDecoder class object or <code>null</code> if the end of the archive is reached
 	 * @throws FileFormatException will be thrown if the input stream has corrupted format
 	 * @throws IOException  will be thrown in case of IO errors
 	 */
-	private SingleFileDecoder readPackedData() throws FileFormatException, IOException {		
-		PathHeader header = null;
-		byte[] data;
-		Path path;
+	private DataDecoder readPackedData(StringBuffer errors) throws FileFormatException, IOException {
+		if(legacyStream != null) {
+			PathHeader header = readLegacyPathHeader();
+			while(header != null && !isSelected(header)) {
+				skipData(header.getSizeOfData());
+				header = readLegacyPathHeader();
+			}
+			return header == null ? null : createFileDecoder(header, readData(header.getSizeOfData()));
+		}
 		
 		try {
-			header = (PathHeader)inputStream.readObject();
+			while(true) {
+				byte type = inputStream.readByte();
+				if(type == ArchiveFormat.ENTRY_END) {
+					return null;
+				}
+				else if(type == ArchiveFormat.ENTRY_PATH) {
+					PathHeader header = ArchiveFormat.readPathHeader(inputStream);
+					if(header.isUnchanged() || header.isDeleted()) {
+						// the content of the incremental archive only is unpacked
+						continue;
+					}
+					else if(!isSelected(header)) {
+						skipData(header.getSizeOfData());
+						continue;
+					}
+					else if(header.isReference()) {
+						if(!isSelected(header.getTargetPathName()) && 
+								!unpackedContents.containsKey(contentKey(header.getTargetPathName(), header.getTargetOffset()))) {
+							errors.append("File: " + header.getPathName() + " is not unpacked, its content is packed with "
+									+ "the file which is not selected: " + header.getTargetPathName() + "\n");
+							continue;
+						}
+						return createReferenceDecoder(header);
+					}
+					else if(isTransferable(header)) {
+						// the stored data is skipped and transferred from the archive when unpacked
+						long offset = startOffset + countingStream.getCount();
+						skipData(header.getSizeOfData());
+						return createFileDecoder(header, header, offset);
+					}
+					return createFileDecoder(header, readData(header.getSizeOfData()));
+				}
+				else if(ArchiveFormat.isSolidBlock(type)) {
+					SolidBlockHeader header = ArchiveFormat.readSolidBlockHeader(inputStream, type);
+					boolean selected = false;
+					for(PathHeader member : header.getMembers()) {
+						selected |= isSelected(member);
+					}
+					if(!selected) {
+						skipData(header.getSizeOfData());
+						continue;
+					}
+					return createSolidBlockDecoder(header, readData(header.getSizeOfData()), 
+							includes.isEmpty() && excludes.isEmpty() ? null : this::isSelected);
+				}
+				else if(type == ArchiveFormat.ENTRY_DICTIONARY && dictionary == null) {
+					dictionary = ArchiveFormat.readDictionary(inputStream);
+					continue;
+				}
+				throw new FileFormatException("Corrupted input stream format: cannot read path header");
+			}
+		} catch (EOFException e) {
+			throw new FileFormatException("Corrupted input stream format: unexpected end of the archive");
+		}
+	}
+	
+	/**
+	 * Reads the preset dictionary which follows the archive header, if the archive has it. 
+	 * The position of the channel is changed.
+	 * @throws FileFormatException will be thrown if the archive has corrupted format
+	 * @throws IOException  will be thrown in case of IO errors
+	 */
+	private void readDictionary() throws FileFormatException, IOException {
+		// the stream is not closed in order to keep the channel opened
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Channels.newInputStream(channel.position(startOffset))));
+		try {
+			ArchiveFormat.readArchiveHeader(in);
+			if(in.readByte() == ArchiveFormat.ENTRY_DICTIONARY) {
+				dictionary = ArchiveFormat.readDictionary(in);
+			}
+		} catch (EOFException e) {
+			throw new FileFormatException("Corrupted input stream format: unexpected end of the archive");
+		}
+	}
+	
+	/**
+	 * Reads next PathHeader of the legacy archive.
+	 * @return PathHeader or <code>null</code> if EOF is reached
+	 * @throws FileFormatException will be thrown if the input stream has corrupted format
+	 * @throws IOException  will be thrown in case of IO errors
+	 */
+	private PathHeader readLegacyPathHeader() throws FileFormatException, IOException {
+		try {
+			return (PathHeader)legacyStream.readObject();
 		} catch (EOFException e) {
 			return null;
-		} catch (ClassNotFoundException | OptionalDataException e) {
+		} catch (ClassNotFoundException | ClassCastException | OptionalDataException e) {
 			throw new FileFormatException("Corrupted input stream format: cannot read path header");
-		} 
-		
-		try {
-			path = Paths.get(header.getPathName());
-			path = parrentPath.resolve(path);
 		}
-		catch(InvalidPathException e) {
-			throw new FileFormatException("Corrupted file format: file name has unsupported characters");
+	}
+	
+	/**
+	 * Reads the compressed data of the entry from the input stream
+	 * @param sizeOfData size of compressed data
+	 * @return compressed data
+	 * @throws FileFormatException will be thrown if the data cannot be read
+	 */
+	private byte[] readData(long sizeOfData) throws FileFormatException {
+		byte[] data;
+		
+		if(sizeOfData > Integer.MAX_VALUE) {
+			throw new FileFormatException("Corrupted file format: size of data exceeds " + Integer.MAX_VALUE + " bytes");
 		}
 		
 		try {
-			data = inputStream.readNBytes(header.getSizeOfData());
+			long startTime = metrics.startTime();
+			data = inputStream.readNBytes((int)sizeOfData);
+			metrics.record(Stage.READ, startTime, data.length);
+			metrics.addBytesIn(data.length);
 		} catch (IOException e) {
 			throw new FileFormatException("Corrupted file format: cannot read file data");
 		}
 		
-		if(data.length < header.getSizeOfData()) {
+		if(data.length < sizeOfData) {
 			throw new FileFormatException("Corrupted file format: cannot read file data");
 		}
+		return data;
+	}
+	
+	/**
+	 * Creates SolidBlockDecoder class object for the denoted header and compressed data
+	 * @param header SolidBlockHeader of the entry
+	 * @param data compressed data of the entry
+	 * @param filter Selects members to be created. <code>null</code> if all members are to be created
+	 * @return SolidBlockDecoder class object
+	 * @throws FileFormatException will be thrown if the header is corrupted
+	 */
+	private SolidBlockDecoder createSolidBlockDecoder(SolidBlockHeader header, byte[] data, 
+			Predicate<PathHeader> filter) throws FileFormatException {
+		List<Path> paths = new ArrayList<>(header.getMembers().size());
+		for(PathHeader member : header.getMembers()) {
+			paths.add(resolve(member.getPathName()));
+		}
 		
-		log.info("Data read from the file: fileFlag =" + header.isRegularFile() +
-				", path="+path.toString() +
+		log.info(()->"Data read from the file: solid block of " + paths.size() + " paths" +
 				", sizeOfData="+header.getSizeOfData());
 		
 		numberOfPaths++;
-		return new SingleFileDecoder(header.isRegularFile(), data, path);
+		SolidBlockDecoder blockDecoder = new SolidBlockDecoder(header, data, paths, filter);
+		blockDecoder.setDirectories(directories);
+		blockDecoder.setMetrics(metrics);
+		blockDecoder.setVerifyOnly(verifyOnly);
+		blockDecoder.setCompressionMethod(CompressionMethods.get(header.getCompressionMethod()));
+		return blockDecoder;
+	}
+	
+	/**
+	 * Resolves the path name of the entry against the parent path
+	 * @param pathName name of the path of the entry
+	 * @return path of the file or directory to be created
+	 * @throws FileFormatException will be thrown if the path name is not valid
+	 */
+	private Path resolve(String pathName) throws FileFormatException {
+		try {
+			return parrentPath.resolve(Paths.get(pathName));
+		}
+		catch(InvalidPathException e) {
+			throw new FileFormatException("Corrupted file format: file name has unsupported characters");
+		}
+	}
+	
+	/**
+	 * Creates SingleFileDecoder class object for the denoted header and compressed data
+	 * @param header PathHeader of the entry
+	 * @param data compressed data of the entry
+	 * @return SingleFileDecoder class object
+	 * @throws FileFormatException will be thrown if the header is corrupted
+	 */
+	private SingleFileDecoder createFileDecoder(PathHeader header, byte[] data) throws FileFormatException {
+		return createFileDecoder(header, header, data);
+	}
+	
+	/**
+	 * Creates SingleFileDecoder class object for the denoted header and the entry of the central directory
+	 * @param header PathHeader of the file or block to be created
+	 * @param entry entry of the central directory the data belongs to
+	 * @return SingleFileDecoder class object
+	 * @throws FileFormatException will be thrown if the header is corrupted or the data cannot be read
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private SingleFileDecoder createFileDecoder(PathHeader header, CentralDirectory.Entry entry) 
+			throws FileFormatException, IOException {
+		if(isTransferable(entry.getHeader())) {
+			return createFileDecoder(header, entry.getHeader(), startOffset + entry.getOffset());
+		}
+		return createFileDecoder(header, entry.getHeader(), readData(entry));
+	}
+	
+	/**
+	 * Creates SingleFileDecoder class object whose stored data is transferred from the archive file
+	 * @param header PathHeader of the file or block to be created
+	 * @param dataHeader PathHeader of the entry the stored data belongs to
+	 * @param offset position of the stored data within the archive file
+	 * @return SingleFileDecoder class object
+	 * @throws FileFormatException will be thrown if the header is corrupted
+	 */
+	private SingleFileDecoder createFileDecoder(PathHeader header, PathHeader dataHeader, long offset) 
+			throws FileFormatException {
+		if(offset + dataHeader.getSizeOfData() > channelSize()) {
+			throw new FileFormatException("Corrupted file format: cannot read file data");
+		}
+		SingleFileDecoder fileDecoder = createFileDecoder(header, dataHeader, new byte[0]);
+		fileDecoder.setStoredData(channel, offset, dataHeader.getSizeOfData());
+		return fileDecoder;
+	}
+	
+	/**
+	 * Returns the size of the archive file
+	 * @return size of the archive file or 0 if it cannot be known
+	 */
+	private long channelSize() {
+		try {
+			return channel.size();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Shows is the data of the entry stored and can be transferred from the archive file
+	 * @param header PathHeader of the entry
+	 * @return <code>true</code> if the data is to be transferred without reading it into memory
+	 */
+	private boolean isTransferable(PathHeader header) {
+		return channel != null && legacyStream == null && header.isRegularFile() && header.getSizeOfData() > 0
+				&& header.getCompressionMethod() == CompressionMethods.STORE.getId();
+	}
+	
+	/**
+	 * Creates SingleFileDecoder class object for the denoted header and compressed data
+	 * of the entry with the same content
+	 * @param header PathHeader of the file or block to be created
+	 * @param dataHeader PathHeader of the entry the compressed data belongs to
+	 * @param data compressed data of the entry
+	 * @return SingleFileDecoder class object
+	 * @throws FileFormatException will be thrown if the header is corrupted
+	 */
+	private SingleFileDecoder createFileDecoder(PathHeader header, PathHeader dataHeader, byte[] data) 
+			throws FileFormatException {
+		Path path = resolve(header.getPathName());
+		
+		log.info(()->"Data read from the file: fileFlag =" + header.isRegularFile() +
+				", path="+path.toString() +
+				", offset="+header.getOffset() +
+				", sizeOfData="+dataHeader.getSizeOfData());
+		
+		numberOfPaths++;
+		SingleFileDecoder fileDecoder;
+		if(header.isBlock()) {
+			fileDecoder = new SingleFileDecoder(data, getBlockedFile(header, path), header.getOffset(), 
+					(int)header.getSizeOfBlock());
+		}
+		else {
+			fileDecoder = new SingleFileDecoder(header.isRegularFile(), data, path, 
+					header.isRegularFile() ? header.getSizeOfFile() : 0);
+		}
+		fileDecoder.setDictionary(getDictionary(dataHeader));
+		fileDecoder.setDirectories(directories);
+		fileDecoder.setMetrics(metrics);
+		fileDecoder.setIoExecutor(ioExecutor);
+		fileDecoder.setVerifyOnly(verifyOnly);
+		if(dataHeader.hasChecksum()) {
+			fileDecoder.setChecksum(dataHeader.getChecksum());
+		}
+		fileDecoder.setCompressionMethod(CompressionMethods.get(dataHeader.getCompressionMethod()));
+		String key = contentKey(header.getPathName(), header.getOffset());
+		if(header.isRegularFile() && dataHeader.getSizeOfData() > 0 && 
+				(referencedContents == null || referencedContents.contains(key))) {
+			unpackedContents.put(key, fileDecoder.getUnpacked());
+		}
+		return fileDecoder;
+	}
+	
+	/**
+	 * Creates ReferenceDecoder class object for the denoted header. The target of the reference
+	 * should be read before.
+	 * @param header PathHeader of the reference
+	 * @return ReferenceDecoder class object
+	 * @throws FileFormatException will be thrown if the header is corrupted or the target is not found
+	 */
+	private ReferenceDecoder createReferenceDecoder(PathHeader header) throws FileFormatException {
+		Path path = resolve(header.getPathName());
+		Path targetPath = resolve(header.getTargetPathName());
+		CountDownLatch target = unpackedContents.get(contentKey(header.getTargetPathName(), header.getTargetOffset()));
+		if(target == null) {
+			throw new FileFormatException("Corrupted input stream format: referenced file is not found: " 
+					+ header.getTargetPathName());
+		}
+		
+		log.info(()->"Reference read from the file: path=" + path + ", target=" + targetPath);
+		
+		numberOfPaths++;
+		ReferenceDecoder referenceDecoder;
+		if(header.isBlock()) {
+			referenceDecoder = new ReferenceDecoder(target, targetPath, header.getTargetOffset(), 
+					getBlockedFile(header, path), header.getOffset(), (int)header.getSizeOfBlock());
+		}
+		else if(header.getSizeOfFile() > Integer.MAX_VALUE) {
+			throw new FileFormatException("Corrupted file format: size of file exceeds " + Integer.MAX_VALUE + " bytes");
+		}
+		else {
+			referenceDecoder = new ReferenceDecoder(target, targetPath, header.getTargetOffset(), path, 
+					(int)header.getSizeOfFile());
+		}
+		referenceDecoder.setDirectories(directories);
+		referenceDecoder.setVerifyOnly(verifyOnly);
+		return referenceDecoder;
+	}
+	
+	/**
+	 * Returns the file the block belongs to. The file is created by the first block.
+	 * @param header PathHeader of the block
+	 * @param path path of the file
+	 * @return BlockedFile class object
+	 * @throws FileFormatException will be thrown if the block is too large
+	 */
+	private BlockedFile getBlockedFile(PathHeader header, Path path) throws FileFormatException {
+		if(header.getSizeOfBlock() > Integer.MAX_VALUE) {
+			throw new FileFormatException("Corrupted file format: size of block exceeds " + Integer.MAX_VALUE + " bytes");
+		}
+		long sizeOfFile = header.getSizeOfFile();
+		return blockedFiles.computeIfAbsent(path, (p)->new BlockedFile(p, sizeOfFile, directories));
+	}
+	
+	/**
+	 * Returns the preset dictionary if the entry is compressed with it
+	 * @param header PathHeader of the entry
+	 * @return the dictionary or <code>null</code> if the entry is compressed without the dictionary
+	 * @throws FileFormatException will be thrown if the archive does not have the dictionary
+	 */
+	private byte[] getDictionary(PathHeader header) throws FileFormatException {
+		if(!header.usesDictionary()) {
+			return null;
+		}
+		if(dictionary == null) {
+			throw new FileFormatException("Corrupted input stream format: dictionary is not found");
+		}
+		return dictionary;
 	}
 }
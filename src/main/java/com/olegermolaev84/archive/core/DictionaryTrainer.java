@@ -0,0 +1,189 @@
+package com.olegermolaev84.archive.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Builds the preset dictionary from samples of the files to be packed.
+ * <br>Each sample is split into segments. A segment is scored by the number of samples
+ * which contain its 8-byte fragments, so the segments common for many files are selected.
+ * When a segment is selected, its fragments are not counted anymore, which avoids
+ * repetitions in the dictionary. The best segments are placed at the end of the dictionary,
+ * because Deflater references the nearest data by the shortest codes.
+ */
+class DictionaryTrainer {
+	/** Maximal size of the dictionary. Deflater does not use more than its window */
+	static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+	/** Maximal size of the sample taken from one file */
+	static final int MAX_SIZE_OF_SAMPLE = 4 * 1024;
+
+	/** Maximal total size of the samples */
+	static final int MAX_SIZE_OF_SAMPLES = 1024 * 1024;
+
+	/** Length of the fragment which is counted */
+	private static final int SIZE_OF_FRAGMENT = 8;
+
+	/** Length of the segment which is copied to the dictionary */
+	private static final int SIZE_OF_SEGMENT = 64;
+
+	/** Number of bits of the hash of the fragment */
+	private static final int HASH_BITS = 20;
+
+	/**
+	 * Segment of the sample
+	 */
+	private static class Segment {
+		/** Sample the segment belongs to */
+		private final byte[] sample;
+
+		/** Offset of the segment within the sample */
+		private final int offset;
+
+		/** Length of the segment */
+		private final int length;
+
+		/** Score calculated for the current frequencies of the fragments */
+		private long score;
+
+		/**
+		 * Constructor
+		 * @param sample sample the segment belongs to
+		 * @param offset offset of the segment within the sample
+		 * @param length length of the segment
+		 */
+		private Segment(byte[] sample, int offset, int length) {
+			this.sample = sample;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/** Collected samples */
+	private final List<byte[]> samples = new ArrayList<>();
+
+	/** Total size of the collected samples */
+	private int sizeOfSamples = 0;
+
+	/**
+	 * Adds the sample. The sample is ignored if the total size of samples is exceeded.
+	 * @param sample content (or its beginning) of the file
+	 * @return <code>false</code> if no more samples are accepted
+	 */
+	boolean addSample(byte[] sample) {
+		if(sizeOfSamples + sample.length > MAX_SIZE_OF_SAMPLES) {
+			return false;
+		}
+		if(sample.length >= SIZE_OF_FRAGMENT) {
+			samples.add(sample);
+			sizeOfSamples += sample.length;
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the dictionary from the collected samples
+	 * @return the dictionary or <code>null</code> if the samples do not have common content
+	 */
+	byte[] train() {
+		int[] frequencies = countFragments();
+
+		PriorityQueue<Segment> queue = new PriorityQueue<>((a, b)->Long.compare(b.score, a.score));
+		for(byte[] sample : samples) {
+			for(int offset = 0; offset + SIZE_OF_FRAGMENT <= sample.length; offset += SIZE_OF_SEGMENT) {
+				Segment segment = new Segment(sample, offset, Math.min(SIZE_OF_SEGMENT, sample.length - offset));
+				segment.score = score(segment, frequencies);
+				if(segment.score > 0) {
+					queue.add(segment);
+				}
+			}
+		}
+
+		// the segments are selected from the best one, the scores are updated lazily
+		List<Segment> selected = new ArrayList<>();
+		int size = 0;
+		while(!queue.isEmpty() && size < MAX_DICTIONARY_SIZE) {
+			Segment segment = queue.poll();
+			long score = score(segment, frequencies);
+			if(score <= 0) {
+				continue;
+			}
+			if(score < segment.score && !queue.isEmpty() && score < queue.peek().score) {
+				segment.score = score;
+				queue.add(segment);
+				continue;
+			}
+
+			selected.add(segment);
+			size += segment.length;
+			for(int i = segment.offset; i + SIZE_OF_FRAGMENT <= segment.offset + segment.length; i++) {
+				frequencies[hash(segment.sample, i)] = 0;
+			}
+		}
+
+		if(selected.isEmpty()) {
+			return null;
+		}
+
+		ByteBuffer dictionary = ByteBuffer.allocate(Math.min(size, MAX_DICTIONARY_SIZE));
+		for(int i = selected.size() - 1; i >= 0; i--) {
+			Segment segment = selected.get(i);
+			int length = Math.min(segment.length, dictionary.remaining());
+			dictionary.put(segment.sample, segment.offset + segment.length - length, length);
+		}
+		return dictionary.array();
+	}
+
+	/**
+	 * Counts the number of samples which contain each fragment
+	 * @return number of samples indexed by the hash of the fragment
+	 */
+	private int[] countFragments() {
+		int[] frequencies = new int[1 << HASH_BITS];
+		int[] lastSample = new int[1 << HASH_BITS];
+		for(int s = 0; s < samples.size(); s++) {
+			byte[] sample = samples.get(s);
+			for(int i = 0; i + SIZE_OF_FRAGMENT <= sample.length; i++) {
+				int hash = hash(sample, i);
+				if(lastSample[hash] != s + 1) {
+					lastSample[hash] = s + 1;
+					frequencies[hash]++;
+				}
+			}
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Calculates the score of the segment. Only fragments which occur in several samples are counted.
+	 * @param segment segment of the sample
+	 * @param frequencies number of samples indexed by the hash of the fragment
+	 * @return score of the segment
+	 */
+	private static long score(Segment segment, int[] frequencies) {
+		long score = 0;
+		for(int i = segment.offset; i + SIZE_OF_FRAGMENT <= segment.offset + segment.length; i++) {
+			int frequency = frequencies[hash(segment.sample, i)];
+			if(frequency > 1) {
+				score += frequency;
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Calculates the hash of the fragment
+	 * @param data array with the fragment
+	 * @param offset offset of the fragment
+	 * @return hash of <code>HASH_BITS</code> bits
+	 */
+	private static int hash(byte[] data, int offset) {
+		long value = 0;
+		for(int i = 0; i < SIZE_OF_FRAGMENT; i++) {
+			value = (value << 8) | (data[offset + i] & 0xFF);
+		}
+		return (int)((value * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - HASH_BITS));
+	}
+}
@@ -0,0 +1,42 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Directories which are created (or found existing) while unpacking. A directory and 
+ * its parents are checked in the file system once, then they are taken from the cache.
+ * The cache is shared by all decoders of one Decoder.
+ */
+class Directories {
+	/** Directories known to exist */
+	private final Set<Path> created = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Creates the directory and all its nonexistent parents
+	 * @param directory directory to be created, <code>null</code> is ignored
+	 * @throws IOException will be thrown if the directory cannot be created
+	 */
+	void create(Path directory) throws IOException {
+		if(directory == null || created.contains(directory)) {
+			return;
+		}
+		Files.createDirectories(directory);
+		Path path = directory;
+		while(path != null && created.add(path)) {
+			path = path.getParent();
+		}
+	}
+
+	/**
+	 * Creates the parent directory of the file
+	 * @param file file to be created
+	 * @throws IOException will be thrown if the directory cannot be created
+	 */
+	void createParent(Path file) throws IOException {
+		create(file.getParent());
+	}
+}
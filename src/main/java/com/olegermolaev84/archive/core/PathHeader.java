@@ -4,31 +4,212 @@ import java.io.Serializable;
 
 /**
  * Contains fields necessary to be written into the output stream
- * prior the compressed data in order to be able to unpack the file/directory later
+ * prior the compressed data in order to be able to unpack the file/directory later.
+ * <br>Large files are packed as a sequence of blocks. Each block has its own header
+ * which contains the offset of the block within the file.
+ * <br>The incremental archive also has headers without data, which show that the path
+ * is unchanged or deleted since the base archive.
+ * <br>The header of the file's data has the CRC32C checksum of the uncompressed data.
  *
  */
 public class PathHeader implements Serializable {
-	private static final long serialVersionUID = -9210386026185737616L;
-	
+	private static final long serialVersionUID = 2875209378842145702L;
+
 	/** Shows is it file or directory */
 	private final boolean isRegularFile;
-	
+
 	/** Length of compressed data */
-	private final int sizeOfData;
-	
+	private final long sizeOfData;
+
 	/** String with normalized path name */
 	private final String pathName;
 
+	/** Size of the whole uncompressed file */
+	private final long sizeOfFile;
+
+	/** Offset of the block within the uncompressed file */
+	private final long offset;
+
+	/** Length of the uncompressed block */
+	private final long sizeOfBlock;
+
+	/** Shows is the data compressed with the preset dictionary of the archive */
+	private final boolean usesDictionary;
+
+	/** Name of the path the same content is packed with. <code>null</code> if the header is not a reference */
+	private final String targetPathName;
+
+	/** Offset of the same content within the target path */
+	private final long targetOffset;
+
+	/** Time of the last modification of the path in milliseconds. 0 if it is unknown */
+	private final long lastModifiedTime;
+
+	/** Shows is the file unchanged since the base archive */
+	private final boolean isUnchanged;
+
+	/** Shows is the path deleted since the base archive */
+	private final boolean isDeleted;
+
+	/** Identifier of the compression method of the data */
+	private final int compressionMethod;
+
+	/** Shows does the header have the checksum of the data */
+	private final boolean hasChecksum;
+
+	/** CRC32C checksum of the uncompressed data of the file or block */
+	private final int checksum;
+
+	/**
+	 * Constructor of the header of the whole file or directory
+	 * @param isFile is it file or directory
+	 * @param lengthOfData length of compressed data
+	 * @param pathName string with normalized path name
+	 * @param sizeOfFile size of the uncompressed file
+	 */
+	public PathHeader(boolean isFile, long lengthOfData, String pathName, long sizeOfFile) {
+		this(isFile, lengthOfData, pathName, sizeOfFile, 0, sizeOfFile);
+	}
+
+	/**
+	 * Constructor of the header of the file's block
+	 * @param isFile is it file or directory
+	 * @param lengthOfData length of compressed data
+	 * @param pathName string with normalized path name
+	 * @param sizeOfFile size of the whole uncompressed file
+	 * @param offset offset of the block within the uncompressed file
+	 * @param sizeOfBlock length of the uncompressed block
+	 */
+	public PathHeader(boolean isFile, long lengthOfData, String pathName,
+			long sizeOfFile, long offset, long sizeOfBlock) {
+		this(isFile, lengthOfData, pathName, sizeOfFile, offset, sizeOfBlock, false, 0);
+	}
+
+	/**
+	 * Constructor of the header of the file's block which can be compressed with the preset dictionary
+	 * @param isFile is it file or directory
+	 * @param lengthOfData length of compressed data
+	 * @param pathName string with normalized path name
+	 * @param sizeOfFile size of the whole uncompressed file
+	 * @param offset offset of the block within the uncompressed file
+	 * @param sizeOfBlock length of the uncompressed block
+	 * @param usesDictionary is the data compressed with the preset dictionary
+	 * @param lastModifiedTime time of the last modification of the path in milliseconds, 0 if it is unknown
+	 */
+	public PathHeader(boolean isFile, long lengthOfData, String pathName,
+			long sizeOfFile, long offset, long sizeOfBlock, boolean usesDictionary, long lastModifiedTime) {
+		this(isFile, lengthOfData, pathName, sizeOfFile, offset, sizeOfBlock, usesDictionary, lastModifiedTime, 0);
+	}
+
+	/**
+	 * Constructor of the header of the file's block compressed with the denoted method
+	 * @param isFile is it file or directory
+	 * @param lengthOfData length of compressed data
+	 * @param pathName string with normalized path name
+	 * @param sizeOfFile size of the whole uncompressed file
+	 * @param offset offset of the block within the uncompressed file
+	 * @param sizeOfBlock length of the uncompressed block
+	 * @param usesDictionary is the data compressed with the preset dictionary
+	 * @param lastModifiedTime time of the last modification of the path in milliseconds, 0 if it is unknown
+	 * @param compressionMethod identifier of the compression method of the data
+	 */
+	public PathHeader(boolean isFile, long lengthOfData, String pathName, long sizeOfFile, long offset, 
+			long sizeOfBlock, boolean usesDictionary, long lastModifiedTime, int compressionMethod) {
+		this(isFile, lengthOfData, pathName, sizeOfFile, offset, sizeOfBlock, usesDictionary,
+				null, 0, lastModifiedTime, false, false, compressionMethod, false, 0);
+	}
+
+	/**
+	 * Constructor of the header of the file's block with the checksum of the data
+	 * @param isFile is it file or directory
+	 * @param lengthOfData length of compressed data
+	 * @param pathName string with normalized path name
+	 * @param sizeOfFile size of the whole uncompressed file
+	 * @param offset offset of the block within the uncompressed file
+	 * @param sizeOfBlock length of the uncompressed block
+	 * @param usesDictionary is the data compressed with the preset dictionary
+	 * @param lastModifiedTime time of the last modification of the path in milliseconds, 0 if it is unknown
+	 * @param compressionMethod identifier of the compression method of the data
+	 * @param checksum CRC32C checksum of the uncompressed block
+	 */
+	public PathHeader(boolean isFile, long lengthOfData, String pathName, long sizeOfFile, long offset, 
+			long sizeOfBlock, boolean usesDictionary, long lastModifiedTime, int compressionMethod, int checksum) {
+		this(isFile, lengthOfData, pathName, sizeOfFile, offset, sizeOfBlock, usesDictionary,
+				null, 0, lastModifiedTime, false, false, compressionMethod, true, checksum);
+	}
+
+	/**
+	 * Constructor of the reference to the content which is already packed. The reference
+	 * does not have compressed data.
+	 * @param header header of the file or block with the same content
+	 * @param targetPathName name of the path the content is packed with
+	 * @param targetOffset offset of the content within the target path
+	 */
+	public PathHeader(PathHeader header, String targetPathName, long targetOffset) {
+		this(header.isRegularFile, 0, header.pathName, header.sizeOfFile, header.offset, header.sizeOfBlock, false,
+				targetPathName, targetOffset, header.lastModifiedTime, false, false, 0, false, 0);
+	}
+
 	/**
 	 * Constructor
-	 * @param isFile is it file or directory 
+	 * @param isFile is it file or directory
 	 * @param lengthOfData length of compressed data
 	 * @param pathName string with normalized path name
+	 * @param sizeOfFile size of the whole uncompressed file
+	 * @param offset offset of the block within the uncompressed file
+	 * @param sizeOfBlock length of the uncompressed block
+	 * @param usesDictionary is the data compressed with the preset dictionary
+	 * @param targetPathName name of the path the same content is packed with or <code>null</code>
+	 * @param targetOffset offset of the same content within the target path
+	 * @param lastModifiedTime time of the last modification of the path in milliseconds
+	 * @param isUnchanged is the file unchanged since the base archive
+	 * @param isDeleted is the path deleted since the base archive
+	 * @param compressionMethod identifier of the compression method of the data
+	 * @param hasChecksum does the header have the checksum of the data
+	 * @param checksum CRC32C checksum of the uncompressed data
 	 */
-	public PathHeader(boolean isFile, int lengthOfData, String pathName) {
+	private PathHeader(boolean isFile, long lengthOfData, String pathName,
+			long sizeOfFile, long offset, long sizeOfBlock, boolean usesDictionary,
+			String targetPathName, long targetOffset, long lastModifiedTime,
+			boolean isUnchanged, boolean isDeleted, int compressionMethod, boolean hasChecksum, int checksum) {
 		this.isRegularFile = isFile;
 		this.sizeOfData = lengthOfData;
 		this.pathName = pathName;
+		this.sizeOfFile = sizeOfFile;
+		this.offset = offset;
+		this.sizeOfBlock = sizeOfBlock;
+		this.usesDictionary = usesDictionary;
+		this.targetPathName = targetPathName;
+		this.targetOffset = targetOffset;
+		this.lastModifiedTime = lastModifiedTime;
+		this.isUnchanged = isUnchanged;
+		this.isDeleted = isDeleted;
+		this.compressionMethod = compressionMethod;
+		this.hasChecksum = hasChecksum;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Creates the header of the file which is unchanged since the base archive.
+	 * The header does not have compressed data.
+	 * @param pathName string with normalized path name
+	 * @param sizeOfFile size of the file
+	 * @param lastModifiedTime time of the last modification of the file in milliseconds
+	 * @return header of the unchanged file
+	 */
+	public static PathHeader unchanged(String pathName, long sizeOfFile, long lastModifiedTime) {
+		return new PathHeader(true, 0, pathName, sizeOfFile, 0, sizeOfFile, false,
+				null, 0, lastModifiedTime, true, false, 0, false, 0);
+	}
+
+	/**
+	 * Creates the header of the path which is deleted since the base archive.
+	 * @param isFile is it file or directory
+	 * @param pathName string with normalized path name
+	 * @return header of the deleted path
+	 */
+	public static PathHeader deleted(boolean isFile, String pathName) {
+		return new PathHeader(isFile, 0, pathName, 0, 0, 0, false, null, 0, 0, false, true, 0, false, 0);
 	}
 
 	/** Returns flag, which shows is it file or directory
@@ -41,7 +222,7 @@ public class PathHeader implements Serializable {
 	/** Returns size of compressed data
 	 * @return size of compressed data
 	 */
-	public int getSizeOfData() {
+	public long getSizeOfData() {
 		return sizeOfData;
 	}
 
@@ -52,4 +233,102 @@ public class PathHeader implements Serializable {
 		return pathName;
 	}
 
+	/** Returns size of the whole uncompressed file
+	 * @return size of the uncompressed file
+	 */
+	public long getSizeOfFile() {
+		return sizeOfFile;
+	}
+
+	/** Returns offset of the block within the uncompressed file
+	 * @return offset of the block, 0 for the whole file
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/** Returns length of the uncompressed block
+	 * @return length of the uncompressed block, size of the file for the whole file
+	 */
+	public long getSizeOfBlock() {
+		return sizeOfBlock;
+	}
+
+	/** Returns flag, which shows is the data only a part of the file
+	 * @return <code>true</code> if the header describes a block of the file, otherwise <code>false</code>
+	 */
+	public boolean isBlock() {
+		return sizeOfBlock < sizeOfFile;
+	}
+
+	/** Returns flag, which shows is the data compressed with the preset dictionary of the archive
+	 * @return <code>true</code> if the dictionary is needed to decompress the data
+	 */
+	public boolean usesDictionary() {
+		return usesDictionary;
+	}
+
+	/** Returns flag, which shows is the content of the header packed with another path
+	 * @return <code>true</code> if the header is a reference to the same content
+	 */
+	public boolean isReference() {
+		return targetPathName != null;
+	}
+
+	/** Returns name of the path the same content is packed with
+	 * @return name of the target path or <code>null</code> if the header is not a reference
+	 */
+	public String getTargetPathName() {
+		return targetPathName;
+	}
+
+	/** Returns offset of the same content within the target path
+	 * @return offset of the content within the target path
+	 */
+	public long getTargetOffset() {
+		return targetOffset;
+	}
+
+	/** Returns time of the last modification of the path
+	 * @return time in milliseconds since the epoch, 0 if it is unknown
+	 */
+	public long getLastModifiedTime() {
+		return lastModifiedTime;
+	}
+
+	/** Returns flag, which shows is the file unchanged since the base archive
+	 * @return <code>true</code> if the content of the file is in the base archive
+	 */
+	public boolean isUnchanged() {
+		return isUnchanged;
+	}
+
+	/** Returns flag, which shows is the path deleted since the base archive
+	 * @return <code>true</code> if the path is deleted
+	 */
+	public boolean isDeleted() {
+		return isDeleted;
+	}
+
+	/** Returns identifier of the compression method of the data
+	 * @return identifier of the compression method, 0 for deflate
+	 */
+	public int getCompressionMethod() {
+		return compressionMethod;
+	}
+
+	/** Returns flag, which shows does the header have the checksum of the data
+	 * @return <code>true</code> if the checksum is known, <code>false</code> for the older archives
+	 */
+	public boolean hasChecksum() {
+		return hasChecksum;
+	}
+
+	/** Returns CRC32C checksum of the uncompressed data of the file or block
+	 * @return checksum, it is valid if <code>hasChecksum</code> returns <code>true</code>
+	 */
+	public int getChecksum() {
+		return checksum;
+	}
+
 }
@@ -0,0 +1,196 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Walks trees of files and directories in parallel by the fork/join pool. The walked paths
+ * are validated and passed through the bounded queue, so they can be packed while the walk
+ * is in progress. A directory is always passed before its content. Symbolic links are not followed.
+ */
+class PathWalker implements AutoCloseable {
+	/** Maximal number of paths which are walked but not taken yet */
+	private static final int CAPACITY_OF_QUEUE = 16 * 1024;
+
+	/** Path the end of the walk is marked with */
+	private static final Path END = Path.of("");
+
+	/** Pool the directories are walked by */
+	private final ForkJoinPool pool;
+
+	/** Walked but not taken paths */
+	private final BlockingQueue<Path> queue = new LinkedBlockingQueue<>(CAPACITY_OF_QUEUE);
+
+	/** StringBuffer to collect errors which can occur while walking */
+	private final StringBuffer errors;
+
+	/** Progress the walked paths are added to the totals of */
+	private final ProgressTracker progress;
+
+	/** Number of the walked paths */
+	private final AtomicLong numberOfPaths = new AtomicLong();
+
+	/** Shows is the end of the walk taken */
+	private boolean finished = false;
+
+	/** Shows is the walk cancelled */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Walks the directory. Files of the directory are passed by the task,
+	 * subdirectories are walked by subtasks in parallel.
+	 */
+	private class DirectoryTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/** Directory to be walked */
+		private final Path directory;
+
+		/**
+		 * Constructor
+		 * @param directory directory to be walked
+		 */
+		private DirectoryTask(Path directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		protected void compute() {
+			List<DirectoryTask> subtasks = new ArrayList<>();
+			try(DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+				for(Path path : paths) {
+					if(cancelled) {
+						return;
+					}
+					if(pass(path)) {
+						subtasks.add(new DirectoryTask(path));
+					}
+				}
+			} catch (IOException e) {
+				errors.append("Error occured while files submitting: " + e + "\n");
+			}
+			invokeAll(subtasks);
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param errors StringBuffer to collect errors which can occur while walking
+	 * @param progress Progress the walked paths are added to the totals of
+	 */
+	PathWalker(StringBuffer errors, ProgressTracker progress) {
+		this.errors = errors;
+		this.progress = progress;
+		pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Starts the walk. The trees are walked one by one in the given order.
+	 * @param roots roots of the trees to be walked
+	 */
+	void start(List<Path> roots) {
+		pool.execute(()->{
+			try {
+				for(Path root : roots) {
+					if(pass(root)) {
+						pool.invoke(new DirectoryTask(root));
+					}
+				}
+			}
+			finally {
+				progress.setTotalKnown();
+				put(END);
+			}
+		});
+	}
+
+	/**
+	 * Takes the next walked path. Blocks until the path is walked. Should be called by one thread.
+	 * @return the next path or <code>null</code> if the walk is finished
+	 * @throws IOException will be thrown if the waiting is interrupted
+	 */
+	Path next() throws IOException {
+		if(finished) {
+			return null;
+		}
+		try {
+			Path path = queue.take();
+			finished = path == END;
+			return finished ? null : path;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Walk of files is interrupted", e);
+		}
+	}
+
+	/**
+	 * Returns the number of the walked paths which are passed to the queue. 
+	 * It is final when <code>next</code> returns <code>null</code>
+	 * @return number of the walked paths
+	 */
+	long getNumberOfPaths() {
+		return numberOfPaths.get();
+	}
+
+	/**
+	 * Cancels the walk if it is not finished
+	 */
+	@Override
+	public void close() {
+		cancelled = true;
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Validates the path and passes it into the queue
+	 * @param path walked path
+	 * @return <code>true</code> if the path is the directory to be walked
+	 */
+	private boolean pass(Path path) {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch (IOException e) {
+			errors.append("Error occured while files submitting: " + e + "\n");
+			return false;
+		}
+		if(!Files.isReadable(path)) {
+			errors.append("File: " + path + " does not have read permissions" + "\n");
+			return false;
+		}
+
+		numberOfPaths.incrementAndGet();
+		progress.addTotal(attributes.isRegularFile() ? attributes.size() : 0);
+		return put(path) && attributes.isDirectory();
+	}
+
+	/**
+	 * Puts the path into the queue. Blocks while the queue is full.
+	 * @param path path to be put
+	 * @return <code>false</code> if the walk is cancelled
+	 */
+	private boolean put(Path path) {
+		try {
+			while(!cancelled) {
+				if(queue.offer(path, 100, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+}
@@ -0,0 +1,144 @@
+package com.olegermolaev84.archive.core;
+
+/**
+ * Snapshot of the progress of packing or unpacking. Coder counts files and directories 
+ * and their uncompressed bytes, the totals grow while the files are walked. Decoder counts 
+ * entries and their compressed bytes, the totals grow while the archive is read. If the archive 
+ * file has the central directory, the total of bytes is the size of the data of the selected entries.
+ */
+public class Progress {
+	/** Number of the processed paths or entries */
+	private final long processedEntries;
+	
+	/** Total number of the found paths or entries */
+	private final long totalEntries;
+	
+	/** Number of the processed bytes */
+	private final long processedBytes;
+	
+	/** Total number of bytes of the found paths or entries */
+	private final long totalBytes;
+	
+	/** Time since the start in nanoseconds */
+	private final long elapsedNanos;
+	
+	/** Shows is the total of bytes final */
+	private final boolean totalKnown;
+	
+	/** Shows is the run finished */
+	private final boolean finished;
+	
+	/**
+	 * Constructor
+	 * @param processedEntries Number of the processed paths or entries
+	 * @param totalEntries Total number of the found paths or entries
+	 * @param processedBytes Number of the processed bytes
+	 * @param totalBytes Total number of bytes of the found paths or entries
+	 * @param elapsedNanos Time since the start in nanoseconds
+	 * @param totalKnown Shows is the total of bytes final
+	 * @param finished Shows is the run finished
+	 */
+	public Progress(long processedEntries, long totalEntries, long processedBytes, long totalBytes, 
+			long elapsedNanos, boolean totalKnown, boolean finished) {
+		this.processedEntries = processedEntries;
+		this.totalEntries = totalEntries;
+		this.processedBytes = processedBytes;
+		this.totalBytes = totalBytes;
+		this.elapsedNanos = elapsedNanos;
+		this.totalKnown = totalKnown;
+		this.finished = finished;
+	}
+	
+	/**
+	 * Returns the number of the processed paths or entries
+	 * @return number of the processed paths or entries
+	 */
+	public long getProcessedEntries() {
+		return processedEntries;
+	}
+	
+	/**
+	 * Returns the total number of the found paths or entries
+	 * @return total number of the found paths or entries
+	 */
+	public long getTotalEntries() {
+		return totalEntries;
+	}
+	
+	/**
+	 * Returns the number of the processed bytes
+	 * @return number of the processed bytes
+	 */
+	public long getProcessedBytes() {
+		return processedBytes;
+	}
+	
+	/**
+	 * Returns the total number of bytes of the found paths or entries
+	 * @return total number of bytes of the found paths or entries
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+	
+	/**
+	 * Returns the time since the start in nanoseconds
+	 * @return time since the start in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * Shows is the total of bytes final, otherwise it can grow
+	 * @return <code>true</code> if the total of bytes is final, otherwise it can grow
+	 */
+	public boolean isTotalKnown() {
+		return totalKnown;
+	}
+	
+	/**
+	 * Shows is the run finished
+	 * @return <code>true</code> if the run is finished
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+	
+	/**
+	 * Returns the average throughput since the start
+	 * @return processed bytes per second
+	 */
+	public double getBytesPerSecond() {
+		return elapsedNanos <= 0 ? 0 : processedBytes * 1e9 / elapsedNanos;
+	}
+	
+	/**
+	 * Returns the processed part of the total bytes
+	 * @return percent from 0 to 100
+	 */
+	public double getPercent() {
+		return totalBytes <= 0 ? (finished ? 100 : 0) : Math.min(100, processedBytes * 100.0 / totalBytes);
+	}
+	
+	/**
+	 * Estimates the time left by the average throughput
+	 * @return estimated time left in seconds, -1 if the total is not final or nothing is processed yet
+	 */
+	public long getEstimatedSecondsLeft() {
+		if(finished) {
+			return 0;
+		}
+		double bytesPerSecond = getBytesPerSecond();
+		if(!totalKnown || bytesPerSecond <= 0) {
+			return -1;
+		}
+		return (long)Math.ceil(Math.max(0, totalBytes - processedBytes) / bytesPerSecond);
+	}
+	
+	@Override
+	public String toString() {
+		return "Progress(entries=" + processedEntries + "/" + totalEntries + ", bytes=" + processedBytes 
+				+ "/" + totalBytes + ", finished=" + finished + ")";
+	}
+}
@@ -0,0 +1,14 @@
+package com.olegermolaev84.archive.core;
+
+/**
+ * Receives the progress of packing or unpacking. The listener is called periodically 
+ * by the separate thread and once more when the run is finished, so it should return quickly.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+	/**
+	 * Receives the current progress
+	 * @param progress snapshot of the progress
+	 */
+	void progress(Progress progress);
+}
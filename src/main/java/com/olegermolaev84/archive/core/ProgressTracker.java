@@ -0,0 +1,132 @@
+package com.olegermolaev84.archive.core;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the progress and delivers it to the listener. The counters are striped, 
+ * so the working threads only add to them. The listener is called by the separate thread 
+ * in the denoted intervals, so the working threads never wait for it.
+ */
+class ProgressTracker {
+	/** Number of the processed paths or entries */
+	private final LongAdder processedEntries = new LongAdder();
+	
+	/** Number of the processed bytes */
+	private final LongAdder processedBytes = new LongAdder();
+	
+	/** Total number of the found paths or entries */
+	private final LongAdder totalEntries = new LongAdder();
+	
+	/** Total number of bytes of the found paths or entries */
+	private final LongAdder totalBytes = new LongAdder();
+	
+	/** Shows are the totals final */
+	private volatile boolean totalKnown = false;
+	
+	/** Total number of bytes known in advance. -1 if the total is counted by <code>addTotal</code> */
+	private volatile long fixedTotalBytes = -1;
+	
+	/** Time of the start in nanoseconds */
+	private long startNanos;
+	
+	/** Listener of the progress. <code>null</code> if the progress is not reported */
+	private final ProgressListener listener;
+	
+	/** Interval of the reports in milliseconds */
+	private final long intervalMillis;
+	
+	/** Thread the listener is called by. <code>null</code> if the tracker is not started */
+	private ScheduledExecutorService reporter;
+	
+	/**
+	 * Constructor
+	 * @param listener Listener of the progress. <code>null</code> if the progress is not reported
+	 * @param intervalMillis Interval of the reports in milliseconds
+	 */
+	ProgressTracker(ProgressListener listener, long intervalMillis) {
+		this.listener = listener;
+		this.intervalMillis = intervalMillis;
+	}
+	
+	/**
+	 * Starts the periodical reports
+	 */
+	synchronized void start() {
+		startNanos = System.nanoTime();
+		if(listener == null || reporter != null) {
+			return;
+		}
+		reporter = Executors.newSingleThreadScheduledExecutor((runnable)->{
+			Thread thread = new Thread(runnable, "archiver-progress");
+			thread.setDaemon(true);
+			return thread;
+		});
+		reporter.scheduleAtFixedRate(()->listener.progress(snapshot(false)), 
+				intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Stops the periodical reports and delivers the final one. Nothing is done if the tracker is not started.
+	 */
+	synchronized void finish() {
+		if(reporter == null) {
+			return;
+		}
+		reporter.shutdown();
+		try {
+			reporter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		reporter = null;
+		listener.progress(snapshot(true));
+	}
+	
+	/**
+	 * Adds the found path or entry to the totals
+	 * @param bytes number of bytes of the path or entry
+	 */
+	void addTotal(long bytes) {
+		totalEntries.increment();
+		totalBytes.add(bytes);
+	}
+	
+	/**
+	 * Sets the total number of bytes known in advance. The bytes added to the totals are ignored.
+	 * @param bytes total number of bytes
+	 */
+	void setTotalBytes(long bytes) {
+		fixedTotalBytes = bytes;
+	}
+	
+	/**
+	 * Marks the totals as final
+	 */
+	void setTotalKnown() {
+		totalKnown = true;
+	}
+	
+	/**
+	 * Adds the processed paths or entries
+	 * @param entries number of the processed paths or entries
+	 * @param bytes number of the processed bytes
+	 */
+	void addProcessed(long entries, long bytes) {
+		processedEntries.add(entries);
+		processedBytes.add(bytes);
+	}
+	
+	/**
+	 * Returns the current progress
+	 * @param finished shows is the run finished
+	 * @return snapshot of the progress
+	 */
+	Progress snapshot(boolean finished) {
+		long total = fixedTotalBytes >= 0 ? fixedTotalBytes : totalBytes.sum();
+		return new Progress(processedEntries.sum(), totalEntries.sum(), processedBytes.sum(), total,
+				System.nanoTime() - startNanos, totalKnown || fixedTotalBytes >= 0, finished);
+	}
+}
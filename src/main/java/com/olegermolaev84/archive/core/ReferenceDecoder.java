@@ -0,0 +1,154 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+
+import com.olegermolaev84.archive.compression.Decompressor;
+
+/**
+ * This class is responsible for creating the file (or its block) whose content 
+ * is the same as content of the already unpacked target file. The content is copied
+ * when the target is unpacked.
+ */
+class ReferenceDecoder extends DataDecoder {
+	/** Counted down when the target is unpacked */
+	private final CountDownLatch target;
+
+	/** Path of the target file */
+	private final Path targetPath;
+
+	/** Offset of the content within the target file */
+	private final long targetOffset;
+
+	/** Path of the file to be created */
+	private final Path path;
+
+	/** File the block belongs to. <code>null</code> if the content is the whole file */
+	private final BlockedFile blockedFile;
+
+	/** Offset of the block within the file */
+	private final long offset;
+
+	/** Length of the content */
+	private final int length;
+
+	/**
+	 * Constructor
+	 * @param target Counted down when the target is unpacked
+	 * @param targetPath Path of the target file
+	 * @param targetOffset Offset of the content within the target file
+	 * @param path Path of the file to be created
+	 * @param length Length of the content
+	 */
+	ReferenceDecoder(CountDownLatch target, Path targetPath, long targetOffset, Path path, int length) {
+		this(target, targetPath, targetOffset, path, null, 0, length);
+	}
+
+	/**
+	 * Constructor of the decoder of the file's block
+	 * @param target Counted down when the target is unpacked
+	 * @param targetPath Path of the target file
+	 * @param targetOffset Offset of the content within the target file
+	 * @param blockedFile File the block belongs to
+	 * @param offset Offset of the block within the file
+	 * @param length Length of the block
+	 */
+	ReferenceDecoder(CountDownLatch target, Path targetPath, long targetOffset, 
+			BlockedFile blockedFile, long offset, int length) {
+		this(target, targetPath, targetOffset, blockedFile.getPath(), blockedFile, offset, length);
+	}
+
+	/**
+	 * Constructor
+	 * @param target Counted down when the target is unpacked
+	 * @param targetPath Path of the target file
+	 * @param targetOffset Offset of the content within the target file
+	 * @param path Path of the file to be created
+	 * @param blockedFile File the block belongs to or <code>null</code>
+	 * @param offset Offset of the block within the file
+	 * @param length Length of the content
+	 */
+	private ReferenceDecoder(CountDownLatch target, Path targetPath, long targetOffset, 
+			Path path, BlockedFile blockedFile, long offset, int length) {
+		this.target = target;
+		this.targetPath = targetPath;
+		this.targetOffset = targetOffset;
+		this.path = path;
+		this.blockedFile = blockedFile;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	void unpack(Decompressor decompressor, StringBuffer errors) {
+		if(verifyOnly) {
+			// the reference does not have data, the data of the target is verified by its own decoder
+			return;
+		}
+		try {
+			// the target is submitted earlier, so it is already being unpacked by another thread
+			target.await();
+			if(blockedFile != null) {
+				if(blockedFile.getChannel() == null) {
+					return;
+				}
+				// the blocks are copied in parallel, so each of them has its own position in the file
+				try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+					copy(channel.position(offset));
+				}
+				blockedFile.written(length);
+				return;
+			}
+
+			directories.createParent(path);
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				copy(channel);
+			}
+		} catch (FileAlreadyExistsException e) {
+			errors.append("File: " + path.normalize() + " already exists\n");
+		} catch (IOException | InterruptedException e) {
+			errors.append("Error occurred while unpacking of file: " + path.normalize() + ", error: " + e + "\n");
+		}
+	}
+
+	/**
+	 * Transfers the content from the target file into the channel at its position. 
+	 * The content is not copied into the Java heap.
+	 * @param channel channel of the file to be created
+	 * @throws IOException will be thrown in case of IO errors or truncated target
+	 */
+	private void copy(FileChannel channel) throws IOException {
+		try (FileChannel source = FileChannel.open(targetPath, StandardOpenOption.READ)) {
+			long position = targetOffset;
+			long end = targetOffset + length;
+			while(position < end) {
+				long transferred = source.transferTo(position, end - position, channel);
+				if(transferred <= 0) {
+					throw new IOException("Content of file: " + targetPath.normalize() + " is truncated");
+				}
+				position += transferred;
+			}
+		}
+	}
+
+	@Override
+	long getSizeOfData() {
+		// the copy of the content is charged to the window, though it is not kept by the decoder
+		return length;
+	}
+
+	@Override
+	long getSizeOfEntry() {
+		// the reference does not have data in the archive
+		return 0;
+	}
+	
+	@Override
+	public String toString() {
+		return "ReferenceDecoder(path=" + path + ", target=" + targetPath + ", offset=" + offset + ")";
+	}
+}
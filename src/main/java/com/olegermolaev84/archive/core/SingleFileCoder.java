@@ -1,26 +1,52 @@
 package com.olegermolaev84.archive.core;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
+import java.nio.file.StandardOpenOption;
+
+import com.olegermolaev84.archive.compression.CompressionMethods;
+import com.olegermolaev84.archive.compression.Compressor;
 
 /**
  * This class is responsible for compressing a given file.
+ * <br>The stored data is not compressed into the byte array: only its checksum is calculated,
+ * the data is transferred from the file into the archive when the entry is written.
+ * If the entry is written at the reserved position of the archive file, the header is written 
+ * again after the data, so each chunk of the data is read for the checksum right after it is transferred, 
+ * while it is in the page cache. If the entry is written into the stream, the header with the checksum 
+ * precedes the data, so the data is read for the checksum before the transfer: the file is read twice.
  */
-public class SingleFileCoder extends ByteArrayOutputStream {
+public class SingleFileCoder extends DataCoder {
+	/** Size of the chunk of the stored data which is read for the checksum right after it is transferred */
+	private static final long SIZE_OF_TRANSFERRED_CHUNK = 8 * 1024 * 1024;
+	
 	/** Path to an existent file with read permissions */
 	private final Path path; 
 	
 	/** Compression level. Value from 0 to 9 */
 	private final int compressionLevel;
 	
-	/** Block of data to be read from the file per one loop */
-	private static final int SIZE_OF_BLOCK = 1024;
+	/** Offset of the block within the file */
+	private final long offset;
+	
+	/** Length of the block. Equals to the size of the file if the whole file is packed */
+	private final long length;
+	
+	/** Size of the whole file */
+	private final long sizeOfFile;
+	
+	/** Shows is it file or directory */
+	private final boolean isRegularFile;
+	
+	/** Time of the last modification of the path in milliseconds */
+	private final long lastModifiedTime;
+	
+	/** Preset dictionary. <code>null</code> if the data is compressed without the dictionary */
+	private byte[] dictionary;
 
 	/**
 	 * Constructor
@@ -31,7 +57,23 @@ public class SingleFileCoder extends ByteArrayOutputStream {
 	 * @throws IOException will be thrown in case of IO errors
 	 */
 	public SingleFileCoder(Path path, int compressionLevel) throws  IllegalArgumentException, IOException {
-		super(Files.isRegularFile(path)?((int)Files.size(path)):0);
+		this(path, compressionLevel, 0, Files.isRegularFile(path)?Files.size(path):0);
+	}
+	
+	/**
+	 * Constructor of the coder of the file's block
+	 * @param path Path to an existent file with read permissions
+	 * @param compressionLevel Compression level. Value from 0 to 9
+	 * @param offset Offset of the block within the file
+	 * @param length Length of the block. Should not exceed <code>Integer.MAX_VALUE</code>
+	 * @throws IllegalArgumentException will be thrown if the file does not exist, does not
+	 *           have read permissions, compression level is out of range or the block is too large.
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	public SingleFileCoder(Path path, int compressionLevel, long offset, long length) 
+			throws  IllegalArgumentException, IOException {
+		// the byte array is allocated when the data is compressed, the stored data does not need it
+		super(0);
 		if (!Files.exists(path)) {
 			throw new IllegalArgumentException("Path: " + path + " does not exist");
 		}
@@ -41,39 +83,152 @@ public class SingleFileCoder extends ByteArrayOutputStream {
 		else if(compressionLevel > 9 || compressionLevel < 0) {
 			throw new IllegalArgumentException("Compression level is out of range (0-9). Geven value: " + compressionLevel);
 		}
+		else if(length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Size of block: " + length + " exeeds " +  Integer.MAX_VALUE + " bytes");
+		}
 		
 		this.compressionLevel = compressionLevel;
 		this.path = path;
+		this.offset = offset;
+		this.length = length;
+		this.isRegularFile = Files.isRegularFile(path);
+		this.sizeOfFile = isRegularFile?Files.size(path):0;
+		this.lastModifiedTime = Files.getLastModifiedTime(path).toMillis();
 	}
 	
 	/**
-	 * Compresses file's data and passes it to the byte array.
+	 * Sets the preset dictionary the data is to be compressed with
+	 * @param dictionary preset dictionary or <code>null</code>
+	 */
+	void setDictionary(byte[] dictionary) {
+		this.dictionary = dictionary;
+	}
+	
+	/**
+	 * Compresses file's data (or the denoted block of the file) and passes it to the byte array.
 	 * @throws IOException will be thrown in case of the file access failure
 	 */
 	public void packFile() throws IOException {
-		if(!Files.isRegularFile(path) || Files.size(path) == 0) {
+		Compressor compressor = compressionMethod.createCompressor(compressionLevel);
+		try {
+			pack(compressor);
+		} finally {
+			compressor.end();
+		}
+	}
+	
+	/**
+	 * Calculates the checksum and the digest (if it is enabled) of the data before it is packed. 
+	 * The data is read through the direct buffer of the thread. The stored data, which is transferred 
+	 * into the archive as is, is read only by this method. The data to be compressed is read 
+	 * in advance if the digest is needed to know is the content a duplicate, then the compression 
+	 * does not update the checksum again.
+	 * @throws IOException will be thrown in case of the file access failure
+	 */
+	void calculateChecksum() throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			updateChecksum(path, channel, offset, length);
+		}
+		checksumCalculated = true;
+	}
+	
+	@Override
+	void pack(Compressor compressor) throws IOException {
+		if(!isRegularFile || length == 0) {
+			return;
+		}
+		else if(isTransferable()) {
+			if(!checksumCalculated) {
+				calculateChecksum();
+			}
 			return;
 		}
 		
-		try (BufferedInputStream bfis = new BufferedInputStream(new FileInputStream(path.toFile()));
-			 DeflaterOutputStream dos = new DeflaterOutputStream(this, new Deflater(compressionLevel))) {
-
-			byte[] byteArray;
-			boolean eofReached = false;
-
-			while (!eofReached) {
-				byteArray = bfis.readNBytes(SIZE_OF_BLOCK);
-				if (byteArray.length == 0) {
-					break;
-				} else if (byteArray.length < SIZE_OF_BLOCK) {
-					eofReached = true;
+		if(usesDictionary()) {
+			compressor.setDictionary(dictionary);
+		}
+		reserve((int)length);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			compress(path, channel, offset, length, compressor);
+		}
+		finish(compressor);
+	}
+	
+	@Override
+	boolean isTransferable() {
+		return isRegularFile && length > 0 && compressionMethod == CompressionMethods.STORE;
+	}
+	
+	@Override
+	long getSizeOfData() {
+		return isTransferable() ? length : count;
+	}
+	
+	@Override
+	void transferTo(WritableByteChannel target) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long position = offset;
+			long end = offset + length;
+			while (position < end) {
+				long transferred = channel.transferTo(position, end - position, target);
+				if (transferred <= 0) {
+					throw new IOException("File: " + path + " has been truncated while packing");
 				}
-
-				dos.write(byteArray);
+				position += transferred;
 			}
 		}
 	}
 	
+	@Override
+	void transferTo(FileChannel target, long position) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long transferred = 0;
+			while (transferred < length) {
+				long start = transferred;
+				long end = checksumCalculated ? length : Math.min(length, start + SIZE_OF_TRANSFERRED_CHUNK);
+				channel.position(offset + start);
+				while (transferred < end) {
+					long written = target.transferFrom(channel, position + transferred, end - transferred);
+					if (written <= 0) {
+						throw new IOException("File: " + path + " has been truncated while packing");
+					}
+					transferred += written;
+				}
+				if (!checksumCalculated) {
+					// the chunk is just read by the transfer, so it is read again from the page cache
+					updateChecksum(path, channel, offset + start, end - start);
+				}
+			}
+		}
+		checksumCalculated = true;
+	}
+	
+	@Override
+	PathHeader getReference(String targetPathName, long targetOffset) {
+		return new PathHeader(getPathHeader(), targetPathName, targetOffset);
+	}
+	
+	@Override
+	int getNumberOfPaths() {
+		// the file is counted once by its first block
+		return offset == 0 ? 1 : 0;
+	}
+	
+	@Override
+	long getSizeOfInput() {
+		return length;
+	}
+	
+	@Override
+	void writeHeader(DataOutput out) throws IOException {
+		ArchiveFormat.writePathHeader(out, getPathHeader());
+	}
+	
+	@Override
+	void addTo(CentralDirectory directory, long offset) {
+		directory.add(offset, getPathHeader());
+	}
+	
 	/**
 	 * Returns PathHeader class object with data relevant to the path which was  
 	 * used to initialize this SingleFileCoder object. 
@@ -81,24 +236,31 @@ public class SingleFileCoder extends ByteArrayOutputStream {
 	 * @return PathHeader class object with data relevant to the path
 	 */
 	public PathHeader getPathHeader() {
-		return new PathHeader(Files.isRegularFile(path), 
-				count, // field of the ByteArrayOutputStream class
-				path.normalize().toString());
+		if(!isRegularFile) {
+			return new PathHeader(false, count, path.normalize().toString(), 0, 0, 0, false, lastModifiedTime, 
+					compressionMethod.getId());
+		}
+		return new PathHeader(true, 
+				getSizeOfData(),
+				path.normalize().toString(),
+				sizeOfFile, offset, length, usesDictionary(), lastModifiedTime, compressionMethod.getId(),
+				(int)checksum.getValue());
 	}
 	
 	/**
-	 * Returns array of compressed data
-	 * @return array of compressed data
+	 * Shows is the data compressed with the preset dictionary
+	 * @return <code>true</code> if the dictionary is set and there is data to be compressed
 	 */
-	public byte[] getCompressedData() {
-		return buf;
+	private boolean usesDictionary() {
+		return dictionary != null && isRegularFile && length > 0;
 	}
 	
 	@Override
 	public String toString() {
 		return "SingleFileCoder("+
 				"path=" + path.normalize().toString() +
-				", sizeOfData=" + count+
-				", isFile="+Files.isRegularFile(path) + ")";
+				", offset=" + offset +
+				", sizeOfData=" + getSizeOfData() +
+				", isFile="+isRegularFile + ")";
 	}
 }
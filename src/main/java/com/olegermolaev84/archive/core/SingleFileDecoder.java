@@ -1,17 +1,38 @@
 package com.olegermolaev84.archive.core;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Path;
-import java.util.zip.InflaterOutputStream;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+
+import com.olegermolaev84.archive.compression.Decompressor;
+import com.olegermolaev84.archive.metrics.Stage;
 
 /**
  * This class is responsible for unpacking the given data and creating
- * the corresponding file or directory
+ * the corresponding file or directory.
+ * <br>The stored data of the archive file is not kept by the decoder: it is transferred 
+ * from the archive into the file by <code>FileChannel.transferTo</code>.
  */
-public class SingleFileDecoder {
+public class SingleFileDecoder extends DataDecoder {
+	/** Size of the buffer the data is decompressed into */
+	private static final int SIZE_OF_OUTPUT_BUFFER = 256 * 1024;
+	
+	/** Direct buffers the data is decompressed into by turns: one is filled while the other is written. 
+	 * The buffers are reused by all decoders running in the thread */
+	private static final ThreadLocal<ByteBuffer[]> outputBuffers =
+			ThreadLocal.withInitial(()->new ByteBuffer[] {ByteBuffer.allocateDirect(SIZE_OF_OUTPUT_BUFFER),
+					ByteBuffer.allocateDirect(SIZE_OF_OUTPUT_BUFFER)});
+	
 	/** Shows what to be created: file or directory */
 	private final boolean isFile;
 	
@@ -21,6 +42,39 @@ public class SingleFileDecoder {
 	/** Path with file or directory to be created */
 	private final Path path; 
 	
+	/** Size of the uncompressed file. -1 if it is unknown */
+	private final long sizeOfFile;
+	
+	/** File the block belongs to. <code>null</code> if the data is the whole file */
+	private final BlockedFile blockedFile;
+	
+	/** Offset of the block within the file */
+	private final long offset;
+	
+	/** Length of the uncompressed block */
+	private final int sizeOfBlock;
+	
+	/** Preset dictionary. <code>null</code> if the data is compressed without the dictionary */
+	private byte[] dictionary;
+	
+	/** Shows is the checksum of the uncompressed data known */
+	private boolean hasChecksum = false;
+	
+	/** CRC32C checksum of the uncompressed data */
+	private int checksum;
+	
+	/** Channel of the archive the stored data is transferred from. <code>null</code> if the data is kept by the decoder */
+	private FileChannel archive;
+	
+	/** Offset of the stored data within the archive */
+	private long offsetOfStoredData;
+	
+	/** Size of the stored data */
+	private long sizeOfStoredData;
+	
+	/** Counted down when the data is unpacked. References to the content wait for it */
+	private final CountDownLatch unpacked = new CountDownLatch(1);
+	
 	/**
 	 * Constructor
 	 * @param isFile Shows what to be created: file or directory
@@ -28,9 +82,71 @@ public class SingleFileDecoder {
 	 * @param path Path with file or directory to be created
 	 */
 	public SingleFileDecoder(boolean isFile, byte[] compressedData, Path path) {
+		this(isFile, compressedData, path, -1);
+	}
+	
+	/**
+	 * Constructor of the decoder of the file with known size
+	 * @param isFile Shows what to be created: file or directory
+	 * @param compressedData Byte array with compressed data
+	 * @param path Path with file or directory to be created
+	 * @param sizeOfFile Size of the uncompressed file, -1 if it is unknown
+	 */
+	public SingleFileDecoder(boolean isFile, byte[] compressedData, Path path, long sizeOfFile) {
 		this.isFile = isFile;
 		this.compressedData = compressedData;
 		this.path = path;
+		this.sizeOfFile = sizeOfFile;
+		this.blockedFile = null;
+		this.offset = 0;
+		this.sizeOfBlock = 0;
+	}
+	
+	/**
+	 * Constructor of the decoder of the file's block
+	 * @param compressedData Byte array with compressed data of the block
+	 * @param blockedFile File the block belongs to
+	 * @param offset Offset of the block within the file
+	 * @param sizeOfBlock Length of the uncompressed block
+	 */
+	SingleFileDecoder(byte[] compressedData, BlockedFile blockedFile, long offset, int sizeOfBlock) {
+		this.isFile = true;
+		this.compressedData = compressedData;
+		this.path = blockedFile.getPath();
+		this.sizeOfFile = -1;
+		this.blockedFile = blockedFile;
+		this.offset = offset;
+		this.sizeOfBlock = sizeOfBlock;
+	}
+	
+	/**
+	 * Sets the preset dictionary the data is compressed with
+	 * @param dictionary preset dictionary or <code>null</code>
+	 */
+	void setDictionary(byte[] dictionary) {
+		this.dictionary = dictionary;
+	}
+	
+	/**
+	 * Sets the checksum the uncompressed data is checked against
+	 * @param checksum CRC32C checksum of the uncompressed data
+	 */
+	void setChecksum(int checksum) {
+		this.hasChecksum = true;
+		this.checksum = checksum;
+	}
+	
+	/**
+	 * Sets the stored data which is transferred from the archive file instead of the compressed data.
+	 * The decoder should be created with the empty array of compressed data.
+	 * @param archive channel of the archive file. It is used by positional operations only
+	 * @param offset offset of the stored data within the archive
+	 * @param size size of the stored data
+	 */
+	void setStoredData(FileChannel archive, long offset, long size) {
+		this.archive = archive;
+		this.offsetOfStoredData = offset;
+		this.sizeOfStoredData = size;
 	}
 	
 	/**
@@ -38,24 +154,319 @@ public class SingleFileDecoder {
 	 * @throws IOException will be thrown in case of IO errors
 	 */
 	public void  unpackFile() throws IOException {
-		// create directories
-		if(!isFile && !Files.exists(path)) {
-			Files.createDirectories(path);
+		Decompressor decompressor = compressionMethod.createDecompressor();
+		try {
+			unpackFile(decompressor);
+		} finally {
+			decompressor.end();
 		}
-		else if(isFile && !(Files.exists(path.getParent()))) {
-			Files.createDirectories(path.getParent());
+	}
+	
+	@Override
+	void unpack(Decompressor decompressor, StringBuffer errors) {
+		try {
+			unpackFile(decompressor);
+		}catch (FileAlreadyExistsException e) {
+			errors.append("File: " + getFileName() + " already exists\n");
+		}catch (IOException e) {
+			errors.append("Error occurred while unpacking of file: " + getFileName() + ", error: " + e + "\n");
+		}finally {
+			unpacked.countDown();
+		}
+	}
+	
+	/**
+	 * Returns the latch which is counted down when the data is unpacked
+	 * @return the latch
+	 */
+	CountDownLatch getUnpacked() {
+		return unpacked;
+	}
+	
+	/**
+	 * Decompresses the data by the denoted Decompressor and creates the corresponding file or directory.
+	 * The file is opened once, the data is decompressed into the reusable direct buffer and
+	 * written positionally. The Decompressor is to be reset, it is not ended.
+	 * In the verify mode the data is only decompressed and checked.
+	 * @param decompressor Decompressor to decompress the data
+	 * @throws IOException will be thrown in case of IO errors or corrupted data
+	 */
+	void unpackFile(Decompressor decompressor) throws IOException {
+		if(archive != null) {
+			transferStoredData();
+			return;
+		}
+		else if(blockedFile != null) {
+			unpackBlock(decompressor);
+			return;
+		}
+		else if(!isFile) {
+			if(!verifyOnly) {
+				directories.create(path);
+			}
+			return;
+		}
+		else if(verifyOnly) {
+			unpackData(decompressor, null);
+			return;
 		}
 		
-		if(isFile) {
-			Files.createFile(path);
+		directories.createParent(path);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			unpackData(decompressor, channel);
+		}
+	}
+	
+	/**
+	 * Decompresses the data of the whole file, writes it into the channel and checks its checksum.
+	 * The file is not extended to its size in advance: FileChannel cannot reserve the space, 
+	 * it would only create the sparse file which looks complete if the unpacking fails.
+	 * @param decompressor Decompressor to decompress the data
+	 * @param channel channel of the file, <code>null</code> if the data is only checked
+	 * @throws IOException will be thrown in case of IO errors or corrupted data
+	 */
+	private void unpackData(Decompressor decompressor, FileChannel channel) throws IOException {
+		if(compressedData.length == 0) {
+			return;
+		}
+		CRC32C crc = new CRC32C();
+		decompressor.setInput(compressedData, 0, compressedData.length);
+		long size = write(decompressor, channel, 0, Long.MAX_VALUE, crc);
+		if(!decompressor.finished() || (sizeOfFile >= 0 && size != sizeOfFile)) {
+			throw new IOException("Corrupted data of the file");
+		}
+		else if(hasChecksum && (int)crc.getValue() != checksum) {
+			throw new IOException("Checksum of the data does not match");
+		}
+	}
+	
+	/**
+	 * Transfers the stored data from the archive into the file (or the block of the file) 
+	 * and checks its checksum. The data is not copied into the Java heap.
+	 * @throws IOException will be thrown in case of IO errors or corrupted data
+	 */
+	private void transferStoredData() throws IOException {
+		long expectedSize = blockedFile != null ? sizeOfBlock : sizeOfFile;
+		if(expectedSize >= 0 && sizeOfStoredData != expectedSize) {
+			throw new IOException("Corrupted data of the file");
+		}
+		else if(verifyOnly) {
+			checkStoredData();
+			return;
 		}
 		
-		// decompress the data and write it to the file
-		if(compressedData.length > 0) {
-			InflaterOutputStream ios = new InflaterOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile())));
-			ios.write(compressedData);
-			ios.close();
+		long startTime = metrics.startTime();
+		if(blockedFile != null) {
+			if(blockedFile.getChannel() == null) {
+				return;
+			}
+			// the blocks are transferred in parallel, so each of them has its own position in the file
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				transfer(channel.position(offset));
+			}
+			blockedFile.written(sizeOfStoredData);
+		}
+		else {
+			directories.createParent(path);
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				transfer(channel);
+			}
+		}
+		metrics.record(Stage.WRITE, startTime, sizeOfStoredData);
+		metrics.addBytesOut(sizeOfStoredData);
+		checkStoredData();
+	}
+	
+	/**
+	 * Transfers the stored data from the archive into the channel at its position
+	 * @param target channel of the file
+	 * @throws IOException will be thrown in case of IO errors or truncated archive
+	 */
+	private void transfer(FileChannel target) throws IOException {
+		long position = offsetOfStoredData;
+		long end = offsetOfStoredData + sizeOfStoredData;
+		while(position < end) {
+			long transferred = archive.transferTo(position, end - position, target);
+			if(transferred <= 0) {
+				throw new IOException("Corrupted data of the file: the archive is truncated");
+			}
+			position += transferred;
+		}
+	}
+	
+	/**
+	 * Reads the stored data from the archive into the reusable direct buffer and checks its checksum.
+	 * Nothing is read if the checksum is unknown.
+	 * @throws IOException will be thrown in case of IO errors or corrupted data
+	 */
+	private void checkStoredData() throws IOException {
+		if(!hasChecksum) {
+			return;
+		}
+		
+		CRC32C crc = new CRC32C();
+		ByteBuffer buffer = outputBuffers.get()[0];
+		long position = offsetOfStoredData;
+		long end = offsetOfStoredData + sizeOfStoredData;
+		while(position < end) {
+			buffer.clear();
+			buffer.limit((int)Math.min(buffer.capacity(), end - position));
+			int read = archive.read(buffer, position);
+			if(read < 0) {
+				throw new IOException("Corrupted data of the file: the archive is truncated");
+			}
+			position += read;
+			buffer.flip();
+			crc.update(buffer);
+		}
+		if((int)crc.getValue() != checksum) {
+			throw new IOException(blockedFile != null 
+					? "Checksum of the block at offset: " + offset + " does not match"
+					: "Checksum of the data does not match");
+		}
+	}
+	
+	/**
+	 * Decompresses the block and writes it into the file at the block's offset
+	 * @param decompressor Decompressor to decompress the data
+	 * @throws IOException will be thrown in case of IO errors or corrupted data
+	 */
+	private void unpackBlock(Decompressor decompressor) throws IOException {
+		FileChannel channel = null;
+		if(!verifyOnly) {
+			channel = blockedFile.getChannel();
+			if(channel == null) {
+				return;
+			}
+		}
+		
+		CRC32C crc = new CRC32C();
+		decompressor.setInput(compressedData, 0, compressedData.length);
+		long size = write(decompressor, channel, offset, sizeOfBlock, crc);
+		if(size < sizeOfBlock) {
+			throw new IOException("Corrupted data of the block at offset: " + offset);
+		}
+		if(channel != null) {
+			blockedFile.written(size);
 		}
+		if(hasChecksum && (int)crc.getValue() != checksum) {
+			throw new IOException("Checksum of the block at offset: " + offset + " does not match");
+		}
+	}
+	
+	/**
+	 * Decompresses the data and writes it into the channel. If the I/O executor is set, 
+	 * the decompressed buffer is written by it while the next buffer is being decompressed.
+	 * @param decompressor Decompressor with the input data
+	 * @param channel channel of the file, <code>null</code> if the data is not to be written
+	 * @param position position of the data within the file
+	 * @param maxSize maximal number of bytes to be written
+	 * @param crc checksum the decompressed data is added to
+	 * @return number of decompressed bytes
+	 * @throws IOException will be thrown in case of IO errors or corrupted data
+	 */
+	private long write(Decompressor decompressor, FileChannel channel, long position, long maxSize, CRC32C crc) 
+			throws IOException {
+		ByteBuffer[] buffers = outputBuffers.get();
+		Future<?> pendingWrite = null;
+		long size = 0;
+		try {
+			for(int i = 0; size < maxSize && !decompressor.finished(); i ^= 1) {
+				ByteBuffer buffer = buffers[i];
+				buffer.clear();
+				buffer.limit((int)Math.min(buffer.capacity(), maxSize - size));
+				long startTime = metrics.startTime();
+				int decompressed = decompress(decompressor, buffer);
+				metrics.record(Stage.DECOMPRESS, startTime, decompressed);
+				if(decompressed == 0 && (decompressor.needsInput() || decompressor.needsDictionary())) {
+					break;
+				}
+				buffer.flip();
+				crc.update(buffer.duplicate());
+				
+				await(pendingWrite);
+				pendingWrite = null;
+				long bufferPosition = position + size;
+				if(channel == null) {
+					// the data is only checked
+				}
+				else if(ioExecutor == null) {
+					write(channel, buffer, bufferPosition);
+				}
+				else {
+					pendingWrite = CompletableFuture.runAsync(()->{
+						try {
+							write(channel, buffer, bufferPosition);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}, ioExecutor);
+				}
+				size += decompressed;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupted data of the file", e);
+		} finally {
+			// the channel is closed by the caller, so the pending write is to be completed
+			await(pendingWrite);
+		}
+		return size;
+	}
+	
+	/**
+	 * Writes the whole buffer into the channel
+	 * @param channel channel of the file
+	 * @param buffer buffer to be written
+	 * @param position position of the data within the file
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long startTime = metrics.startTime();
+		int size = buffer.remaining();
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		metrics.record(Stage.WRITE, startTime, size);
+		metrics.addBytesOut(size);
+	}
+	
+	/**
+	 * Waits for the write which is performed by the I/O executor
+	 * @param write future of the write, <code>null</code> if there is no pending write
+	 * @throws IOException will be thrown if the write fails or the waiting is interrupted
+	 */
+	private static void await(Future<?> write) throws IOException {
+		if(write == null) {
+			return;
+		}
+		try {
+			write.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Writing of the file is interrupted", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException)e.getCause()).getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Decompresses the next portion of data. The preset dictionary is passed to Decompressor
+	 * when it is requested.
+	 * @param decompressor Decompressor with the input data
+	 * @param buffer buffer for the uncompressed data
+	 * @return number of uncompressed bytes
+	 * @throws DataFormatException will be thrown if the data is corrupted
+	 */
+	private int decompress(Decompressor decompressor, ByteBuffer buffer) throws DataFormatException {
+		int decompressed = decompressor.decompress(buffer);
+		if(decompressed == 0 && decompressor.needsDictionary() && dictionary != null) {
+			decompressor.setDictionary(dictionary);
+			decompressed = decompressor.decompress(buffer);
+		}
+		return decompressed;
 	}
 	
 	/**
@@ -66,6 +477,16 @@ public class SingleFileDecoder {
 		return path.normalize().toString();
 	}
 	
+	@Override
+	long getSizeOfData() {
+		return compressedData.length;
+	}
+	
+	@Override
+	long getSizeOfEntry() {
+		return archive != null ? sizeOfStoredData : compressedData.length;
+	}
+	
 	@Override
 	public String toString() {
 		return "SimpleFileDecoder(isFile="+isFile+", path="+path+", data length="+compressedData.length+")";
@@ -0,0 +1,93 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.olegermolaev84.archive.compression.Compressor;
+
+/**
+ * This class is responsible for compressing a group of small files and directories
+ * as one stream (solid block).
+ */
+class SolidBlockCoder extends DataCoder {
+	/** Paths of the files and directories of the block */
+	private final List<Path> paths;
+
+	/** Expected size of the uncompressed block */
+	private final long sizeOfBlock;
+
+	/** Headers of the packed files and directories */
+	private final List<PathHeader> members;
+
+	/**
+	 * Constructor
+	 * @param paths Paths of the files and directories of the block
+	 * @param sizeOfBlock Expected size of the uncompressed block
+	 */
+	SolidBlockCoder(List<Path> paths, long sizeOfBlock) {
+		super((int)sizeOfBlock);
+		this.paths = paths;
+		this.sizeOfBlock = sizeOfBlock;
+		this.members = new ArrayList<>(paths.size());
+	}
+
+	@Override
+	void pack(Compressor compressor) throws IOException {
+		for(Path path : paths) {
+			long lastModifiedTime = Files.getLastModifiedTime(path).toMillis();
+			if(!Files.isRegularFile(path)) {
+				members.add(new PathHeader(false, 0, path.normalize().toString(), 0, 0, 0, false, lastModifiedTime));
+				continue;
+			}
+
+			long size;
+			checksum.reset();
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				size = channel.size();
+				compress(path, channel, 0, size, compressor);
+			}
+			members.add(new PathHeader(true, 0, path.normalize().toString(), size, 0, size, false, 
+					lastModifiedTime, 0, (int)checksum.getValue()));
+		}
+		finish(compressor);
+	}
+
+	@Override
+	int getNumberOfPaths() {
+		return paths.size();
+	}
+
+	@Override
+	long getSizeOfInput() {
+		return sizeOfBlock;
+	}
+
+	@Override
+	void writeHeader(DataOutput out) throws IOException {
+		ArchiveFormat.writeSolidBlockHeader(out, getSolidBlockHeader());
+	}
+
+	@Override
+	void addTo(CentralDirectory directory, long offset) {
+		directory.add(offset, getSolidBlockHeader());
+	}
+
+	/**
+	 * Returns header of the block. Should be called after the <code>pack</code> method.
+	 * @return header of the block
+	 */
+	SolidBlockHeader getSolidBlockHeader() {
+		return new SolidBlockHeader(members, count, compressionMethod.getId());
+	}
+
+	@Override
+	public String toString() {
+		return "SolidBlockCoder(files=" + paths.size() + ", sizeOfData=" + count + ")";
+	}
+}
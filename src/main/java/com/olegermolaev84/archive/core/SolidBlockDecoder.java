@@ -0,0 +1,230 @@
+package com.olegermolaev84.archive.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+
+import com.olegermolaev84.archive.compression.Decompressor;
+import com.olegermolaev84.archive.metrics.Stage;
+
+/**
+ * This class is responsible for unpacking the solid block and creating
+ * the files and directories of the block
+ */
+class SolidBlockDecoder extends DataDecoder {
+	/** Size of the buffer the data of files is copied through */
+	private static final int SIZE_OF_BUFFER = 64 * 1024;
+
+	/**
+	 * Stream of the data decompressed from the byte array
+	 */
+	private static class DecompressorInputStream extends InputStream {
+		/** Decompressor with the whole compressed data as input */
+		private final Decompressor decompressor;
+
+		/** Buffer for single byte reading */
+		private final byte[] singleByte = new byte[1];
+
+		/**
+		 * Constructor
+		 * @param decompressor Decompressor to decompress the data
+		 * @param compressedData Byte array with compressed data
+		 */
+		private DecompressorInputStream(Decompressor decompressor, byte[] compressedData) {
+			this.decompressor = decompressor;
+			decompressor.setInput(compressedData, 0, compressedData.length);
+		}
+
+		@Override
+		public int read() throws IOException {
+			return read(singleByte, 0, 1) < 0 ? -1 : singleByte[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) {
+				return 0;
+			}
+			try {
+				int read = decompressor.decompress(b, off, len);
+				if(read > 0) {
+					return read;
+				}
+				else if(decompressor.finished()) {
+					return -1;
+				}
+				throw new EOFException("Unexpected end of data of solid block");
+			} catch (DataFormatException e) {
+				throw new IOException("Corrupted data of solid block", e);
+			}
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			byte[] buffer = new byte[(int)Math.min(n, SIZE_OF_BUFFER)];
+			int read = read(buffer, 0, buffer.length);
+			return Math.max(read, 0);
+		}
+	}
+
+	/** Header of the block */
+	private final SolidBlockHeader header;
+
+	/** Byte array with compressed data */
+	private final byte[] compressedData;
+
+	/** Paths of the files and directories to be created in the order of members */
+	private final List<Path> paths;
+
+	/** Selects members to be created. <code>null</code> if all members are to be created */
+	private final Predicate<PathHeader> filter;
+
+	/**
+	 * Constructor
+	 * @param header Header of the block
+	 * @param compressedData Byte array with compressed data
+	 * @param paths Paths of the files and directories to be created in the order of members
+	 * @param filter Selects members to be created. <code>null</code> if all members are to be created
+	 */
+	SolidBlockDecoder(SolidBlockHeader header, byte[] compressedData, List<Path> paths,
+			Predicate<PathHeader> filter) {
+		this.header = header;
+		this.compressedData = compressedData;
+		this.paths = paths;
+		this.filter = filter;
+	}
+
+	@Override
+	void unpack(Decompressor decompressor, StringBuffer errors) {
+		byte[] buffer = new byte[SIZE_OF_BUFFER];
+		List<PathHeader> members = header.getMembers();
+
+		try (InputStream in = new DecompressorInputStream(decompressor, compressedData)) {
+			for(int i = 0; i < members.size(); i++) {
+				PathHeader member = members.get(i);
+				Path path = paths.get(i);
+				boolean selected = filter == null || filter.test(member);
+
+				if(!member.isRegularFile()) {
+					if(selected && !verifyOnly) {
+						directories.create(path);
+					}
+				}
+				else if(!selected) {
+					skip(in, member.getSizeOfFile());
+				}
+				else if(verifyOnly) {
+					copy(in, null, path, member, buffer, errors);
+				}
+				else {
+					unpackMember(in, path, member, buffer, errors);
+				}
+			}
+		} catch (IOException e) {
+			errors.append("Error occurred while unpacking of solid block, error: " + e + "\n");
+		}
+	}
+
+	/**
+	 * Creates the file and copies its data from the decompressed stream
+	 * @param in decompressed stream of the block
+	 * @param path path of the file
+	 * @param member header of the file
+	 * @param buffer buffer the data is copied through
+	 * @param errors StringBuffer to collect errors which can occur while the files unpacking.
+	 * @throws IOException will be thrown if the stream is corrupted
+	 */
+	private void unpackMember(InputStream in, Path path, PathHeader member, byte[] buffer, StringBuffer errors)
+			throws IOException {
+		FileChannel channel;
+		try {
+			directories.createParent(path);
+			channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		} catch (FileAlreadyExistsException e) {
+			errors.append("File: " + path.normalize() + " already exists\n");
+			skip(in, member.getSizeOfFile());
+			return;
+		}
+
+		try (FileChannel output = channel) {
+			copy(in, output, path, member, buffer, errors);
+		}
+	}
+
+	/**
+	 * Copies the data of the file from the decompressed stream and checks its checksum
+	 * @param in decompressed stream of the block
+	 * @param output channel of the file, <code>null</code> if the data is only checked
+	 * @param path path of the file
+	 * @param member header of the file
+	 * @param buffer buffer the data is copied through
+	 * @param errors StringBuffer to collect errors which can occur while the files unpacking.
+	 * @throws IOException will be thrown if the stream is corrupted
+	 */
+	private void copy(InputStream in, FileChannel output, Path path, PathHeader member, byte[] buffer, 
+			StringBuffer errors) throws IOException {
+		CRC32C crc = new CRC32C();
+		long size = member.getSizeOfFile();
+		long position = 0;
+		while(position < size) {
+			long startTime = metrics.startTime();
+			int read = in.read(buffer, 0, (int)Math.min(buffer.length, size - position));
+			if(read < 0) {
+				throw new EOFException("Unexpected end of data of file: " + path.normalize());
+			}
+			metrics.record(Stage.DECOMPRESS, startTime, read);
+			crc.update(buffer, 0, read);
+			
+			if(output == null) {
+				position += read;
+				continue;
+			}
+			startTime = metrics.startTime();
+			ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+			while(data.hasRemaining()) {
+				position += output.write(data, position);
+			}
+			metrics.record(Stage.WRITE, startTime, read);
+			metrics.addBytesOut(read);
+		}
+		
+		if(member.hasChecksum() && (int)crc.getValue() != member.getChecksum()) {
+			errors.append("Checksum of file: " + path.normalize() + " does not match\n");
+		}
+	}
+
+	/**
+	 * Skips the data of the file which is not to be created
+	 * @param in decompressed stream of the block
+	 * @param size number of bytes to be skipped
+	 * @throws IOException will be thrown if the stream is corrupted
+	 */
+	private static void skip(InputStream in, long size) throws IOException {
+		while(size > 0) {
+			long skipped = in.skip(size);
+			if(skipped <= 0) {
+				throw new EOFException("Unexpected end of data of solid block");
+			}
+			size -= skipped;
+		}
+	}
+
+	@Override
+	long getSizeOfData() {
+		return compressedData.length;
+	}
+	
+	@Override
+	public String toString() {
+		return "SolidBlockDecoder(files=" + paths.size() + ", data length=" + compressedData.length + ")";
+	}
+}
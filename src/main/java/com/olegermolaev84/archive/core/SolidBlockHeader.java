@@ -0,0 +1,74 @@
+package com.olegermolaev84.archive.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contains fields necessary to be written into the output stream prior the compressed data
+ * of the solid block. The solid block is a group of small files and directories which are
+ * compressed as one stream. The data of the files follow each other in the order of members.
+ *
+ */
+public class SolidBlockHeader {
+	/** Headers of the files and directories of the block. Their sizes of data are 0 */
+	private final List<PathHeader> members;
+
+	/** Length of compressed data */
+	private final long sizeOfData;
+
+	/** Identifier of the compression method of the data */
+	private final int compressionMethod;
+
+	/**
+	 * Constructor
+	 * @param members headers of the files and directories of the block
+	 * @param lengthOfData length of compressed data
+	 */
+	public SolidBlockHeader(List<PathHeader> members, long lengthOfData) {
+		this(members, lengthOfData, 0);
+	}
+
+	/**
+	 * Constructor of the header of the block compressed with the denoted method
+	 * @param members headers of the files and directories of the block
+	 * @param lengthOfData length of compressed data
+	 * @param compressionMethod identifier of the compression method of the data
+	 */
+	public SolidBlockHeader(List<PathHeader> members, long lengthOfData, int compressionMethod) {
+		this.members = Collections.unmodifiableList(members);
+		this.sizeOfData = lengthOfData;
+		this.compressionMethod = compressionMethod;
+	}
+
+	/** Returns headers of the files and directories of the block
+	 * @return list of headers in the order the data of the files follow
+	 */
+	public List<PathHeader> getMembers() {
+		return members;
+	}
+
+	/** Returns size of compressed data
+	 * @return size of compressed data
+	 */
+	public long getSizeOfData() {
+		return sizeOfData;
+	}
+
+	/** Returns size of the uncompressed block
+	 * @return sum of sizes of the files
+	 */
+	public long getSizeOfBlock() {
+		long size = 0;
+		for(PathHeader member : members) {
+			size += member.getSizeOfFile();
+		}
+		return size;
+	}
+
+	/** Returns identifier of the compression method of the data
+	 * @return identifier of the compression method, 0 for deflate
+	 */
+	public int getCompressionMethod() {
+		return compressionMethod;
+	}
+}
@@ -1,39 +1,138 @@
 package com.olegermolaev84.archive.main;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import com.olegermolaev84.archive.core.Coder;
 import com.olegermolaev84.archive.core.Decoder;
+import com.olegermolaev84.archive.core.PathHeader;
 
 /**
  * Entry point class
  *
  */
 public class Archiver {
+	/** Option which prints the progress into the standard error stream */
+	private static final String PROGRESS_OPTION = "--progress";
+	
+	/** Option which verifies the archive read from the standard input stream without unpacking */
+	private static final String VERIFY_OPTION = "--verify";
+	
+	/** Option which lists the content of the archive read from the standard input stream */
+	private static final String LIST_OPTION = "--list";
+	
+	/** Option which adds the glob pattern of the paths to be unpacked */
+	private static final String INCLUDE_OPTION = "--include=";
+	
+	/** Option which adds the glob pattern of the paths not to be unpacked */
+	private static final String EXCLUDE_OPTION = "--exclude=";
+	
+	/** Option which appends the files to the denoted archive file, the file is created if it does not exist */
+	private static final String APPEND_OPTION = "--append=";
 
 	/**
 	 * Entry point to the program
 	 * @param args Array of strings with files and/or directories to be packed. 
 	 * Packed data is directed to the standard output stream.<br>
 	 * If the array is empty, then the program unpacks files. Packed data is read from the 
-	 * standard input stream.
+	 * standard input stream.<br>
+	 * The files can be preceded by the options:<br>
+	 * <code>--progress</code> prints the progress into the standard error stream;<br>
+	 * <code>--verify</code> checks the archive read from the standard input stream, files are not created;<br>
+	 * <code>--list</code> prints the sizes and the names of the files of the archive into 
+	 * the standard output stream;<br>
+	 * <code>--include=GLOB</code> and <code>--exclude=GLOB</code> select the paths to be unpacked, 
+	 * verified or listed;<br>
+	 * <code>--append=ARCHIVE</code> appends the files to the archive file instead of 
+	 * writing them into the standard output stream, the archive file is created if it does not exist.
 	 */
 	public static void main(String[] args) {
+		boolean showProgress = false;
+		boolean verify = false;
+		boolean list = false;
+		List<String> includes = new ArrayList<>();
+		List<String> excludes = new ArrayList<>();
+		Path archive = null;
+		
+		int i = 0;
+		for(; i < args.length && args[i].startsWith("--"); i++) {
+			if(args[i].equals(PROGRESS_OPTION)) {
+				showProgress = true;
+			}
+			else if(args[i].equals(VERIFY_OPTION)) {
+				verify = true;
+			}
+			else if(args[i].equals(LIST_OPTION)) {
+				list = true;
+			}
+			else if(args[i].startsWith(INCLUDE_OPTION)) {
+				includes.add(args[i].substring(INCLUDE_OPTION.length()));
+			}
+			else if(args[i].startsWith(EXCLUDE_OPTION)) {
+				excludes.add(args[i].substring(EXCLUDE_OPTION.length()));
+			}
+			else if(args[i].startsWith(APPEND_OPTION)) {
+				archive = Path.of(args[i].substring(APPEND_OPTION.length()));
+			}
+			else {
+				System.err.println("Unknown option: " + args[i]);
+				return;
+			}
+		}
+		args = Arrays.copyOfRange(args, i, args.length);
+		
 		try {
-			if (args.length > 0) { // pack mode
-				Coder coder = new Coder(args, System.out);
+			if (args.length > 0 && !verify && !list) { // pack mode
+				Coder coder;
+				if(archive == null) {
+					coder = new Coder(args, System.out);
+				}
+				else if(Files.exists(archive)) {
+					coder = Coder.append(args, archive);
+				}
+				else {
+					coder = new Coder(args, new FileOutputStream(archive.toFile()));
+				}
+				if(showProgress) {
+					coder.setProgressListener(new ConsoleProgress(System.err), ConsoleProgress.INTERVAL);
+				}
 				if(!coder.pack()) {
 					System.err.println(coder.getErrorMessage());
 				}
+				return;
 			}
-			else {// unpack mode
-				Decoder decoder = new Decoder(System.in);
-				if(!decoder.unpack()) {
-					System.err.println(decoder.getErrorMessage());
-				}
+			
+			// unpack, verify or list mode
+			Decoder decoder = new Decoder(System.in);
+			includes.forEach(decoder::addInclude);
+			excludes.forEach(decoder::addExclude);
+			if(showProgress && !list) {
+				decoder.setProgressListener(new ConsoleProgress(System.err), ConsoleProgress.INTERVAL);
 			}
-		} catch (IOException e) {
+			boolean result = list ? decoder.list(Archiver::print) : verify ? decoder.verify() : decoder.unpack();
+			if(!result) {
+				System.err.println(decoder.getErrorMessage());
+			}
+		} catch (IOException | IllegalArgumentException e) {
 			System.err.println(e.getMessage());
 		}
 	}
+	
+	/**
+	 * Prints the size and the name of the path into the standard output stream
+	 * @param header header of the path
+	 */
+	private static void print(PathHeader header) {
+		if(header.isRegularFile()) {
+			System.out.printf("%15d %s%n", header.getSizeOfFile(), header.getPathName());
+		}
+		else {
+			System.out.printf("%15s %s%n", "<DIR>", header.getPathName());
+		}
+	}
 }
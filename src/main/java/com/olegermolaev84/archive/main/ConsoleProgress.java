@@ -0,0 +1,55 @@
+package com.olegermolaev84.archive.main;
+
+import java.io.PrintStream;
+
+import com.olegermolaev84.archive.core.Progress;
+import com.olegermolaev84.archive.core.ProgressListener;
+
+/**
+ * Prints the progress into one line of the console
+ */
+class ConsoleProgress implements ProgressListener {
+	/** Interval of the reports in milliseconds */
+	static final long INTERVAL = 500;
+	
+	/** Stream the progress is printed to */
+	private final PrintStream out;
+	
+	/**
+	 * Constructor
+	 * @param out Stream the progress is printed to
+	 */
+	ConsoleProgress(PrintStream out) {
+		this.out = out;
+	}
+	
+	@Override
+	public void progress(Progress progress) {
+		StringBuilder line = new StringBuilder("\r");
+		if(progress.isTotalKnown()) {
+			line.append(String.format("%5.1f%% ", progress.getPercent()));
+		}
+		line.append(progress.getProcessedEntries()).append('/').append(progress.getTotalEntries()).append(" entries, ")
+			.append(megabytes(progress.getProcessedBytes())).append('/').append(megabytes(progress.getTotalBytes()))
+			.append(" MB, ").append(megabytes((long)progress.getBytesPerSecond())).append(" MB/s");
+		long secondsLeft = progress.getEstimatedSecondsLeft();
+		if(secondsLeft >= 0 && !progress.isFinished()) {
+			line.append(String.format(", ETA %d:%02d:%02d", secondsLeft / 3600, secondsLeft / 60 % 60, secondsLeft % 60));
+		}
+		line.append("   ");
+		if(progress.isFinished()) {
+			line.append('\n');
+		}
+		out.print(line);
+		out.flush();
+	}
+	
+	/**
+	 * Formats the number of bytes in megabytes
+	 * @param bytes number of bytes
+	 * @return number of megabytes with one decimal digit
+	 */
+	private static String megabytes(long bytes) {
+		return String.format("%.1f", bytes / (1024.0 * 1024.0));
+	}
+}
@@ -0,0 +1,48 @@
+package com.olegermolaev84.archive.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of the whole packing or unpacking. Total times of the stages show 
+ * whether the run is bound by I/O or by processors.
+ */
+@Name("com.olegermolaev84.archive.Archive")
+@Label("Archive")
+@Category("Archiver")
+@Description("Packing or unpacking of the archive")
+class ArchiveEvent extends jdk.jfr.Event {
+	@Label("Operation")
+	String operation;
+	
+	@Label("Entries")
+	long entries;
+	
+	@Label("Bytes In")
+	@DataAmount
+	long bytesIn;
+	
+	@Label("Bytes Out")
+	@DataAmount
+	long bytesOut;
+	
+	@Label("Read Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long readTime;
+	
+	@Label("Compress Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long compressTime;
+	
+	@Label("Write Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long writeTime;
+	
+	@Label("Decompress Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long decompressTime;
+}
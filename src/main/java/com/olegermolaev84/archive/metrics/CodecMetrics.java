@@ -0,0 +1,320 @@
+package com.olegermolaev84.archive.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of packing or unpacking. The counters are striped, so the threads
+ * do not contend while updating them. The metrics are exposed through JMX while the
+ * run is in progress and are recorded as JFR events.
+ */
+public class CodecMetrics implements CodecMetricsMXBean {
+	/** Domain of the names of the MBeans */
+	public static final String DOMAIN = "com.olegermolaev84.archive";
+
+	/** Number of the buckets of the latency histograms */
+	private static final int NUMBER_OF_BUCKETS = 40;
+
+	/** Identifiers of the registered MBeans */
+	private static final AtomicLong ids = new AtomicLong();
+
+	/**
+	 * Latency statistics of one stage
+	 */
+	private static class StageRecorder {
+		/** Number of the measured operations */
+		private final LongAdder count = new LongAdder();
+		
+		/** Number of bytes processed by the operations */
+		private final LongAdder bytes = new LongAdder();
+		
+		/** Total time of the operations in nanoseconds */
+		private final LongAdder totalNanos = new LongAdder();
+		
+		/** Maximal time of an operation in nanoseconds */
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		
+		/** Numbers of operations by buckets of latency */
+		private final LongAdder[] histogram = new LongAdder[NUMBER_OF_BUCKETS];
+
+		private StageRecorder() {
+			for(int i = 0; i < histogram.length; i++) {
+				histogram[i] = new LongAdder();
+			}
+		}
+
+		/**
+		 * Records the operation
+		 * @param nanos time of the operation in nanoseconds
+		 * @param bytes number of bytes processed by the operation
+		 */
+		private void record(long nanos, long bytes) {
+			count.increment();
+			this.bytes.add(bytes);
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+			long micros = nanos / 1000;
+			int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+			histogram[Math.min(bucket, histogram.length - 1)].increment();
+		}
+
+		/**
+		 * Returns the snapshot of the statistics
+		 * @return snapshot of the statistics
+		 */
+		private StageStatistics snapshot() {
+			long[] buckets = new long[histogram.length];
+			for(int i = 0; i < buckets.length; i++) {
+				buckets[i] = histogram[i].sum();
+			}
+			return new StageStatistics(count.sum(), bytes.sum(), totalNanos.sum(), maxNanos.get(), buckets);
+		}
+	}
+
+	/** Number of the uncompressed bytes read by Coder or the compressed bytes read by Decoder */
+	private final LongAdder bytesIn = new LongAdder();
+
+	/** Number of the bytes written into the archive by Coder or into the files by Decoder */
+	private final LongAdder bytesOut = new LongAdder();
+
+	/** Number of the completed entries */
+	private final LongAdder entries = new LongAdder();
+
+	/** Number of the tasks which are submitted but not completed yet */
+	private final AtomicInteger tasksInFlight = new AtomicInteger();
+
+	/** Statistics of the stages */
+	private final Map<Stage, StageRecorder> stages = new EnumMap<>(Stage.class);
+
+	/** Number of the tasks waiting in the queue of the executor of compression */
+	private final IntSupplier compressionQueueDepth;
+
+	/** Number of the tasks waiting in the queue of the I/O executor */
+	private final IntSupplier ioQueueDepth;
+
+	/** Time of the start in nanoseconds */
+	private volatile long startNanos = System.nanoTime();
+
+	/** Name of the registered MBean. <code>null</code> if the MBean is not registered */
+	private ObjectName name;
+
+	/** JFR event of the run. <code>null</code> if the run is not started */
+	private ArchiveEvent event;
+
+	/**
+	 * Constructor of the metrics without executors
+	 */
+	public CodecMetrics() {
+		this(()->0, ()->0);
+	}
+
+	/**
+	 * Constructor
+	 * @param compressionQueueDepth Number of the tasks waiting in the queue of the executor of compression
+	 * @param ioQueueDepth Number of the tasks waiting in the queue of the I/O executor
+	 */
+	public CodecMetrics(IntSupplier compressionQueueDepth, IntSupplier ioQueueDepth) {
+		this.compressionQueueDepth = compressionQueueDepth;
+		this.ioQueueDepth = ioQueueDepth;
+		for(Stage stage : Stage.values()) {
+			stages.put(stage, new StageRecorder());
+		}
+	}
+
+	/**
+	 * Starts the run: registers the MBean and begins the JFR event.
+	 * The MBean is not registered if the platform MBean server is not available.
+	 * @param operation name of the operation, it is used as type of the MBean
+	 */
+	public synchronized void start(String operation) {
+		startNanos = System.nanoTime();
+		event = new ArchiveEvent();
+		event.operation = operation;
+		event.begin();
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			name = new ObjectName(DOMAIN + ":type=" + operation + ",id=" + ids.incrementAndGet());
+			server.registerMBean(this, name);
+		} catch (JMException | SecurityException e) {
+			Logger.getGlobal().info(()->"Metrics are not registered: " + e);
+			name = null;
+		}
+	}
+
+	/**
+	 * Finishes the run: unregisters the MBean and commits the JFR event.
+	 * Nothing is done if the run is not started.
+	 */
+	public synchronized void finish() {
+		if(event != null) {
+			event.end();
+			if(event.shouldCommit()) {
+				event.entries = entries.sum();
+				event.bytesIn = bytesIn.sum();
+				event.bytesOut = bytesOut.sum();
+				event.readTime = stages.get(Stage.READ).totalNanos.sum();
+				event.compressTime = stages.get(Stage.COMPRESS).totalNanos.sum();
+				event.writeTime = stages.get(Stage.WRITE).totalNanos.sum();
+				event.decompressTime = stages.get(Stage.DECOMPRESS).totalNanos.sum();
+				event.commit();
+			}
+			event = null;
+		}
+
+		if(name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			} catch (JMException e) {
+				Logger.getGlobal().info(()->"Metrics are not unregistered: " + e);
+			}
+			name = null;
+		}
+	}
+
+	/**
+	 * Returns the time the operation of the stage is started at.
+	 * The result is passed to <code>record</code> when the operation is completed.
+	 * @return current time in nanoseconds
+	 */
+	public long startTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the completed operation of the stage
+	 * @param stage stage of the operation
+	 * @param startTime time the operation is started at, returned by <code>startTime</code>
+	 * @param bytes number of bytes processed by the operation
+	 */
+	public void record(Stage stage, long startTime, long bytes) {
+		long nanos = System.nanoTime() - startTime;
+		stages.get(stage).record(nanos, bytes);
+
+		StageEvent event = new StageEvent();
+		if(event.isEnabled()) {
+			event.stage = stage.name();
+			event.bytes = bytes;
+			event.time = nanos;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Adds the number of read bytes
+	 * @param bytes number of bytes
+	 */
+	public void addBytesIn(long bytes) {
+		bytesIn.add(bytes);
+	}
+
+	/**
+	 * Adds the number of written bytes
+	 * @param bytes number of bytes
+	 */
+	public void addBytesOut(long bytes) {
+		bytesOut.add(bytes);
+	}
+
+	/**
+	 * Counts the packed or unpacked entry
+	 */
+	public void addEntry() {
+		entries.increment();
+	}
+
+	/**
+	 * Counts the submitted task
+	 */
+	public void taskSubmitted() {
+		tasksInFlight.incrementAndGet();
+	}
+
+	/**
+	 * Counts the completed task
+	 */
+	public void taskCompleted() {
+		tasksInFlight.decrementAndGet();
+	}
+
+	@Override
+	public long getBytesIn() {
+		return bytesIn.sum();
+	}
+
+	@Override
+	public long getBytesOut() {
+		return bytesOut.sum();
+	}
+
+	@Override
+	public long getEntries() {
+		return entries.sum();
+	}
+
+	@Override
+	public double getEntriesPerSecond() {
+		return perSecond(entries.sum());
+	}
+
+	@Override
+	public double getBytesInPerSecond() {
+		return perSecond(bytesIn.sum());
+	}
+
+	@Override
+	public int getTasksInFlight() {
+		return tasksInFlight.get();
+	}
+
+	@Override
+	public int getCompressionQueueDepth() {
+		return compressionQueueDepth.getAsInt();
+	}
+
+	@Override
+	public int getIoQueueDepth() {
+		return ioQueueDepth.getAsInt();
+	}
+
+	@Override
+	public StageStatistics getReadStatistics() {
+		return stages.get(Stage.READ).snapshot();
+	}
+
+	@Override
+	public StageStatistics getCompressStatistics() {
+		return stages.get(Stage.COMPRESS).snapshot();
+	}
+
+	@Override
+	public StageStatistics getWriteStatistics() {
+		return stages.get(Stage.WRITE).snapshot();
+	}
+
+	@Override
+	public StageStatistics getDecompressStatistics() {
+		return stages.get(Stage.DECOMPRESS).snapshot();
+	}
+
+	/**
+	 * Returns the rate of the value since the start
+	 * @param value value to be divided by the elapsed time
+	 * @return value per second
+	 */
+	private double perSecond(long value) {
+		long elapsed = System.nanoTime() - startNanos;
+		return elapsed <= 0 ? 0 : value * 1e9 / elapsed;
+	}
+}
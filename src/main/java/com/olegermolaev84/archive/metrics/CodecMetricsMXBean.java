@@ -0,0 +1,78 @@
+package com.olegermolaev84.archive.metrics;
+
+/**
+ * Management interface of the metrics of packing or unpacking
+ */
+public interface CodecMetricsMXBean {
+	/**
+	 * Returns the number of bytes read
+	 * @return number of bytes read: uncompressed data of files by Coder or compressed data by Decoder
+	 */
+	long getBytesIn();
+	
+	/**
+	 * Returns the number of bytes written
+	 * @return number of bytes written: compressed data by Coder or uncompressed data of files by Decoder
+	 */
+	long getBytesOut();
+	
+	/**
+	 * Returns the number of the entries of the archive which are packed or unpacked
+	 * @return number of the entries of the archive which are packed or unpacked
+	 */
+	long getEntries();
+	
+	/**
+	 * Returns the number of the entries per second since the start
+	 * @return number of the entries per second since the start
+	 */
+	double getEntriesPerSecond();
+	
+	/**
+	 * Returns the number of the bytes read per second since the start
+	 * @return number of the bytes read per second since the start
+	 */
+	double getBytesInPerSecond();
+	
+	/**
+	 * Returns the number of the tasks which are submitted but not completed yet
+	 * @return number of the tasks which are submitted but not completed yet
+	 */
+	int getTasksInFlight();
+	
+	/**
+	 * Returns the number of the tasks waiting in the queue of the executor of compression
+	 * @return number of the tasks waiting in the queue of the executor of compression
+	 */
+	int getCompressionQueueDepth();
+	
+	/**
+	 * Returns the number of the tasks waiting in the queue of the I/O executor
+	 * @return number of the tasks waiting in the queue of the I/O executor
+	 */
+	int getIoQueueDepth();
+	
+	/**
+	 * Returns the statistics of reading
+	 * @return statistics of reading
+	 */
+	StageStatistics getReadStatistics();
+	
+	/**
+	 * Returns the statistics of compression
+	 * @return statistics of compression
+	 */
+	StageStatistics getCompressStatistics();
+	
+	/**
+	 * Returns the statistics of writing
+	 * @return statistics of writing
+	 */
+	StageStatistics getWriteStatistics();
+	
+	/**
+	 * Returns the statistics of decompression
+	 * @return statistics of decompression
+	 */
+	StageStatistics getDecompressStatistics();
+}
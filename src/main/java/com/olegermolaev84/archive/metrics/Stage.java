@@ -0,0 +1,15 @@
+package com.olegermolaev84.archive.metrics;
+
+/**
+ * Stages of packing and unpacking which are measured
+ */
+public enum Stage {
+	/** Reading of files by Coder or of compressed data of entries by Decoder */
+	READ,
+	/** Compression of data of entries */
+	COMPRESS,
+	/** Writing of entries into the archive by Coder or of unpacked files by Decoder */
+	WRITE,
+	/** Decompression of data of entries */
+	DECOMPRESS
+}
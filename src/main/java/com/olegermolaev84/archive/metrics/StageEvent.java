@@ -0,0 +1,28 @@
+package com.olegermolaev84.archive.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of one operation of the stage
+ */
+@Name("com.olegermolaev84.archive.Stage")
+@Label("Archive Stage")
+@Category("Archiver")
+@Description("Reading, compression, writing or decompression of data of one entry")
+class StageEvent extends jdk.jfr.Event {
+	@Label("Stage")
+	String stage;
+	
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+	
+	@Label("Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long time;
+}
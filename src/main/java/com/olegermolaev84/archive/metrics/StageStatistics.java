@@ -0,0 +1,118 @@
+package com.olegermolaev84.archive.metrics;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Snapshot of the latency statistics of the stage. The histogram has buckets 
+ * by powers of two: bucket <code>i</code> counts operations which took from 
+ * <code>2^(i-1)</code> to <code>2^i</code> microseconds.
+ * <br>JMX exposes the snapshot as CompositeData, MXBean proxies restore it by <code>from</code>.
+ */
+public class StageStatistics {
+	/** Number of the measured operations */
+	private final long count;
+	
+	/** Number of bytes processed by the operations */
+	private final long bytes;
+	
+	/** Total time of the operations in nanoseconds */
+	private final long totalNanos;
+	
+	/** Maximal time of an operation in nanoseconds */
+	private final long maxNanos;
+	
+	/** Numbers of operations by buckets of latency */
+	private final long[] histogram;
+	
+	/**
+	 * Constructor
+	 * @param count Number of the measured operations
+	 * @param bytes Number of bytes processed by the operations
+	 * @param totalNanos Total time of the operations in nanoseconds
+	 * @param maxNanos Maximal time of an operation in nanoseconds
+	 * @param histogram Numbers of operations by buckets of latency
+	 */
+	public StageStatistics(long count, long bytes, long totalNanos, long maxNanos, long[] histogram) {
+		this.count = count;
+		this.bytes = bytes;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.histogram = histogram;
+	}
+	
+	/**
+	 * Restores the snapshot from the CompositeData which JMX exposes it as
+	 * @param data CompositeData with the items of the getters of the snapshot
+	 * @return snapshot of the statistics or <code>null</code> if the data is <code>null</code>
+	 */
+	public static StageStatistics from(CompositeData data) {
+		if(data == null) {
+			return null;
+		}
+		return new StageStatistics((Long)data.get("count"), (Long)data.get("bytes"), (Long)data.get("totalNanos"), 
+				(Long)data.get("maxNanos"), (long[])data.get("histogram"));
+	}
+	
+	/**
+	 * Returns the number of the measured operations
+	 * @return number of the measured operations
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * Returns the number of bytes processed by the operations
+	 * @return number of bytes processed by the operations
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+	
+	/**
+	 * Returns the total time of the operations
+	 * @return total time of the operations in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+	
+	/**
+	 * Returns the maximal time of an operation
+	 * @return maximal time of an operation in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+	
+	/**
+	 * Returns the histogram of latency. The array is copied
+	 * @return numbers of operations by buckets of latency
+	 */
+	public long[] getHistogram() {
+		return histogram.clone();
+	}
+	
+	/**
+	 * Returns the upper bound of the latency which is not exceeded by the denoted part of operations
+	 * @param percentile part of operations from 0 to 100
+	 * @return upper bound of the latency in microseconds, 0 if there are no operations
+	 */
+	public long getPercentileMicros(double percentile) {
+		long rank = (long)Math.ceil(count * percentile / 100);
+		long counted = 0;
+		for(int i = 0; i < histogram.length; i++) {
+			counted += histogram[i];
+			if(counted >= rank && counted > 0) {
+				return 1L << i;
+			}
+		}
+		return 0;
+	}
+	
+	@Override
+	public String toString() {
+		return "StageStatistics(count=" + count + ", bytes=" + bytes + ", totalNanos=" + totalNanos 
+				+ ", maxNanos=" + maxNanos + ")";
+	}
+}
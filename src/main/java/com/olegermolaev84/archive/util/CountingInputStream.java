@@ -0,0 +1,60 @@
+package com.olegermolaev84.archive.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which counts the number of bytes read or skipped through it.
+ *
+ */
+public class CountingInputStream extends FilterInputStream {
+	/** Number of bytes read or skipped */
+	private long count = 0;
+
+	/**
+	 * Constructor
+	 * @param in underlying input stream
+	 */
+	public CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+		if(b >= 0) {
+			count++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = in.read(b, off, len);
+		if(read > 0) {
+			count += read;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(n);
+		count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Returns number of bytes read or skipped through this stream
+	 * @return number of bytes read or skipped
+	 */
+	public long getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,51 @@
+package com.olegermolaev84.archive.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream which counts the number of bytes written through it.
+ *
+ */
+public class CountingOutputStream extends FilterOutputStream {
+	/** Number of bytes written */
+	private long count = 0;
+
+	/**
+	 * Constructor
+	 * @param out underlying output stream
+	 */
+	public CountingOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		count++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		count += len;
+	}
+
+	/**
+	 * Counts the bytes which are written directly into the channel of the underlying stream.
+	 * The stream is to be flushed before such writing.
+	 * @param count number of bytes written around this stream
+	 */
+	public void addCount(long count) {
+		this.count += count;
+	}
+
+	/**
+	 * Returns number of bytes written through this stream
+	 * @return number of bytes written
+	 */
+	public long getCount() {
+		return count;
+	}
+}
@@ -1,18 +1,45 @@
 package com.olegermolaev84.archive.test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import com.olegermolaev84.archive.core.Coder;
+import com.olegermolaev84.archive.core.Progress;
+import com.olegermolaev84.archive.metrics.CodecMetrics;
+import com.olegermolaev84.archive.metrics.CodecMetricsMXBean;
+import com.olegermolaev84.archive.metrics.StageStatistics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 public class CoderTest {
 	
@@ -52,6 +79,30 @@ public class CoderTest {
 		}
 	}
 	
+	@Test
+	public void exceptionOnBlockSizeLessThenMinimal() throws IOException {
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+			new Coder(FILES_NAMES_TO_PACK, fos)
+			.setBlockSize(1024);
+			fail("Exception is not thrown");
+		}
+		catch(IllegalArgumentException e){
+			assertEquals("Block size is out of range (65536-1073741824). Given value: 1024", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void exceptionOnSolidBlockSizeLessThenMinimal() throws IOException {
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+			new Coder(FILES_NAMES_TO_PACK, fos)
+			.setSolidBlockSize(1024);
+			fail("Exception is not thrown");
+		}
+		catch(IllegalArgumentException e){
+			assertEquals("Solid block size is out of range (65536-1073741824). Given value: 1024", e.getMessage());
+		}
+	}
+	
 	@Test
 	public void tryToEncodeNotExistentFile() throws IOException {
 		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
@@ -77,6 +128,278 @@ public class CoderTest {
 		}
 	}
 	
+	@Test
+	public void exceptionOnPositionalWritesIntoStream() throws IOException {
+		try {
+			new Coder(FILES_NAMES_TO_PACK, new ByteArrayOutputStream())
+			.setPositionalWrites(true);
+			fail("Exception is not thrown");
+		}
+		catch(IllegalArgumentException e){
+			assertEquals("Positional writes require the output stream to be FileOutputStream", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void exceptionOnAppendingToArchiveWithoutDirectory() throws IOException {
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+			Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+			coder.setCentralDirectory(false);
+			assertEquals(true, coder.pack());
+		}
+		
+		try {
+			Coder.append(FILES_NAMES_TO_PACK, Paths.get(ARCHIVE_FILE_NAME));
+			fail("Exception is not thrown");
+		}
+		catch(IllegalArgumentException e){
+			assertEquals("Archive: " + Paths.get(ARCHIVE_FILE_NAME) + " does not have the central directory", 
+					e.getMessage());
+		}
+	}
+	
+	@Test
+	public void exceptionOnNotPositiveMaxTasksInFlight() throws IOException {
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+			new Coder(FILES_NAMES_TO_PACK, fos)
+			.setMaxTasksInFlight(0);
+			fail("Exception is not thrown");
+		}
+		catch(IllegalArgumentException e){
+			assertEquals("Maximal number of tasks in flight should be positive. Given value: 0", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void exceptionOnNotPositiveNumberOfThreads() throws IOException {
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+			new Coder(FILES_NAMES_TO_PACK, fos)
+			.setNumberOfThreads(0);
+			fail("Exception is not thrown");
+		}
+		catch(IllegalArgumentException e){
+			assertEquals("Number of threads should be positive. Given value: 0", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void successfulPackingWithSingleTaskInFlight() throws IOException {
+		if(Files.exists(Paths.get(ARCHIVE_FILE_NAME))) {
+			Files.delete(Paths.get(ARCHIVE_FILE_NAME));
+		}
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+			Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+			coder.setMaxTasksInFlight(1);
+			coder.setMaxBytesInFlight(1);
+			boolean result = coder.pack();
+			assertEquals("", coder.getErrorMessage());
+			assertEquals(true, result);
+			assertEquals(true, Files.size(Paths.get(ARCHIVE_FILE_NAME))> 0);
+		}
+	}
+	
+	@Test
+	public void successfulPackingWithMetrics() throws IOException {
+		long sizeOfFiles = 0;
+		for(String pathName : FILES_NAMES_TO_PACK) {
+			try(Stream<Path> paths = Files.walk(Path.of(pathName))){
+				for(Path path : (Iterable<Path>)paths::iterator) {
+					if(Files.isRegularFile(path)) {
+						sizeOfFiles += Files.size(path);
+					}
+				}
+			}
+		}
+		
+		Path recordingFile = Paths.get("./test/archives/recording.jfr");
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME);
+				Recording recording = new Recording()) {
+			recording.enable("com.olegermolaev84.archive.Archive");
+			recording.start();
+			Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+			assertEquals(true, coder.pack());
+			recording.stop();
+			recording.dump(recordingFile);
+			
+			CodecMetrics metrics = coder.getMetrics();
+			assertEquals(sizeOfFiles, metrics.getBytesIn());
+			assertEquals(true, metrics.getBytesOut() > 0);
+			assertEquals(true, metrics.getEntries() > 0);
+			assertEquals(0, metrics.getTasksInFlight());
+			assertEquals(metrics.getReadStatistics().getCount(), metrics.getCompressStatistics().getCount());
+			assertEquals(metrics.getEntries(), metrics.getWriteStatistics().getCount());
+			assertEquals(0, ManagementFactory.getPlatformMBeanServer()
+					.queryNames(new ObjectName(CodecMetrics.DOMAIN + ":*"), null).size());
+			
+			List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile).stream()
+					.filter((event)->event.getEventType().getName().equals("com.olegermolaev84.archive.Archive"))
+					.collect(Collectors.toList());
+			assertEquals(1, events.size());
+			assertEquals("Coder", events.get(0).getString("operation"));
+			assertEquals(sizeOfFiles, events.get(0).getLong("bytesIn"));
+			
+			// the statistics are exposed as CompositeData and restored by the MXBean proxy
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(CodecMetrics.DOMAIN + ":type=Test");
+			server.registerMBean(metrics, name);
+			try {
+				StageStatistics read = JMX.newMXBeanProxy(server, name, CodecMetricsMXBean.class).getReadStatistics();
+				assertEquals(metrics.getReadStatistics().getCount(), read.getCount());
+				assertEquals(metrics.getReadStatistics().getBytes(), read.getBytes());
+				assertArrayEquals(metrics.getReadStatistics().getHistogram(), read.getHistogram());
+			}
+			finally {
+				server.unregisterMBean(name);
+			}
+		}
+		catch(JMException e) {
+			fail(e);
+		}
+		finally {
+			Files.deleteIfExists(recordingFile);
+		}
+	}
+	
+	@Test
+	public void exceptionOnNotPositiveProgressInterval() throws IOException {
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+			new Coder(FILES_NAMES_TO_PACK, fos)
+			.setProgressListener((progress)->{}, 0);
+			fail("Exception is not thrown");
+		}
+		catch(IllegalArgumentException e){
+			assertEquals("Interval of progress reports should be positive. Given value: 0", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void successfulPackingWithProgress() throws IOException {
+		List<Progress> reports = new CopyOnWriteArrayList<>();
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+			Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+			coder.setProgressListener(reports::add, 1);
+			assertEquals(true, coder.pack());
+		}
+		
+		Progress last = reports.get(reports.size() - 1);
+		assertEquals(true, last.isFinished());
+		assertEquals(true, last.isTotalKnown());
+		assertEquals(true, last.getTotalEntries() > 0);
+		assertEquals(last.getTotalEntries(), last.getProcessedEntries());
+		assertEquals(last.getTotalBytes(), last.getProcessedBytes());
+		assertEquals(100.0, last.getPercent());
+		assertEquals(1, reports.stream().filter(Progress::isFinished).count());
+	}
+	
+	@Test
+	public void successfulPackingOfDeepAndWideTree() throws IOException {
+		Path root = Paths.get("./test/archives/tree");
+		int depth = 64;
+		int width = 500;
+		try {
+			Path directory = root;
+			for(int i = 0; i < depth; i++) {
+				directory = directory.resolve("d" + i);
+			}
+			Files.createDirectories(directory);
+			for(int i = 0; i < width; i++) {
+				Files.write(root.resolve("f" + i + ".txt"), ("file " + i).getBytes());
+			}
+			Files.write(directory.resolve("leaf.txt"), "leaf".getBytes());
+			
+			Progress last = packWithProgress(root);
+			assertEquals(true, last.isFinished());
+			// the root, the nested directories, the wide level and the leaf
+			assertEquals(1 + depth + width + 1, last.getTotalEntries());
+			assertEquals(last.getTotalEntries(), last.getProcessedEntries());
+		}
+		finally {
+			deleteTree(root);
+		}
+	}
+	
+	@Test
+	public void unsuccessfulPackingOfUnreadableFile() throws IOException {
+		Path root = Paths.get("./test/archives/unreadable");
+		Path file = root.resolve("secret.txt");
+		try {
+			Files.createDirectories(root);
+			Files.write(root.resolve("open.txt"), "open".getBytes());
+			Files.write(file, "secret".getBytes());
+			Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("---------"));
+			// the superuser reads any file
+			assumeFalse(Files.isReadable(file));
+			
+			try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+				Coder coder = new Coder(new String[] {root.toString()}, fos);
+				List<Progress> reports = new CopyOnWriteArrayList<>();
+				coder.setProgressListener(reports::add, 1);
+				assertEquals(false, coder.pack());
+				assertEquals(true, coder.getErrorMessage().contains("File: " + file + " does not have read permissions"));
+				// the unreadable file is not counted, the walk goes on
+				assertEquals(2, reports.get(reports.size() - 1).getTotalEntries());
+			}
+		}
+		finally {
+			if(Files.exists(file)) {
+				Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+			}
+			deleteTree(root);
+		}
+	}
+	
+	@Test
+	public void successfulPackingOfSymbolicLinkLoop() throws IOException {
+		Path root = Paths.get("./test/archives/loop");
+		try {
+			Files.createDirectories(root.resolve("dir"));
+			Files.write(root.resolve("dir/file.txt"), "file".getBytes());
+			Files.createSymbolicLink(root.resolve("dir/loop"), Paths.get(".."));
+			
+			Progress last = assertTimeoutPreemptively(Duration.ofSeconds(60), ()->packWithProgress(root));
+			assertEquals(true, last.isFinished());
+			// the link is not followed: root, dir, file and the link itself
+			assertEquals(4, last.getTotalEntries());
+		}
+		finally {
+			deleteTree(root);
+		}
+	}
+	
+	/**
+	 * Packs the tree into the archive file and returns the final progress report
+	 * @param root root of the tree
+	 * @return final progress report
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private static Progress packWithProgress(Path root) throws IOException {
+		List<Progress> reports = new CopyOnWriteArrayList<>();
+		try(FileOutputStream fos = new FileOutputStream(ARCHIVE_FILE_NAME)) {
+			Coder coder = new Coder(new String[] {root.toString()}, fos);
+			coder.setProgressListener(reports::add, 1);
+			boolean result = coder.pack();
+			assertEquals("", coder.getErrorMessage());
+			assertEquals(true, result);
+		}
+		return reports.get(reports.size() - 1);
+	}
+	
+	/**
+	 * Deletes the tree, the symbolic links are not followed
+	 * @param root root of the tree
+	 * @throws IOException will be thrown in case of IO errors
+	 */
+	private static void deleteTree(Path root) throws IOException {
+		if(!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+			return;
+		}
+		try(Stream<Path> paths = Files.walk(root)) {
+			for(Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+	
 	@AfterAll
 	public static void removeArchive() throws IOException {
 		if(Files.exists(Paths.get(ARCHIVE_FILE_NAME))) {
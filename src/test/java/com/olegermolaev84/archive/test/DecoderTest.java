@@ -1,31 +1,48 @@
 package com.olegermolaev84.archive.test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import com.olegermolaev84.archive.compression.CompressionMethod;
+import com.olegermolaev84.archive.compression.CompressionMethods;
+import com.olegermolaev84.archive.core.Codec;
 import com.olegermolaev84.archive.core.Coder;
 import com.olegermolaev84.archive.core.Decoder;
+import com.olegermolaev84.archive.core.PathHeader;
+import com.olegermolaev84.archive.core.Progress;
 
 public class DecoderTest {
 	private final static String ARCHIVE_FILE_NAME = "./test/archives/archive";
@@ -110,6 +127,713 @@ public class DecoderTest {
 		cleanOutputFolder();
 	}
 	
+	@Test
+	public void successfulUnpackingWithSingleTaskInFlight() throws IOException {
+		try(FileInputStream is = new FileInputStream(ARCHIVE_FILE_NAME)) {
+			Decoder decoder = new Decoder(is);
+			decoder.setParentPath(PARRENT_PATH);
+			decoder.setMaxTasksInFlight(1);
+			decoder.setMaxBytesInFlight(1);
+			boolean result = decoder.unpack();
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			for(String pathName : FILES_NAMES_TO_PACK) {
+				try(Stream<Path> paths = Files.walk(Path.of(pathName))){
+					for(Path path : (Iterable<Path>)paths::iterator) {
+						if(Files.isRegularFile(path)) {
+							assertArrayEquals(Files.readAllBytes(path), Files.readAllBytes(PARRENT_PATH.resolve(path)));
+						}
+					}
+				}
+			}
+		}
+		finally {
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingWithSeparateExecutors() throws IOException {
+		Path archive = Paths.get("./test/archives/executors");
+		try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+			Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+			coder.setNumberOfThreads(1);
+			coder.setNumberOfIoThreads(1);
+			assertEquals(true, coder.pack());
+		}
+		
+		try(FileInputStream is = new FileInputStream(archive.toFile())) {
+			Decoder decoder = new Decoder(is);
+			decoder.setParentPath(PARRENT_PATH);
+			decoder.setNumberOfThreads(1);
+			if(Codec.isVirtualThreadsSupported()) {
+				decoder.setVirtualIoThreads();
+			}
+			else {
+				assertThrows(UnsupportedOperationException.class, ()->decoder.setVirtualIoThreads());
+				decoder.setNumberOfIoThreads(1);
+			}
+			boolean result = decoder.unpack();
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			for(String pathName : FILES_NAMES_TO_PACK) {
+				try(Stream<Path> paths = Files.walk(Path.of(pathName))){
+					for(Path path : (Iterable<Path>)paths::iterator) {
+						if(Files.isRegularFile(path)) {
+							assertArrayEquals(Files.readAllBytes(path), Files.readAllBytes(PARRENT_PATH.resolve(path)));
+						}
+					}
+				}
+			}
+		}
+		finally {
+			Files.deleteIfExists(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfFileSplitIntoBlocks() throws IOException {
+		Path source = Paths.get("./test/archives/blocks.bin");
+		Path archive = Paths.get("./test/archives/blocks");
+		byte[] content = new byte[5 * Coder.MIN_BLOCK_SIZE + 123];
+		Random random = new Random(1);
+		for(int i = 0; i < content.length; i++) {
+			content[i] = (byte)('a' + random.nextInt(4));
+		}
+		Files.write(source, content);
+		
+		try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+			Coder coder = new Coder(new String[] {source.toString()}, fos);
+			coder.setBlockSize(Coder.MIN_BLOCK_SIZE);
+			assertEquals(true, coder.pack());
+		}
+		
+		try(FileInputStream is = new FileInputStream(archive.toFile())) {
+			Decoder decoder = new Decoder(is);
+			decoder.setParentPath(PARRENT_PATH);
+			boolean result = decoder.unpack();
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			assertArrayEquals(content, Files.readAllBytes(PARRENT_PATH.resolve(source)));
+		}
+		finally {
+			Files.delete(source);
+			Files.delete(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfStoredArchive() throws IOException {
+		Path source = Paths.get("./test/archives/stored.bin");
+		Path archive = Paths.get("./test/archives/stored");
+		// the data written at the positions is transferred in chunks of 8 MB
+		byte[] content = new byte[16 * 1024 * 1024 + 45];
+		new Random(5).nextBytes(content);
+		Files.write(source, content);
+		
+		try {
+			for(int i = 0; i < 4; i++) {
+				int blockSize = i % 2 == 0 ? 0 : Coder.MIN_BLOCK_SIZE;
+				boolean positionalWrites = i >= 2;
+				try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+					Coder coder = new Coder(new String[] {source.toString(), "./test/source/files"}, fos);
+					coder.setCompressionLevel(0);
+					coder.setPositionalWrites(positionalWrites);
+					if(blockSize > 0) {
+						coder.setBlockSize(blockSize);
+					}
+					assertEquals(true, coder.pack());
+				}
+				
+				try(FileInputStream is = new FileInputStream(archive.toFile())) {
+					Decoder decoder = new Decoder(is);
+					decoder.setParentPath(PARRENT_PATH);
+					boolean result = decoder.unpack();
+					assertEquals("", decoder.getErrorMessage());
+					assertEquals(true, result);
+					assertArrayEquals(content, Files.readAllBytes(PARRENT_PATH.resolve(source)));
+					assertArrayEquals(Files.readAllBytes(Paths.get("./test/source/files/В ресторане.txt")), 
+							Files.readAllBytes(PARRENT_PATH.resolve("test/source/files/В ресторане.txt")));
+				}
+				cleanOutputFolder();
+				
+				Decoder decoder = new Decoder(archive);
+				decoder.setParentPath(PARRENT_PATH);
+				boolean result = decoder.unpack(source.normalize().toString());
+				assertEquals("", decoder.getErrorMessage());
+				assertEquals(true, result);
+				assertArrayEquals(content, Files.readAllBytes(PARRENT_PATH.resolve(source)));
+				cleanOutputFolder();
+				
+				decoder = new Decoder(archive);
+				result = decoder.verify();
+				assertEquals("", decoder.getErrorMessage());
+				assertEquals(true, result);
+			}
+		}
+		finally {
+			Files.delete(source);
+			Files.deleteIfExists(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfArchiveWrittenAtPositions() throws IOException {
+		Path archive = Paths.get("./test/archives/positional");
+		Path streamed = Paths.get("./test/archives/streamed");
+		try {
+			for(boolean solidMode : new boolean[] {false, true}) {
+				for(Path path : new Path[] {archive, streamed}) {
+					try(FileOutputStream fos = new FileOutputStream(path.toFile())) {
+						fos.write(new byte[17]);
+						Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+						coder.setPositionalWrites(path == archive);
+						coder.setSolidMode(solidMode);
+						coder.setDeduplication(true);
+						coder.setBlockSize(Coder.MIN_BLOCK_SIZE);
+						assertEquals(true, coder.pack());
+					}
+				}
+				
+				for(Path path : new Path[] {archive, streamed}) {
+					try(FileInputStream is = new FileInputStream(path.toFile())) {
+						is.skipNBytes(17);
+						Decoder decoder = new Decoder(is);
+						decoder.setParentPath(PARRENT_PATH);
+						boolean result = decoder.unpack();
+						assertEquals("", decoder.getErrorMessage());
+						assertEquals(true, result);
+						assertArrayEquals(Files.readAllBytes(Paths.get("./test/source/file.txt")), 
+								Files.readAllBytes(PARRENT_PATH.resolve("test/source/file.txt")));
+					}
+					cleanOutputFolder();
+				}
+			}
+		}
+		finally {
+			Files.deleteIfExists(archive);
+			Files.deleteIfExists(streamed);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfArchiveWrittenInAppendMode() throws IOException {
+		Path archive = Paths.get("./test/archives/appendMode");
+		byte[] prefix = "prefix of the file".getBytes(StandardCharsets.UTF_8);
+		Files.write(archive, prefix);
+		try {
+			try(FileOutputStream fos = new FileOutputStream(archive.toFile(), true)) {
+				Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+				coder.setBlockSize(Coder.MIN_BLOCK_SIZE);
+				assertEquals(true, coder.pack());
+			}
+			
+			try(FileInputStream is = new FileInputStream(archive.toFile())) {
+				assertArrayEquals(prefix, is.readNBytes(prefix.length));
+				Decoder decoder = new Decoder(is);
+				decoder.setParentPath(PARRENT_PATH);
+				boolean result = decoder.unpack();
+				assertEquals("", decoder.getErrorMessage());
+				assertEquals(true, result);
+				assertArrayEquals(Files.readAllBytes(Paths.get("./test/source/file.txt")), 
+						Files.readAllBytes(PARRENT_PATH.resolve("test/source/file.txt")));
+				assertArrayEquals(Files.readAllBytes(Paths.get("./test/source/files/В ресторане.txt")), 
+						Files.readAllBytes(PARRENT_PATH.resolve("test/source/files/В ресторане.txt")));
+			}
+		}
+		finally {
+			Files.deleteIfExists(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulReadingOfDirectoryOfArchiveAfterPrefix() throws IOException {
+		Path archive = Paths.get("./test/archives/afterPrefix");
+		byte[] prefix = new byte[1000];
+		Files.write(archive, prefix);
+		try {
+			try(FileOutputStream fos = new FileOutputStream(archive.toFile(), true)) {
+				assertEquals(true, new Coder(FILES_NAMES_TO_PACK, fos).pack());
+			}
+			
+			try(FileInputStream is = new FileInputStream(archive.toFile())) {
+				assertEquals(prefix.length, is.skip(prefix.length));
+				Decoder decoder = new Decoder(is);
+				List<String> listed = new ArrayList<>();
+				boolean result = decoder.list((header)->listed.add(header.getPathName()));
+				assertEquals("", decoder.getErrorMessage());
+				assertEquals(true, result);
+				assertEquals(true, listed.contains("test/source/file.txt"));
+			}
+			
+			try(FileInputStream is = new FileInputStream(archive.toFile())) {
+				assertEquals(prefix.length, is.skip(prefix.length));
+				Decoder decoder = new Decoder(is);
+				decoder.setParentPath(PARRENT_PATH);
+				boolean result = decoder.unpack("test/source/file.txt", "test/source/files");
+				assertEquals("", decoder.getErrorMessage());
+				assertEquals(true, result);
+				assertArrayEquals(Files.readAllBytes(Paths.get("./test/source/file.txt")), 
+						Files.readAllBytes(PARRENT_PATH.resolve("test/source/file.txt")));
+				assertArrayEquals(Files.readAllBytes(Paths.get("./test/source/files/В ресторане.txt")), 
+						Files.readAllBytes(PARRENT_PATH.resolve("test/source/files/В ресторане.txt")));
+				assertEquals(false, Files.exists(PARRENT_PATH.resolve("test/source/images")));
+			}
+		}
+		finally {
+			Files.deleteIfExists(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfLargeFile() throws IOException {
+		Path source = Paths.get("./test/archives/large.bin");
+		Path archive = Paths.get("./test/archives/large");
+		byte[] content = new byte[3 * 1024 * 1024 + 17];
+		Random random = new Random(3);
+		for(int i = 0; i < content.length; i++) {
+			content[i] = (byte)('a' + random.nextInt(8));
+		}
+		Files.write(source, content);
+		
+		try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+			assertEquals(true, new Coder(new String[] {source.toString()}, fos).pack());
+		}
+		
+		try(FileInputStream is = new FileInputStream(archive.toFile())) {
+			Decoder decoder = new Decoder(is);
+			decoder.setParentPath(PARRENT_PATH);
+			boolean result = decoder.unpack();
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			assertArrayEquals(content, Files.readAllBytes(PARRENT_PATH.resolve(source)));
+		}
+		finally {
+			Files.delete(source);
+			Files.delete(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfDenotedEntries() throws IOException {
+		Decoder decoder = new Decoder(Paths.get(ARCHIVE_FILE_NAME));
+		decoder.setParentPath(PARRENT_PATH);
+		boolean result = decoder.unpack("test/source/files");
+		assertEquals("", decoder.getErrorMessage());
+		assertEquals(true, result);
+		assertEquals(true, Files.exists(PARRENT_PATH.resolve("test/source/files/empty.txt")));
+		assertEquals(Files.size(Paths.get("./test/source/files/В ресторане.txt")), 
+				Files.size(PARRENT_PATH.resolve("test/source/files/В ресторане.txt")));
+		assertEquals(false, Files.exists(PARRENT_PATH.resolve("test/source/file.txt")));
+		assertEquals(false, Files.exists(PARRENT_PATH.resolve("test/source/images")));
+		cleanOutputFolder();
+	}
+	
+	@Test
+	public void successfulUnpackingOfSolidArchive() throws IOException {
+		Path archive = Paths.get("./test/archives/solid");
+		try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+			Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+			coder.setSolidMode(true);
+			assertEquals(true, coder.pack());
+		}
+		
+		try(FileInputStream is = new FileInputStream(archive.toFile())) {
+			Decoder decoder = new Decoder(is);
+			decoder.setParentPath(PARRENT_PATH);
+			boolean result = decoder.unpack();
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			for(String pathName : FILES_NAMES_TO_PACK) {
+				try(Stream<Path> paths = Files.walk(Path.of(pathName))){
+					for(Path path : (Iterable<Path>)paths::iterator) {
+						Path outputPath = PARRENT_PATH.resolve(path);
+						assertEquals(true, Files.exists(outputPath));
+						assertEquals(Files.size(path), Files.size(outputPath));
+					}
+				}
+			}
+		}
+		cleanOutputFolder();
+		
+		Decoder decoder = new Decoder(archive);
+		decoder.setParentPath(PARRENT_PATH);
+		boolean result = decoder.unpack("test/source/file.txt");
+		assertEquals("", decoder.getErrorMessage());
+		assertEquals(true, result);
+		assertArrayEquals(Files.readAllBytes(Paths.get("./test/source/file.txt")), 
+				Files.readAllBytes(PARRENT_PATH.resolve("test/source/file.txt")));
+		assertEquals(false, Files.exists(PARRENT_PATH.resolve("test/source/files")));
+		
+		Files.delete(archive);
+		cleanOutputFolder();
+	}
+	
+	@Test
+	public void successfulUnpackingOfArchiveWithDictionary() throws IOException {
+		Path source = Paths.get("./test/archives/configs");
+		Path archive = Paths.get("./test/archives/dictionary");
+		Path plainArchive = Paths.get("./test/archives/plain");
+		Files.createDirectories(source);
+		for(int i = 0; i < 50; i++) {
+			Files.writeString(source.resolve("config" + i + ".json"), 
+					"{\"name\": \"service-" + i + "\", \"enabled\": " + (i % 2 == 0) + 
+					", \"endpoint\": \"https://example.com/api/v1/services/" + i + "\"" +
+					", \"timeoutMillis\": " + (i * 100) + ", \"retries\": 3, \"description\": " +
+					"\"Configuration of the service which is used by the tests\"}\n");
+		}
+		
+		try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+			Coder coder = new Coder(new String[] {source.toString()}, fos);
+			coder.setDictionaryTraining(true);
+			assertEquals(true, coder.pack());
+		}
+		try(FileOutputStream fos = new FileOutputStream(plainArchive.toFile())) {
+			assertEquals(true, new Coder(new String[] {source.toString()}, fos).pack());
+		}
+		
+		try(FileInputStream is = new FileInputStream(archive.toFile())) {
+			assertEquals(true, Files.size(archive) < Files.size(plainArchive));
+			
+			Decoder decoder = new Decoder(is);
+			decoder.setParentPath(PARRENT_PATH);
+			boolean result = decoder.unpack();
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			for(int i = 0; i < 50; i++) {
+				Path path = source.resolve("config" + i + ".json");
+				assertArrayEquals(Files.readAllBytes(path), Files.readAllBytes(PARRENT_PATH.resolve(path)));
+			}
+			cleanOutputFolder();
+			
+			decoder = new Decoder(archive);
+			decoder.setParentPath(PARRENT_PATH);
+			result = decoder.unpack("test/archives/configs/config7.json");
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			assertArrayEquals(Files.readAllBytes(source.resolve("config7.json")), 
+					Files.readAllBytes(PARRENT_PATH.resolve("test/archives/configs/config7.json")));
+		}
+		finally {
+			try(Stream<Path> paths = Files.list(source)) {
+				for(Path path : (Iterable<Path>)paths::iterator) {
+					Files.delete(path);
+				}
+			}
+			Files.delete(source);
+			Files.delete(archive);
+			Files.delete(plainArchive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfArchivesCompressedByEachMethod() throws IOException {
+		Path source = Paths.get("./test/archives/methods.bin");
+		byte[] content = new byte[3 * Coder.MIN_BLOCK_SIZE + 1001];
+		Random random = new Random(2);
+		for(int i = 0; i < content.length; i++) {
+			content[i] = i % 1000 < 700 ? (byte)('a' + random.nextInt(3)) : (byte)random.nextInt();
+		}
+		Files.write(source, content);
+		String[] pathNames = Arrays.copyOf(FILES_NAMES_TO_PACK, FILES_NAMES_TO_PACK.length + 1);
+		pathNames[FILES_NAMES_TO_PACK.length] = source.toString();
+		
+		Path archive = Paths.get("./test/archives/method");
+		try {
+			for(CompressionMethod method : new CompressionMethod[] {CompressionMethods.STORE, CompressionMethods.LZ}) {
+				for(boolean solidMode : new boolean[] {false, true}) {
+					try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+						Coder coder = new Coder(pathNames, fos);
+						coder.setCompressionMethod(method);
+						coder.setSolidMode(solidMode);
+						coder.setDictionaryTraining(true);
+						assertEquals(true, coder.pack());
+					}
+					
+					try(FileInputStream is = new FileInputStream(archive.toFile())) {
+						Decoder decoder = new Decoder(is);
+						decoder.setParentPath(PARRENT_PATH);
+						boolean result = decoder.unpack();
+						assertEquals("", decoder.getErrorMessage());
+						assertEquals(true, result);
+					}
+					for(String pathName : pathNames) {
+						try(Stream<Path> paths = Files.walk(Path.of(pathName))){
+							for(Path path : (Iterable<Path>)paths::iterator) {
+								if(Files.isRegularFile(path)) {
+									assertArrayEquals(Files.readAllBytes(path), 
+											Files.readAllBytes(PARRENT_PATH.resolve(path)), method.getName() + ": " + path);
+								}
+							}
+						}
+					}
+					cleanOutputFolder();
+				}
+			}
+		}
+		finally {
+			Files.delete(source);
+			Files.deleteIfExists(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfArchiveWithClassifiedContent() throws IOException {
+		Path image = Paths.get("./test/source/images/angl_kartochki_guvotnue_7.jpg");
+		Path archive = Paths.get("./test/archives/classified");
+		Path deflatedArchive = Paths.get("./test/archives/deflated");
+		try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+			assertEquals(true, new Coder(FILES_NAMES_TO_PACK, fos).pack());
+		}
+		try(FileOutputStream fos = new FileOutputStream(deflatedArchive.toFile())) {
+			Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+			coder.setContentClassification(false);
+			assertEquals(true, coder.pack());
+		}
+		
+		try(FileInputStream is = new FileInputStream(archive.toFile())) {
+			// the image is stored as is, its data is not deflated
+			assertEquals(true, Files.size(archive) > Files.size(image));
+			assertEquals(true, Files.size(archive) > Files.size(deflatedArchive));
+			
+			Decoder decoder = new Decoder(is);
+			decoder.setParentPath(PARRENT_PATH);
+			boolean result = decoder.unpack();
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			assertArrayEquals(Files.readAllBytes(image), Files.readAllBytes(PARRENT_PATH.resolve(image)));
+			assertArrayEquals(Files.readAllBytes(Paths.get("./test/source/file.txt")), 
+					Files.readAllBytes(PARRENT_PATH.resolve("test/source/file.txt")));
+		}
+		finally {
+			Files.delete(archive);
+			Files.delete(deflatedArchive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfDeduplicatedArchive() throws IOException {
+		Path source = Paths.get("./test/archives/duplicates");
+		Path archive = Paths.get("./test/archives/deduplicated");
+		Files.createDirectories(source);
+		
+		byte[] block = new byte[Coder.MIN_BLOCK_SIZE];
+		new Random(1).nextBytes(block);
+		byte[] content = new byte[3 * Coder.MIN_BLOCK_SIZE + 100];
+		for(int i = 0; i < content.length; i++) {
+			content[i] = block[i % block.length];
+		}
+		Files.write(source.resolve("large.bin"), content);
+		for(int i = 0; i < 3; i++) {
+			Files.write(source.resolve("copy" + i + ".bin"), block);
+		}
+		
+		try {
+			for(boolean positionalWrites : new boolean[] {false, true}) {
+				try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+					Coder coder = new Coder(new String[] {source.toString()}, fos);
+					coder.setBlockSize(Coder.MIN_BLOCK_SIZE);
+					coder.setDeduplication(true);
+					coder.setChunkDeduplication(true);
+					coder.setPositionalWrites(positionalWrites);
+					assertEquals(true, coder.pack());
+					// the directory, the block and the tail of the large file: the duplicates are not compressed
+					assertEquals(3, coder.getMetrics().getCompressStatistics().getCount());
+				}
+				assertEquals(true, Files.size(archive) < 2 * Coder.MIN_BLOCK_SIZE);
+				
+				try(FileInputStream is = new FileInputStream(archive.toFile())) {
+					Decoder decoder = new Decoder(is);
+					decoder.setParentPath(PARRENT_PATH);
+					boolean result = decoder.unpack();
+					assertEquals("", decoder.getErrorMessage());
+					assertEquals(true, result);
+					assertArrayEquals(content, Files.readAllBytes(PARRENT_PATH.resolve(source).resolve("large.bin")));
+					for(int i = 0; i < 3; i++) {
+						assertArrayEquals(block, Files.readAllBytes(PARRENT_PATH.resolve(source).resolve("copy" + i + ".bin")));
+					}
+				}
+				cleanOutputFolder();
+			}
+			
+			// the stream does not give access to the central directory, so the targets are unknown
+			try(ByteArrayInputStream is = new ByteArrayInputStream(Files.readAllBytes(archive))) {
+				Decoder decoder = new Decoder(is);
+				decoder.setParentPath(PARRENT_PATH);
+				boolean result = decoder.unpack();
+				assertEquals("", decoder.getErrorMessage());
+				assertEquals(true, result);
+				for(int i = 0; i < 3; i++) {
+					assertArrayEquals(block, Files.readAllBytes(PARRENT_PATH.resolve(source).resolve("copy" + i + ".bin")));
+				}
+			}
+			cleanOutputFolder();
+			
+			Decoder decoder = new Decoder(archive);
+			decoder.setParentPath(PARRENT_PATH);
+			boolean result = decoder.unpack("test/archives/duplicates/copy2.bin", "test/archives/duplicates/large.bin");
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			assertArrayEquals(block, Files.readAllBytes(PARRENT_PATH.resolve("test/archives/duplicates/copy2.bin")));
+			assertArrayEquals(content, Files.readAllBytes(PARRENT_PATH.resolve("test/archives/duplicates/large.bin")));
+		}
+		finally {
+			try(Stream<Path> paths = Files.list(source)) {
+				for(Path path : (Iterable<Path>)paths::iterator) {
+					Files.delete(path);
+				}
+			}
+			Files.delete(source);
+			Files.delete(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulRestoringFromChainOfIncrementalArchives() throws IOException {
+		Path source = Paths.get("./test/archives/tree");
+		Path[] archives = {Paths.get("./test/archives/full"), 
+				Paths.get("./test/archives/incremental1"), 
+				Paths.get("./test/archives/incremental2")};
+		Files.createDirectories(source);
+		Files.writeString(source.resolve("a.txt"), "unchanged file");
+		Files.writeString(source.resolve("b.txt"), "file to be changed");
+		Files.writeString(source.resolve("c.txt"), "file to be deleted");
+		
+		try {
+			for(int i = 0; i < archives.length; i++) {
+				if(i == 1) {
+					Files.writeString(source.resolve("b.txt"), "changed file");
+					Files.setLastModifiedTime(source.resolve("b.txt"), FileTime.fromMillis(1000));
+					Files.delete(source.resolve("c.txt"));
+					Files.writeString(source.resolve("d.txt"), "new file");
+				}
+				try(FileOutputStream fos = new FileOutputStream(archives[i].toFile())) {
+					Coder coder = new Coder(new String[] {source.toString()}, fos);
+					if(i > 0) {
+						coder.setBaseArchive(archives[i - 1]);
+					}
+					assertEquals(true, coder.pack());
+				}
+			}
+			assertEquals(true, Files.size(archives[2]) < Files.size(archives[0]));
+			
+			Decoder decoder = new Decoder(archives[2]);
+			decoder.setParentPath(PARRENT_PATH);
+			List<Progress> reports = new CopyOnWriteArrayList<>();
+			decoder.setProgressListener(reports::add, 1);
+			boolean result = decoder.restore(archives[0], archives[1]);
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			// the directory is unpacked from the last archive, the files from the preceding ones
+			assertEquals(4, decoder.getMetrics().getEntries());
+			Progress last = reports.get(reports.size() - 1);
+			assertEquals(4, last.getTotalEntries());
+			assertEquals(last.getTotalEntries(), last.getProcessedEntries());
+			assertEquals(last.getTotalBytes(), last.getProcessedBytes());
+			Path output = PARRENT_PATH.resolve(source);
+			assertEquals("unchanged file", Files.readString(output.resolve("a.txt")));
+			assertEquals("changed file", Files.readString(output.resolve("b.txt")));
+			assertEquals(false, Files.exists(output.resolve("c.txt")));
+			assertEquals("new file", Files.readString(output.resolve("d.txt")));
+			cleanOutputFolder();
+			
+			// the base archives are restored with the settings of the decoder
+			decoder = new Decoder(archives[2]);
+			decoder.setParentPath(PARRENT_PATH);
+			decoder.setNumberOfThreads(1);
+			decoder.setNumberOfIoThreads(1);
+			decoder.setMaxTasksInFlight(1);
+			decoder.addExclude("**/b.txt");
+			result = decoder.restore(archives[0], archives[1]);
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			assertEquals(3, decoder.getMetrics().getEntries());
+			assertEquals("unchanged file", Files.readString(output.resolve("a.txt")));
+			assertEquals(false, Files.exists(output.resolve("b.txt")));
+			assertEquals("new file", Files.readString(output.resolve("d.txt")));
+		}
+		finally {
+			try(Stream<Path> paths = Files.list(source)) {
+				for(Path path : (Iterable<Path>)paths::iterator) {
+					Files.delete(path);
+				}
+			}
+			Files.delete(source);
+			for(Path archive : archives) {
+				Files.deleteIfExists(archive);
+			}
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfAppendedArchive() throws IOException {
+		Path archive = Paths.get("./test/archives/appended");
+		try {
+			try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+				Coder coder = new Coder(new String[] {"./test/source/file.txt"}, fos);
+				coder.setDictionaryTraining(true);
+				assertEquals(true, coder.pack());
+			}
+			
+			Coder coder = Coder.append(new String[] {"./test/source/files"}, archive);
+			assertEquals(true, coder.pack());
+			coder = Coder.append(new String[] {"./test/source/images"}, archive);
+			coder.setPositionalWrites(false);
+			assertEquals(true, coder.pack());
+			
+			// failed appending keeps the archive valid
+			coder = Coder.append(new String[] {"not_existent_file"}, archive);
+			assertEquals(false, coder.pack());
+			
+			try(FileInputStream is = new FileInputStream(archive.toFile())) {
+				Decoder decoder = new Decoder(is);
+				decoder.setParentPath(PARRENT_PATH);
+				boolean result = decoder.unpack();
+				assertEquals("", decoder.getErrorMessage());
+				assertEquals(true, result);
+				for(String pathName : FILES_NAMES_TO_PACK) {
+					assertEquals(true, Files.exists(PARRENT_PATH.resolve(pathName)));
+				}
+				assertArrayEquals(Files.readAllBytes(Paths.get("./test/source/files/В ресторане.txt")), 
+						Files.readAllBytes(PARRENT_PATH.resolve("test/source/files/В ресторане.txt")));
+			}
+			cleanOutputFolder();
+			
+			Decoder decoder = new Decoder(archive);
+			decoder.setParentPath(PARRENT_PATH);
+			boolean result = decoder.unpack("test/source/images");
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			assertEquals(true, Files.exists(PARRENT_PATH.resolve("test/source/images")));
+			assertEquals(false, Files.exists(PARRENT_PATH.resolve("test/source/file.txt")));
+		}
+		finally {
+			Files.deleteIfExists(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void errorOnUnpackingOfNotExistentEntry() throws IOException {
+		Decoder decoder = new Decoder(Paths.get(ARCHIVE_FILE_NAME));
+		decoder.setParentPath(PARRENT_PATH);
+		boolean result = decoder.unpack("test/source/not_existent_file");
+		assertEquals(false, result);
+		assertEquals("File: test/source/not_existent_file is not found in the archive\n", decoder.getErrorMessage());
+	}
+	
 	private void cleanOutputFolder() {
 		try (Stream<Path> paths = Files.walk(PARRENT_PATH)) {
 			paths.forEach((path) -> {
@@ -164,19 +888,202 @@ public class DecoderTest {
 	}
 	
 	@Test
-	public void errorOnCorruptedInputStream() throws IOException, ClassNotFoundException {
+	public void successfulListingOfArchive() throws IOException {
+		Map<String, Long> expected = new HashMap<>();
+		for(String pathName : FILES_NAMES_TO_PACK) {
+			try(Stream<Path> paths = Files.walk(Path.of(pathName))){
+				for(Path path : (Iterable<Path>)paths::iterator) {
+					expected.put(path.normalize().toString(), Files.isRegularFile(path) ? Files.size(path) : 0);
+				}
+			}
+		}
+		
+		// the archive file is listed by its central directory
+		Map<String, Long> listed = new HashMap<>();
+		Decoder decoder = new Decoder(Paths.get(ARCHIVE_FILE_NAME));
+		assertEquals(true, decoder.list((header)->listed.put(header.getPathName(), header.getSizeOfFile())));
+		assertEquals(expected, listed);
+		
+		// the stream is listed by skipping the data of the entries
+		for(boolean solidMode : new boolean[] {false, true}) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Coder coder = new Coder(FILES_NAMES_TO_PACK, out);
+			coder.setSolidMode(solidMode);
+			coder.setBlockSize(Coder.MIN_BLOCK_SIZE);
+			assertEquals(true, coder.pack());
+			
+			listed.clear();
+			decoder = new Decoder(new ByteArrayInputStream(out.toByteArray()));
+			boolean result = decoder.list((header)->assertEquals(null, 
+					listed.put(header.getPathName(), header.getSizeOfFile())));
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			assertEquals(expected, listed);
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingOfFilteredStream() throws IOException {
+		for(boolean solidMode : new boolean[] {false, true}) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Coder coder = new Coder(FILES_NAMES_TO_PACK, out);
+			coder.setSolidMode(solidMode);
+			assertEquals(true, coder.pack());
+			
+			Decoder decoder = new Decoder(new ByteArrayInputStream(out.toByteArray()));
+			decoder.setParentPath(PARRENT_PATH);
+			decoder.addInclude("test/source/files");
+			decoder.addInclude("**.jpg");
+			decoder.addExclude("**/empty.txt");
+			boolean result = decoder.unpack();
+			assertEquals("", decoder.getErrorMessage());
+			assertEquals(true, result);
+			assertEquals(Files.size(Paths.get("./test/source/files/В ресторане.txt")), 
+					Files.size(PARRENT_PATH.resolve("test/source/files/В ресторане.txt")));
+			assertEquals(true, Files.exists(PARRENT_PATH.resolve("test/source/images/angl_kartochki_guvotnue_7.jpg")));
+			assertEquals(false, Files.exists(PARRENT_PATH.resolve("test/source/files/empty.txt")));
+			assertEquals(false, Files.exists(PARRENT_PATH.resolve("test/source/file.txt")));
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void successfulUnpackingWithProgress() throws IOException {
+		for(boolean filtered : new boolean[] {false, true}) {
+			List<Progress> reports = new CopyOnWriteArrayList<>();
+			try (FileInputStream is = new FileInputStream(ARCHIVE_FILE_NAME)) {
+				Decoder decoder = new Decoder(is);
+				decoder.setParentPath(PARRENT_PATH);
+				decoder.setProgressListener(reports::add, 1);
+				if(filtered) {
+					decoder.addInclude("test/source/files");
+					decoder.addExclude("**/empty.txt");
+				}
+				boolean result = decoder.unpack();
+				assertEquals("", decoder.getErrorMessage());
+				assertEquals(true, result);
+			}
+			
+			Progress last = reports.get(reports.size() - 1);
+			assertEquals(true, last.isFinished());
+			assertEquals(true, last.getTotalBytes() > 0);
+			assertEquals(true, last.getTotalBytes() < Files.size(Paths.get(ARCHIVE_FILE_NAME)));
+			assertEquals(last.getTotalBytes(), last.getProcessedBytes());
+			assertEquals(100.0, last.getPercent());
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void exceptionOnInvalidIncludePattern() throws IOException {
+		try (FileInputStream is = new FileInputStream(ARCHIVE_FILE_NAME)) {
+			assertThrows(IllegalArgumentException.class, ()->new Decoder(is).addInclude("files/[a"));
+		}
+	}
+	
+	@Test
+	public void successfulVerifyingOfArchive() throws IOException {
+		Path archive = Paths.get("./test/archives/verified");
+		try {
+			for(boolean solidMode : new boolean[] {false, true}) {
+				try(FileOutputStream fos = new FileOutputStream(archive.toFile())) {
+					Coder coder = new Coder(FILES_NAMES_TO_PACK, fos);
+					coder.setSolidMode(solidMode);
+					coder.setDeduplication(true);
+					assertEquals(true, coder.pack());
+				}
+				
+				try(FileInputStream is = new FileInputStream(archive.toFile())) {
+					Decoder decoder = new Decoder(is);
+					decoder.setParentPath(PARRENT_PATH);
+					boolean result = decoder.verify();
+					assertEquals("", decoder.getErrorMessage());
+					assertEquals(true, result);
+				}
+				try(Stream<Path> paths = Files.list(PARRENT_PATH)) {
+					assertEquals(0, paths.count());
+				}
+			}
+		}
+		finally {
+			Files.deleteIfExists(archive);
+			cleanOutputFolder();
+		}
+	}
+	
+	@Test
+	public void errorOnVerifyingOfArchiveWithCorruptedData() throws IOException {
+		Path source = Paths.get("./test/source/file.txt");
+		byte[] content = Files.readAllBytes(source);
+		
+		for(boolean solidMode : new boolean[] {false, true}) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Coder coder = new Coder(new String[] {source.toString()}, out);
+			coder.setCompressionMethod(CompressionMethods.STORE);
+			coder.setSolidMode(solidMode);
+			assertEquals(true, coder.pack());
+			
+			// the stored data of the file is found in the archive and one byte of it is changed
+			byte[] archive = out.toByteArray();
+			int position = -1;
+			for(int i = 0; i <= archive.length - content.length && position < 0; i++) {
+				if(Arrays.equals(archive, i, i + content.length, content, 0, content.length)) {
+					position = i;
+				}
+			}
+			assertEquals(true, position >= 0);
+			archive[position + content.length / 2] ^= 1;
+			
+			Decoder decoder = new Decoder(new ByteArrayInputStream(archive));
+			boolean result = decoder.verify();
+			assertEquals(false, result);
+			assertEquals(true, decoder.getErrorMessage().contains("does not match"), decoder.getErrorMessage());
+		}
+	}
+	
+	@Test
+	public void errorOnCorruptedInputStream() throws IOException {
+		byte[] archive = Files.readAllBytes(Paths.get(ARCHIVE_FILE_NAME));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		// magic number and version are followed by the unknown entry type
+		out.write(archive, 0, 5);
+		out.write(0x7F);
+		out.write(archive, 5, archive.length - 5);
+		
+		Decoder decoder = new Decoder(new ByteArrayInputStream(out.toByteArray()));
+		decoder.setParentPath(PARRENT_PATH);
+		boolean result = decoder.unpack();
+		assertEquals(false, result);
+		assertEquals("Error occurred while input stream decoding: "
+				+ "Corrupted input stream format: cannot read path header", decoder.getErrorMessage());
+	}
+	
+	@Test
+	public void errorOnTruncatedInputStream() throws IOException {
+		// the archive is packed into the stream, so it is terminated by the end entry
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new Coder(FILES_NAMES_TO_PACK, out).pack();
+		byte[] archive = out.toByteArray();
+		
+		Decoder decoder = new Decoder(new ByteArrayInputStream(archive, 0, archive.length - 1));
+		decoder.setParentPath(PARRENT_PATH);
+		boolean result = decoder.unpack();
+		assertEquals(false, result);
+		assertEquals("Error occurred while input stream decoding: "
+				+ "Corrupted input stream format: unexpected end of the archive", decoder.getErrorMessage());
+		cleanOutputFolder();
+	}
+	
+	@Test
+	public void errorOnCorruptedLegacyInputStream() throws IOException {
 		PipedOutputStream pos = new PipedOutputStream();
 		PipedInputStream pis = new PipedInputStream(pos);
 		
 		ObjectOutputStream out = new ObjectOutputStream(pos);
-		ObjectInputStream in = new ObjectInputStream (new FileInputStream(ARCHIVE_FILE_NAME));
-
 		out.writeFloat(1f);
-		in.readObject();
-		out.write(in.readAllBytes());
-		
+		out.writeObject(new PathHeader(false, 0, "test/legacy", 0));
 		out.close();
-		in.close();
 		
 		Decoder decoder = new Decoder(pis);
 		decoder.setParentPath(PARRENT_PATH);
@@ -187,4 +1094,28 @@ public class DecoderTest {
 		
 		pis.close();
 	}
+	
+	@Test
+	public void successfulUnpackingOfLegacyArchive() throws IOException {
+		byte[] content = "Legacy archive".getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try(DeflaterOutputStream dos = new DeflaterOutputStream(compressed)) {
+			dos.write(content);
+		}
+		
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		try(ObjectOutputStream out = new ObjectOutputStream(archive)) {
+			out.writeObject(new PathHeader(false, 0, "test/legacy", 0));
+			out.writeObject(new PathHeader(true, compressed.size(), "test/legacy/file.txt", content.length));
+			out.write(compressed.toByteArray());
+		}
+		
+		Decoder decoder = new Decoder(new ByteArrayInputStream(archive.toByteArray()));
+		decoder.setParentPath(PARRENT_PATH);
+		boolean result = decoder.unpack();
+		assertEquals("", decoder.getErrorMessage());
+		assertEquals(true, result);
+		assertArrayEquals(content, Files.readAllBytes(PARRENT_PATH.resolve("test/legacy/file.txt")));
+		cleanOutputFolder();
+	}
 }
@@ -1,7 +1,10 @@
 package com.olegermolaev84.archive.test;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import org.junit.jupiter.api.Test;
 
@@ -10,6 +13,7 @@ import com.olegermolaev84.archive.core.SingleFileCoder;
 
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
 public class SingleFileCoderTest {
 	
@@ -89,4 +93,19 @@ public class SingleFileCoderTest {
 			assertEquals(header.getPathName(), "test/source/file.txt");
 		}
 	}
+	
+	@Test
+	public void compressedDataIsInflatedToFileContent() throws IOException, DataFormatException {
+		byte[] content = Files.readAllBytes(Paths.get("./test/source/images/angl_kartochki_guvotnue_7.jpg"));
+		SingleFileCoder coder = new SingleFileCoder(Paths.get("./test/source/images/angl_kartochki_guvotnue_7.jpg"), 9);
+		coder.packFile();
+		
+		Inflater inflater = new Inflater();
+		inflater.setInput(coder.getCompressedData(), 0, (int)coder.getPathHeader().getSizeOfData());
+		byte[] inflated = new byte[content.length];
+		assertEquals(content.length, inflater.inflate(inflated));
+		assertEquals(true, inflater.finished());
+		inflater.end();
+		assertArrayEquals(content, inflated);
+	}
 }